@@ -0,0 +1,131 @@
+package bsas.org.openchat;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/* Benchmarks JMH de las operaciones de OpenChatSystem sobre un sistema con
+ * userCount usuarios, cada uno con followersPerUser seguidores y postsPerUser publicaciones.
+ * Se corren con: mvn -P benchmarks verify -Dbenchmarks.include=OpenChatSystemBenchmark
+ * y el resultado queda en target/jmh-result.json para comparar contra corridas anteriores.
+ *
+ * El sistema se arma de nuevo en cada iteracion porque registrar, publicar, seguir
+ * y likear lo agrandan. Seguir y likear usan un usuario nuevo cada vez que el anterior
+ * ya sigue a todos o likeo todo, porque no se puede hacer dos veces.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OpenChatSystemBenchmark {
+    private static final String PASSWORD = "password";
+    private static final String MESSAGE = "a message that is neither too long nor too short";
+
+    @Param({"1000", "10000"})
+    public int userCount;
+    @Param({"10", "100"})
+    public int followersPerUser;
+    @Param({"10", "100"})
+    public int postsPerUser;
+
+    private OpenChatSystem system;
+    private List<String> userNames;
+    private List<Publication> publications;
+    private int nextUserIndex;
+    private int newUsers;
+    private String follower;
+    private int nextFollowedIndex;
+    private String liker;
+    private int nextLikedIndex;
+
+    @Setup(Level.Iteration)
+    public void createSystem() {
+        system = new OpenChatSystem(increasingClock());
+        userNames = new ArrayList<>(userCount);
+        publications = new ArrayList<>(userCount * postsPerUser);
+
+        for(int userIndex = 0; userIndex<userCount; userIndex++) {
+            userNames.add("user" + userIndex);
+            system.register(userNames.get(userIndex), PASSWORD, "about user " + userIndex, "www.user" + userIndex + ".com");
+        }
+        //Los seguidores de cada usuario son los siguientes, asi todos siguen a la misma cantidad
+        for(int userIndex = 0; userIndex<userCount; userIndex++)
+            for(int followerOffset = 1; followerOffset<=followersPerUser; followerOffset++)
+                system.followForUserNamed(userNames.get(userIndex), userNames.get((userIndex + followerOffset) % userCount));
+        for(int postNumber = 0; postNumber<postsPerUser; postNumber++)
+            for(String userName : userNames)
+                publications.add(system.publishForUserNamed(userName, MESSAGE));
+
+        nextUserIndex = 0;
+        newUsers = 0;
+        follower = registerNewUser();
+        nextFollowedIndex = 0;
+        liker = registerNewUser();
+        nextLikedIndex = 0;
+    }
+
+    @Benchmark
+    public User register() {
+        return system.register("registered" + newUsers++, PASSWORD, "about", "www.about.com");
+    }
+
+    @Benchmark
+    public Publication publishForUserNamed() {
+        return system.publishForUserNamed(nextUserName(), MESSAGE);
+    }
+
+    @Benchmark
+    public void followForUserNamed() {
+        if(nextFollowedIndex==userCount) {
+            follower = registerNewUser();
+            nextFollowedIndex = 0;
+        }
+        system.followForUserNamed(userNames.get(nextFollowedIndex++), follower);
+    }
+
+    @Benchmark
+    public int likePublication() {
+        if(nextLikedIndex==publications.size()) {
+            liker = registerNewUser();
+            nextLikedIndex = 0;
+        }
+        return system.likePublication(publications.get(nextLikedIndex++), liker);
+    }
+
+    @Benchmark
+    public List<Publication> timeLineForUserNamed() {
+        return system.timeLineForUserNamed(nextUserName());
+    }
+
+    @Benchmark
+    public List<Publication> wallForUserNamed() {
+        return system.wallForUserNamed(nextUserName());
+    }
+
+    private String nextUserName() {
+        final String userName = userNames.get(nextUserIndex);
+        nextUserIndex = (nextUserIndex + 1) % userCount;
+
+        return userName;
+    }
+
+    private String registerNewUser() {
+        final String userName = "new user " + newUsers++;
+        system.register(userName, PASSWORD, "about", "www.about.com");
+
+        return userName;
+    }
+
+    //Cada publicacion tiene un tiempo distinto, como pasa en un sistema real
+    private Clock increasingClock() {
+        final LocalDateTime start = LocalDateTime.now();
+        final long[] ticks = { 0 };
+
+        return () -> start.plusNanos(1000 * ticks[0]++);
+    }
+}
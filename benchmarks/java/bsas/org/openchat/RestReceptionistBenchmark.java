@@ -0,0 +1,231 @@
+package bsas.org.openchat;
+
+import com.eclipsesource.json.Json;
+import com.eclipsesource.json.JsonObject;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/* Benchmarks JMH de lo que cuesta cada request en RestReceptionist, haciendo lo mismo
+ * que Routes: parsear el body que llega como String, llamar al receptionist y escribir
+ * la respuesta en un stream como el de la respuesta http.
+ * Los que terminan en Serialization solo escriben una respuesta ya armada, y
+ * requestBodyParsing solo parsea, para separar esos costos del resto.
+ *
+ * El profile benchmarks corre con -prof gc, asi que ademas de ops/ms se reporta
+ * gc.alloc.rate.norm, lo que se aloca por request.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RestReceptionistBenchmark {
+    private static final int USER_COUNT = 1000;
+    private static final int FOLLOWEES_PER_USER = 20;
+    private static final int POSTS_PER_USER = 20;
+    private static final int PUBLICATIONS_PER_REQUEST = 20;
+
+    @Param({"40", "280"})
+    public int messageLength;
+    @Param({"20", "100"})
+    public int pageSize;
+
+    private RestReceptionist receptionist;
+    private List<String> userIds;
+    private List<String> publicationIds;
+    private String publicationBody;
+    private List<String> loginBodies;
+    private List<String> likeBodies;
+    private JsonObject page;
+    private ReceptionistResponse wallResponse;
+    private ReceptionistResponse usersResponse;
+    private final ByteArrayOutputStream responseStream = new ByteArrayOutputStream(64 * 1024);
+    private int nextUserIndex;
+    private int nextPublicationIndex;
+    private int newUsers;
+    private String follower;
+    private int nextFollowedIndex;
+
+    @Setup(Level.Iteration)
+    public void createReceptionist() {
+        receptionist = new RestReceptionist(new OpenChatSystem(increasingClock()));
+        publicationBody = new JsonObject().add(RestReceptionist.TEXT_KEY, messageOf(messageLength)).toString();
+        page = new JsonObject().add(RestReceptionist.LIMIT_KEY, String.valueOf(pageSize));
+
+        userIds = new ArrayList<>(USER_COUNT);
+        for(int userIndex = 0; userIndex<USER_COUNT; userIndex++)
+            userIds.add(idFrom(receptionist.registerUser(parsed(registrationBodyFor("user" + userIndex))), RestReceptionist.ID_KEY));
+        for(int userIndex = 0; userIndex<USER_COUNT; userIndex++)
+            for(int followeeOffset = 1; followeeOffset<=FOLLOWEES_PER_USER; followeeOffset++)
+                receptionist.followings(new JsonObject()
+                        .add(RestReceptionist.FOLLOWED_ID_KEY, userIds.get((userIndex + followeeOffset) % USER_COUNT))
+                        .add(RestReceptionist.FOLLOWER_ID_KEY, userIds.get(userIndex)));
+        publicationIds = new ArrayList<>(USER_COUNT * POSTS_PER_USER);
+        for(int postNumber = 0; postNumber<POSTS_PER_USER; postNumber++)
+            for(String userId : userIds)
+                publicationIds.add(idFrom(
+                        receptionist.addPublication(userId, Json.parse(publicationBody).asObject()),
+                        RestReceptionist.POST_ID_KEY));
+
+        loginBodies = new ArrayList<>(USER_COUNT);
+        likeBodies = new ArrayList<>(USER_COUNT);
+        for(int userIndex = 0; userIndex<USER_COUNT; userIndex++) {
+            loginBodies.add(new JsonObject()
+                    .add(RestReceptionist.USERNAME_KEY, "user" + userIndex)
+                    .add(RestReceptionist.PASSWORD_KEY, "passworduser" + userIndex)
+                    .toString());
+            likeBodies.add(new JsonObject().add(RestReceptionist.USER_ID_KEY, userIds.get(userIndex)).toString());
+        }
+
+        wallResponse = receptionist.wallOf(userIds.get(0), page);
+        usersResponse = receptionist.users(page);
+        nextUserIndex = 0;
+        nextPublicationIndex = 0;
+        newUsers = 0;
+        follower = registerNewUser();
+        nextFollowedIndex = 0;
+    }
+
+    @Benchmark
+    public JsonObject requestBodyParsing() {
+        return Json.parse(publicationBody).asObject();
+    }
+
+    @Benchmark
+    public int registerUser() throws IOException {
+        return written(receptionist.registerUser(parsed(registrationBodyFor("registered" + newUsers++))));
+    }
+
+    @Benchmark
+    public int login() throws IOException {
+        return written(receptionist.login(parsed(loginBodies.get(nextUserIndex()))));
+    }
+
+    @Benchmark
+    public int addPublication() throws IOException {
+        return written(receptionist.addPublication(userIds.get(nextUserIndex()), parsed(publicationBody)));
+    }
+
+    @Benchmark
+    public int followings() throws IOException {
+        if(nextFollowedIndex==USER_COUNT) {
+            follower = registerNewUser();
+            nextFollowedIndex = 0;
+        }
+        return written(receptionist.followings(parsed(new JsonObject()
+                .add(RestReceptionist.FOLLOWED_ID_KEY, userIds.get(nextFollowedIndex++))
+                .add(RestReceptionist.FOLLOWER_ID_KEY, follower)
+                .toString())));
+    }
+
+    @Benchmark
+    public int likePublication() throws IOException {
+        return written(receptionist.likePublicationIdentifiedAs(
+                publicationIds.get(nextPublicationIndex()),
+                parsed(likeBodies.get(nextUserIndex()))));
+    }
+
+    @Benchmark
+    public int timeline() throws IOException {
+        return written(receptionist.timelineOf(userIds.get(nextUserIndex()), page));
+    }
+
+    @Benchmark
+    public int wall() throws IOException {
+        return written(receptionist.wallOf(userIds.get(nextUserIndex()), page));
+    }
+
+    @Benchmark
+    public int users() throws IOException {
+        return written(receptionist.users(page));
+    }
+
+    @Benchmark
+    public int publications() throws IOException {
+        final List<String> requestedIds = new ArrayList<>(PUBLICATIONS_PER_REQUEST);
+        for(int publicationNumber = 0; publicationNumber<PUBLICATIONS_PER_REQUEST; publicationNumber++)
+            requestedIds.add(publicationIds.get(nextPublicationIndex()));
+
+        return written(receptionist.publicationsIdentifiedAs(requestedIds));
+    }
+
+    @Benchmark
+    public int wallSerialization() throws IOException {
+        return written(wallResponse);
+    }
+
+    @Benchmark
+    public int usersSerialization() throws IOException {
+        return written(usersResponse);
+    }
+
+    @Benchmark
+    public String wallResponseBody() {
+        return wallResponse.responseBody();
+    }
+
+    //Lo que hace Routes con la respuesta: escribirla en el stream de la respuesta http
+    private int written(ReceptionistResponse response) throws IOException {
+        responseStream.reset();
+        response.writeResponseBodyTo(responseStream);
+
+        return responseStream.size();
+    }
+
+    private JsonObject parsed(String requestBody) {
+        return Json.parse(requestBody).asObject();
+    }
+
+    private String registrationBodyFor(String userName) {
+        return new JsonObject()
+                .add(RestReceptionist.USERNAME_KEY, userName)
+                .add(RestReceptionist.PASSWORD_KEY, "password" + userName)
+                .add(RestReceptionist.ABOUT_KEY, "I am " + userName + " and I like to write about benchmarks")
+                .add(RestReceptionist.HOME_PAGE_KEY, "https://www." + userName + ".com")
+                .toString();
+    }
+
+    private String idFrom(ReceptionistResponse response, String idKey) {
+        return response.responseBodyAsJson().getString(idKey, "");
+    }
+
+    private String registerNewUser() {
+        return idFrom(receptionist.registerUser(parsed(registrationBodyFor("new user " + newUsers++))), RestReceptionist.ID_KEY);
+    }
+
+    private int nextUserIndex() {
+        final int userIndex = nextUserIndex;
+        nextUserIndex = (nextUserIndex + 1) % USER_COUNT;
+
+        return userIndex;
+    }
+
+    private int nextPublicationIndex() {
+        final int publicationIndex = nextPublicationIndex;
+        nextPublicationIndex = (nextPublicationIndex + 1) % publicationIds.size();
+
+        return publicationIndex;
+    }
+
+    //Texto comun, sin palabras inapropiadas ni caracteres que haya que escapar
+    private String messageOf(int length) {
+        final StringBuilder text = new StringBuilder(length);
+        while (text.length()<length) text.append("lorem ipsum dolor sit amet ");
+
+        return text.substring(0, length);
+    }
+
+    private Clock increasingClock() {
+        final LocalDateTime start = LocalDateTime.now();
+        final long[] ticks = { 0 };
+
+        return () -> start.plusNanos(1000 * ticks[0]++);
+    }
+}
@@ -0,0 +1,67 @@
+package bsas.org.openchat;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+/* Lista a la que solo se le puede agregar al final. Se puede leer desde
+ * varios threads sin locks y las sublistas que devuelve no cambian aunque
+ * se sigan agregando elementos, por eso se pueden recorrer mientras se
+ * escribe la respuesta.
+ */
+class AppendOnlyList<T> {
+    private static final int INITIAL_CAPACITY = 16;
+
+    private volatile Object[] elements = new Object[INITIAL_CAPACITY];
+    private volatile int size = 0;
+
+    public synchronized int add(T element) {
+        if(size==elements.length) elements = Arrays.copyOf(elements, size * 2);
+        elements[size] = element;
+        size = size + 1;
+
+        return size - 1;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public List<T> subList(int from, int to) {
+        //Primero leo el tamaño, el array que lea despues tiene por lo menos esos elementos
+        final int currentSize = size;
+        final Object[] currentElements = elements;
+
+        return new Snapshot<>(currentElements, Math.min(from, currentSize), Math.min(to, currentSize));
+    }
+
+    public List<T> asList() {
+        return subList(0, size);
+    }
+
+    private static class Snapshot<T> extends AbstractList<T> implements RandomAccess {
+        private final Object[] elements;
+        private final int from;
+        private final int to;
+
+        private Snapshot(Object[] elements, int from, int to) {
+            this.elements = elements;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public T get(int index) {
+            if(index<0 || index>=size()) throw new IndexOutOfBoundsException(index);
+
+            return (T) elements[from + index];
+        }
+
+        @Override
+        public int size() {
+            return to - from;
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package bsas.org.openchat;
+
+import java.util.List;
+
+class AssembledOnReadWall implements Wall {
+
+    @Override
+    public List<Publication> publicationsOf(Publisher owner, PublicationsPage page) {
+        return owner.assembledWall(page);
+    }
+
+    @Override
+    public void publicationAdded(Publication publication) {
+    }
+
+    @Override
+    public void followerAdded(Publisher follower) {
+    }
+}
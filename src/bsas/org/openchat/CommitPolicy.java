@@ -0,0 +1,107 @@
+package bsas.org.openchat;
+
+import java.time.Duration;
+
+/* Decide cuando FileEventLog hace fsync de los eventos pendientes y si el que
+ * agrega un evento espera a que este guardado. En todos los casos los eventos
+ * que se agregan mientras se hace un fsync se guardan juntos en el siguiente.
+ */
+public abstract class CommitPolicy {
+    public static final String INVALID_COMMIT_POLICY = "Invalid commit policy";
+    public static final String EVERY_REQUEST_DESCRIPTION = "request";
+    public static final String INTERVAL_DESCRIPTION_PREFIX = "interval:";
+    public static final String BATCH_DESCRIPTION_PREFIX = "batch:";
+    public static final Duration MAXIMUM_BATCH_DELAY = Duration.ofSeconds(1);
+
+    static final long WAIT_FOR_EVENTS = Long.MAX_VALUE;
+
+    //Cada request espera a que sus eventos esten en disco
+    public static CommitPolicy everyRequest() {
+        return new EveryRequest();
+    }
+
+    //No se espera, se hace fsync a lo sumo interval despues del primer evento pendiente
+    public static CommitPolicy every(Duration interval) {
+        if(interval.isNegative() || interval.isZero()) throw new ModelException(INVALID_COMMIT_POLICY);
+
+        return new Interval(interval.toNanos());
+    }
+
+    //No se espera, se hace fsync cada numberOfEvents eventos o a lo sumo un segundo despues del primero
+    public static CommitPolicy everyBatchOf(int numberOfEvents) {
+        if(numberOfEvents<=0) throw new ModelException(INVALID_COMMIT_POLICY);
+
+        return new Batch(numberOfEvents);
+    }
+
+    //request, interval:<milisegundos> o batch:<eventos>
+    public static CommitPolicy described(String description) {
+        try {
+            if(description.equals(EVERY_REQUEST_DESCRIPTION)) return everyRequest();
+            if(description.startsWith(INTERVAL_DESCRIPTION_PREFIX))
+                return every(Duration.ofMillis(Long.parseLong(description.substring(INTERVAL_DESCRIPTION_PREFIX.length()))));
+            if(description.startsWith(BATCH_DESCRIPTION_PREFIX))
+                return everyBatchOf(Integer.parseInt(description.substring(BATCH_DESCRIPTION_PREFIX.length())));
+        } catch (NumberFormatException error) {
+            throw new ModelException(INVALID_COMMIT_POLICY);
+        }
+
+        throw new ModelException(INVALID_COMMIT_POLICY);
+    }
+
+    abstract boolean waitsForCommit();
+
+    //WAIT_FOR_EVENTS si no hay que hacer fsync hasta que se agreguen mas eventos
+    abstract long nanosUntilCommit(int numberOfPendingEvents, long nanosSinceFirstPendingEvent);
+
+    private static class EveryRequest extends CommitPolicy {
+        @Override
+        boolean waitsForCommit() {
+            return true;
+        }
+
+        @Override
+        long nanosUntilCommit(int numberOfPendingEvents, long nanosSinceFirstPendingEvent) {
+            return numberOfPendingEvents>0 ? 0 : WAIT_FOR_EVENTS;
+        }
+    }
+
+    private static class Interval extends CommitPolicy {
+        private final long intervalInNanos;
+
+        private Interval(long intervalInNanos) {
+            this.intervalInNanos = intervalInNanos;
+        }
+
+        @Override
+        boolean waitsForCommit() {
+            return false;
+        }
+
+        @Override
+        long nanosUntilCommit(int numberOfPendingEvents, long nanosSinceFirstPendingEvent) {
+            return numberOfPendingEvents>0 ? intervalInNanos - nanosSinceFirstPendingEvent : WAIT_FOR_EVENTS;
+        }
+    }
+
+    private static class Batch extends CommitPolicy {
+        private final int numberOfEvents;
+
+        private Batch(int numberOfEvents) {
+            this.numberOfEvents = numberOfEvents;
+        }
+
+        @Override
+        boolean waitsForCommit() {
+            return false;
+        }
+
+        @Override
+        long nanosUntilCommit(int numberOfPendingEvents, long nanosSinceFirstPendingEvent) {
+            if(numberOfPendingEvents>=numberOfEvents) return 0;
+            if(numberOfPendingEvents==0) return WAIT_FOR_EVENTS;
+
+            return MAXIMUM_BATCH_DELAY.toNanos() - nanosSinceFirstPendingEvent;
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package bsas.org.openchat;
+
+import java.util.List;
+
+public interface EventLog {
+    void append(OpenChatEvent event);
+
+    //Quedan uno detras del otro, sin otros eventos en el medio
+    default void appendAll(List<OpenChatEvent> events) {
+        events.forEach(event -> append(event));
+    }
+
+    //Espera a que lo agregado hasta ahora quede guardado, si la politica de commit lo pide
+    void commit();
+
+    static EventLog none() {
+        return new EventLog() {
+            @Override
+            public void append(OpenChatEvent event) {
+            }
+
+            @Override
+            public void commit() {
+            }
+        };
+    }
+}
@@ -0,0 +1,354 @@
+package bsas.org.openchat;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/* Log de eventos en un archivo al que solo se agrega al final.
+ * Los que agregan eventos solo los copian a un buffer en memoria. Un unico thread
+ * escribe el buffer y hace fsync cuando lo indica la CommitPolicy, asi todos los
+ * eventos que llegan mientras se hace un fsync se guardan con el siguiente (group commit).
+ *
+ * Formato: MAGIC, VERSION y despues por cada evento su largo, el CRC32 y el evento.
+ * Si el ultimo evento quedo escrito a medias porque se corto el proceso, al
+ * reproducir el log se descarta desde ahi. Un evento invalido que no llega hasta el
+ * final del archivo no es una escritura cortada sino un log roto: no se descarta nada
+ * y no se puede reproducir, asi no se pierden los eventos que estan despues.
+ */
+public class FileEventLog implements EventLog, Closeable {
+    public static final String NOT_REPLAYED = "Event log must be replayed before appending events";
+    public static final String CLOSED = "Event log is closed";
+    public static final String SHORTER_THAN_EXPECTED = "Event log is shorter than the position to replay from";
+    public static final String CORRUPTED = "Event log is corrupted";
+
+    private static final int MAGIC = 0x4F43454C;
+    private static final int VERSION = 1;
+    private static final int FILE_HEADER_SIZE = 2 * Integer.BYTES;
+    private static final int EVENT_HEADER_SIZE = 2 * Integer.BYTES;
+
+    private final Path file;
+    private final CommitPolicy commitPolicy;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition eventsAppended = lock.newCondition();
+    private final Condition eventsCommitted = lock.newCondition();
+
+    private ByteArrayOutputStream pendingEvents = new ByteArrayOutputStream();
+    private int numberOfPendingEvents = 0;
+    private long firstPendingEventTime;
+    //Posiciones en el archivo, contando los eventos que todavia estan en memoria
+    private long appendedSize = 0;
+    private long committedSize = 0;
+    private IOException failure;
+    private boolean isClosed = false;
+    private FileChannel channel;
+    private Thread committer;
+
+    private FileEventLog(Path file, CommitPolicy commitPolicy) {
+        this.file = file;
+        this.commitPolicy = commitPolicy;
+    }
+
+    public static FileEventLog at(Path file, CommitPolicy commitPolicy) {
+        return new FileEventLog(file, commitPolicy);
+    }
+
+    /* Le pasa cada evento guardado a eventsReceiver y deja el log listo para agregar
+     * eventos. Devuelve cuantos eventos se reprodujeron
+     */
+    public int replayOn(Consumer<OpenChatEvent> eventsReceiver) throws IOException {
+        return replayOn(eventsReceiver, FILE_HEADER_SIZE);
+    }
+
+    //Como replayOn pero solo con los eventos desde fromPosition, que tiene que ser una devuelta por position()
+    public int replayOn(Consumer<OpenChatEvent> eventsReceiver, long fromPosition) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        //Si se corto el proceso mientras se creaba el archivo, puede no tener el header completo
+        if(channel.size()<FILE_HEADER_SIZE) {
+            channel.truncate(0);
+            writeFileHeader();
+        }
+
+        final ValidEvents validEvents;
+        try {
+            validEvents = replayValidEventsOn(eventsReceiver, Math.max(fromPosition, FILE_HEADER_SIZE));
+        } catch (IOException error) {
+            channel.close();
+            throw error;
+        }
+        channel.truncate(validEvents.size);
+        channel.position(validEvents.size);
+        appendedSize = validEvents.size;
+        committedSize = validEvents.size;
+
+        committer = new Thread(() -> commitWhileOpen(), "event-log-committer");
+        committer.setDaemon(true);
+        committer.start();
+
+        return validEvents.numberOfEvents;
+    }
+
+    @Override
+    public void append(OpenChatEvent event) {
+        appendEncoded(encoded(event), 1);
+    }
+
+    //Se codifican todos antes de tomar el lock y se agregan de una vez
+    @Override
+    public void appendAll(List<OpenChatEvent> events) {
+        if(events.isEmpty()) return;
+
+        final ByteArrayOutputStream encodedEvents = new ByteArrayOutputStream();
+        events.forEach(event -> encodedEvents.writeBytes(encoded(event)));
+        appendEncoded(encodedEvents.toByteArray(), events.size());
+    }
+
+    private void appendEncoded(byte[] encodedEvents, int numberOfEvents) {
+        lock.lock();
+        try {
+            assertCanAppend();
+            if(numberOfPendingEvents==0) firstPendingEventTime = System.nanoTime();
+            pendingEvents.write(encodedEvents, 0, encodedEvents.length);
+            numberOfPendingEvents += numberOfEvents;
+            appendedSize += encodedEvents.length;
+            eventsAppended.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void commit() {
+        if(commitPolicy.waitsForCommit()) awaitDurable(position());
+    }
+
+    public long position() {
+        lock.lock();
+        try {
+            return appendedSize;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    //Espera, sin importar la politica de commit, a que todo lo agregado hasta position este en disco
+    public void awaitDurable(long position) {
+        lock.lock();
+        try {
+            while (committedSize<position && failure==null && committer!=null)
+                eventsCommitted.awaitUninterruptibly();
+            assertHasNotFailed();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    //Guarda los eventos pendientes antes de cerrar el archivo
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            if(isClosed) return;
+            isClosed = true;
+            eventsAppended.signal();
+        } finally {
+            lock.unlock();
+        }
+
+        if(committer!=null) joinCommitter();
+        if(channel!=null) channel.close();
+        if(failure!=null) throw failure;
+    }
+
+    private void commitWhileOpen() {
+        while (true) {
+            final byte[] eventsToWrite;
+            final long sizeAfterWriting;
+            lock.lock();
+            try {
+                awaitCommitTime();
+                if(numberOfPendingEvents==0) return;
+
+                eventsToWrite = pendingEvents.toByteArray();
+                sizeAfterWriting = appendedSize;
+                pendingEvents = new ByteArrayOutputStream();
+                numberOfPendingEvents = 0;
+            } finally {
+                lock.unlock();
+            }
+
+            try {
+                writeAndForce(eventsToWrite);
+            } catch (IOException error) {
+                failWith(error);
+                return;
+            }
+
+            lock.lock();
+            try {
+                committedSize = sizeAfterWriting;
+                eventsCommitted.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private void awaitCommitTime() {
+        while (!isClosed) {
+            final long nanosUntilCommit = commitPolicy.nanosUntilCommit(
+                    numberOfPendingEvents, System.nanoTime() - firstPendingEventTime);
+            if(nanosUntilCommit<=0) return;
+
+            if(nanosUntilCommit==CommitPolicy.WAIT_FOR_EVENTS) eventsAppended.awaitUninterruptibly();
+            else awaitNanosUninterruptibly(nanosUntilCommit);
+        }
+    }
+
+    private void awaitNanosUninterruptibly(long nanos) {
+        try {
+            eventsAppended.awaitNanos(nanos);
+        } catch (InterruptedException error) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void writeAndForce(byte[] eventsToWrite) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.wrap(eventsToWrite);
+        while (buffer.hasRemaining()) channel.write(buffer);
+        channel.force(false);
+    }
+
+    private void failWith(IOException error) {
+        lock.lock();
+        try {
+            failure = error;
+            eventsCommitted.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void joinCommitter() {
+        try {
+            committer.join();
+        } catch (InterruptedException error) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void assertCanAppend() {
+        if(committer==null) throw new IllegalStateException(NOT_REPLAYED);
+        if(isClosed) throw new IllegalStateException(CLOSED);
+        assertHasNotFailed();
+    }
+
+    private void assertHasNotFailed() {
+        if(failure!=null) throw new UncheckedIOException(failure);
+    }
+
+    private byte[] encoded(OpenChatEvent event) {
+        final ByteArrayOutputStream encodedEvent = new ByteArrayOutputStream();
+        try {
+            event.writeTo(new DataOutputStream(encodedEvent));
+        } catch (IOException error) {
+            throw new UncheckedIOException(error);
+        }
+        final byte[] eventBytes = encodedEvent.toByteArray();
+
+        return ByteBuffer.allocate(EVENT_HEADER_SIZE + eventBytes.length)
+                .putInt(eventBytes.length)
+                .putInt(crcOf(eventBytes))
+                .put(eventBytes)
+                .array();
+    }
+
+    private static int crcOf(byte[] bytes) {
+        final CRC32 crc = new CRC32();
+        crc.update(bytes);
+
+        return (int) crc.getValue();
+    }
+
+    private void writeFileHeader() throws IOException {
+        writeAndForce(ByteBuffer.allocate(FILE_HEADER_SIZE).putInt(MAGIC).putInt(VERSION).array());
+    }
+
+    private ValidEvents replayValidEventsOn(Consumer<OpenChatEvent> eventsReceiver, long fromPosition) throws IOException {
+        final DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)));
+        try {
+            if(input.readInt()!=MAGIC || input.readInt()!=VERSION)
+                throw new IOException("Not an event log: " + file);
+
+            final long fileSize = channel.size();
+            if(fromPosition>fileSize) throw new IOException(SHORTER_THAN_EXPECTED + ": " + file);
+            skipFully(input, fromPosition - FILE_HEADER_SIZE);
+
+            final ValidEvents validEvents = new ValidEvents(fromPosition);
+            while (true) {
+                final byte[] eventBytes = nextEventBytes(input, validEvents.size, fileSize);
+                if(eventBytes==null) return validEvents;
+
+                eventsReceiver.accept(OpenChatEvent.readFrom(new DataInputStream(new ByteArrayInputStream(eventBytes))));
+                validEvents.add(EVENT_HEADER_SIZE + eventBytes.length);
+            }
+        } finally {
+            input.close();
+        }
+    }
+
+    private void skipFully(DataInputStream input, long bytesToSkip) throws IOException {
+        long remainingBytes = bytesToSkip;
+        while (remainingBytes>0) {
+            final long skippedBytes = input.skip(remainingBytes);
+            if(skippedBytes<=0) throw new EOFException(SHORTER_THAN_EXPECTED + ": " + file);
+            remainingBytes -= skippedBytes;
+        }
+    }
+
+    /* null si no hay mas eventos o si el que empieza en position es el ultimo y quedo escrito a medias.
+     * Si es invalido y hay algo despues de el, el log esta roto
+     */
+    private byte[] nextEventBytes(DataInputStream input, long position, long fileSize) throws IOException {
+        try {
+            final int size = input.readInt();
+            final int crc = input.readInt();
+            if(size<0) throw new IOException(corruptedAt(position));
+            if(size>fileSize - position - EVENT_HEADER_SIZE) return null;
+
+            final byte[] eventBytes = new byte[size];
+            input.readFully(eventBytes);
+            if(crcOf(eventBytes)==crc) return eventBytes;
+            if(position + EVENT_HEADER_SIZE + size<fileSize) throw new IOException(corruptedAt(position));
+
+            return null;
+        } catch (EOFException endOfValidEvents) {
+            return null;
+        }
+    }
+
+    private String corruptedAt(long position) {
+        return CORRUPTED + " at offset " + position + ": " + file;
+    }
+
+    private static class ValidEvents {
+        private long size;
+        private int numberOfEvents = 0;
+
+        private ValidEvents(long size) {
+            this.size = size;
+        }
+
+        private void add(int eventSize) {
+            size += eventSize;
+            numberOfEvents++;
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package bsas.org.openchat;
+
+import java.nio.ByteBuffer;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/* Genera los ids de usuarios y publicaciones. Los ids son strings para el receptionist y
+ * para el log de eventos, asi se pueden restaurar logs hechos con cualquier generador.
+ */
+public abstract class IdGenerator {
+    public static final String INVALID_ID_GENERATOR = "Invalid id generator";
+    public static final String UUID_DESCRIPTION = "uuid";
+    public static final String TIME_ORDERED_DESCRIPTION = "timeOrdered";
+    public static final int MAXIMUM_NODE = (1 << TimeOrdered.NODE_BITS) - 1;
+
+    //UUID version 4, como UUID.randomUUID
+    public static IdGenerator randomUuids() {
+        return new RandomUuids();
+    }
+
+    //node distingue a los procesos que generan ids a la vez, tiene que ser distinto en cada uno
+    public static IdGenerator timeOrdered(int node) {
+        return timeOrdered(node, System::currentTimeMillis);
+    }
+
+    static IdGenerator timeOrdered(int node, LongSupplier currentTimeMillis) {
+        if(node<0 || node>MAXIMUM_NODE) throw new ModelException(INVALID_ID_GENERATOR);
+
+        return new TimeOrdered(node, currentTimeMillis);
+    }
+
+    //uuid o timeOrdered, node solo se usa con timeOrdered
+    public static IdGenerator described(String description, int node) {
+        if(description.equals(UUID_DESCRIPTION)) return randomUuids();
+        if(description.equals(TIME_ORDERED_DESCRIPTION)) return timeOrdered(node);
+
+        throw new ModelException(INVALID_ID_GENERATOR);
+    }
+
+    public abstract String nextId();
+
+    /* Se le pasa cada id restaurado del log o de un snapshot, para que despues de reiniciar
+     * no genere uno que ya se uso. Los ids que no genero un generador como este se ignoran
+     */
+    public void restored(String id) {
+    }
+
+    public List<String> nextIds(int numberOfIds) {
+        final List<String> ids = new ArrayList<>(numberOfIds);
+        for(int index = 0; index<numberOfIds; index++) ids.add(nextId());
+
+        return ids;
+    }
+
+    private static class RandomUuids extends IdGenerator {
+        private final SecureRandom random = new SecureRandom();
+
+        @Override
+        public String nextId() {
+            return nextIds(1).get(0);
+        }
+
+        //Los bytes de todos los ids se le piden al generador seguro de una sola vez
+        @Override
+        public List<String> nextIds(int numberOfIds) {
+            final byte[] randomBytes = new byte[numberOfIds * 16];
+            random.nextBytes(randomBytes);
+            final ByteBuffer randomBuffer = ByteBuffer.wrap(randomBytes);
+
+            final List<String> ids = new ArrayList<>(numberOfIds);
+            for(int index = 0; index<numberOfIds; index++) {
+                final long mostSignificantBits = (randomBuffer.getLong() & ~0xF000L) | 0x4000L;
+                final long leastSignificantBits = (randomBuffer.getLong() & ~(0xC000L << 48)) | (0x8000L << 48);
+                ids.add(new UUID(mostSignificantBits, leastSignificantBits).toString());
+            }
+
+            return ids;
+        }
+    }
+
+    /* Ids de 63 bits al estilo Snowflake: milisegundos desde EPOCH_MILLIS, node y una secuencia
+     * dentro del milisegundo. Se codifican en base 62 con ancho fijo y digitos en orden ASCII,
+     * asi ordenar los ids como strings es ordenarlos por cuando se generaron. No se toman locks:
+     * el ultimo milisegundo y secuencia usados se actualizan con compareAndSet. Si se acaba la
+     * secuencia, o el reloj vuelve para atras, se sigue con el milisegundo siguiente al ultimo
+     * en vez de esperar, asi los ids nunca se repiten ni dejan de crecer.
+     */
+    private static class TimeOrdered extends IdGenerator {
+        static final int NODE_BITS = 10;
+        static final int SEQUENCE_BITS = 12;
+        //2020-01-01T00:00:00Z, con 41 bits de milisegundos alcanza hasta 2089
+        static final long EPOCH_MILLIS = 1577836800000L;
+        static final int ENCODED_LENGTH = 11;
+        static final String DIGITS = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz";
+
+        private final long node;
+        private final LongSupplier currentTimeMillis;
+        //El milisegundo corrido SEQUENCE_BITS a la izquierda mas la secuencia
+        private final AtomicLong lastTimeAndSequence = new AtomicLong();
+
+        TimeOrdered(int node, LongSupplier currentTimeMillis) {
+            this.node = node;
+            this.currentTimeMillis = currentTimeMillis;
+        }
+
+        @Override
+        public String nextId() {
+            final long timeAndSequence = nextTimeAndSequence();
+            final long id = ((timeAndSequence >>> SEQUENCE_BITS) << (NODE_BITS + SEQUENCE_BITS))
+                    | (node << SEQUENCE_BITS)
+                    | (timeAndSequence & ((1L << SEQUENCE_BITS) - 1));
+
+            return encoded(id);
+        }
+
+        //Sigue desde el milisegundo y secuencia del id restaurado, sin importar de que node sea
+        @Override
+        public void restored(String id) {
+            final long decodedId = decoded(id);
+            if(decodedId<0) return;
+
+            final long timeAndSequence = ((decodedId >>> (NODE_BITS + SEQUENCE_BITS)) << SEQUENCE_BITS)
+                    | (decodedId & ((1L << SEQUENCE_BITS) - 1));
+            lastTimeAndSequence.accumulateAndGet(timeAndSequence, Math::max);
+        }
+
+        private long nextTimeAndSequence() {
+            final long now = (currentTimeMillis.getAsLong() - EPOCH_MILLIS) << SEQUENCE_BITS;
+            while (true) {
+                final long last = lastTimeAndSequence.get();
+                final long next = Math.max(last + 1, now);
+                if(lastTimeAndSequence.compareAndSet(last, next)) return next;
+            }
+        }
+
+        private static String encoded(long id) {
+            final char[] encodedId = new char[ENCODED_LENGTH];
+            long remaining = id;
+            for(int index = ENCODED_LENGTH - 1; index>=0; index--) {
+                encodedId[index] = DIGITS.charAt((int) (remaining % DIGITS.length()));
+                remaining /= DIGITS.length();
+            }
+
+            return new String(encodedId);
+        }
+
+        //-1 si no es un id codificado como los de este generador
+        private static long decoded(String encodedId) {
+            if(encodedId.length()!=ENCODED_LENGTH) return -1;
+
+            long id = 0;
+            for(int index = 0; index<ENCODED_LENGTH; index++) {
+                final int digit = DIGITS.indexOf(encodedId.charAt(index));
+                if(digit<0) return -1;
+                try {
+                    id = Math.addExact(Math.multiplyExact(id, DIGITS.length()), digit);
+                } catch (ArithmeticException tooBig) {
+                    return -1;
+                }
+            }
+
+            return id;
+        }
+    }
+}
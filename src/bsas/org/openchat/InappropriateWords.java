@@ -0,0 +1,197 @@
+package bsas.org.openchat;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/* Automata de Aho-Corasick con todas las palabras inapropiadas. Recorre el
+ * mensaje una sola vez pasando cada caracter a minuscula a medida que lo lee,
+ * asi no se crea ningun objeto por mensaje sin importar cuantas palabras haya.
+ * Es inmutable, por eso se puede reemplazar por otra instancia mientras se
+ * esta usando desde otros threads.
+ */
+public class InappropriateWords {
+    private static final int ROOT = 0;
+    private static final String COMMENT_PREFIX = "#";
+
+    //Las transiciones de cada estado estan ordenadas por caracter en
+    //transitionCharacters[firstTransition[state]..firstTransition[state+1]]
+    private final int[] firstTransition;
+    private final char[] transitionCharacters;
+    private final int[] transitionTargets;
+    private final int[] failures;
+    private final boolean[] isMatch;
+    private final List<String> words;
+
+    private InappropriateWords(int[] firstTransition, char[] transitionCharacters, int[] transitionTargets,
+                               int[] failures, boolean[] isMatch, List<String> words) {
+        this.firstTransition = firstTransition;
+        this.transitionCharacters = transitionCharacters;
+        this.transitionTargets = transitionTargets;
+        this.failures = failures;
+        this.isMatch = isMatch;
+        this.words = words;
+    }
+
+    public static InappropriateWords from(Collection<String> words) {
+        final List<String> foldedWords = words.stream()
+                .map(word -> fold(word.trim()))
+                .filter(word -> !word.isEmpty())
+                .distinct()
+                .collect(Collectors.toList());
+
+        return new Builder(foldedWords).build();
+    }
+
+    //Una palabra por linea en UTF-8. Se ignoran las lineas vacias y las que empiezan con #
+    public static InappropriateWords loadedFrom(Path wordsFile) throws IOException {
+        return from(Files.readAllLines(wordsFile, StandardCharsets.UTF_8).stream()
+                .filter(line -> !line.trim().startsWith(COMMENT_PREFIX))
+                .collect(Collectors.toList()));
+    }
+
+    public boolean areContainedIn(CharSequence message) {
+        int state = ROOT;
+        for(int index = 0; index<message.length(); index++) {
+            state = nextState(state, Character.toLowerCase(message.charAt(index)));
+            if(isMatch[state]) return true;
+        }
+
+        return false;
+    }
+
+    public List<String> words() {
+        return words;
+    }
+
+    public int size() {
+        return words.size();
+    }
+
+    private int nextState(int state, char character) {
+        int currentState = state;
+        while (true) {
+            final int target = transitionFrom(currentState, character);
+            if(target!=-1) return target;
+            if(currentState==ROOT) return ROOT;
+            currentState = failures[currentState];
+        }
+    }
+
+    private int transitionFrom(int state, char character) {
+        int low = firstTransition[state];
+        int high = firstTransition[state + 1] - 1;
+        while (low<=high) {
+            final int middle = (low + high) >>> 1;
+            final char middleCharacter = transitionCharacters[middle];
+            if(middleCharacter<character) low = middle + 1;
+            else if(middleCharacter>character) high = middle - 1;
+            else return transitionTargets[middle];
+        }
+
+        return -1;
+    }
+
+    private static String fold(String word) {
+        final StringBuilder folded = new StringBuilder(word.length());
+        word.chars().forEach(character -> folded.append(Character.toLowerCase((char) character)));
+
+        return folded.toString();
+    }
+
+    private static class Builder {
+        private final List<String> words;
+        private final List<TreeMap<Character,Integer>> trie = new ArrayList<>();
+        private final List<Boolean> isEndOfWord = new ArrayList<>();
+
+        private Builder(List<String> words) {
+            this.words = words;
+            newState();
+        }
+
+        private InappropriateWords build() {
+            words.forEach(word -> addToTrie(word));
+
+            final int numberOfStates = trie.size();
+            final int[] failures = new int[numberOfStates];
+            final boolean[] isMatch = new boolean[numberOfStates];
+            calculateFailuresAndMatches(failures, isMatch);
+
+            final int[] firstTransition = new int[numberOfStates + 1];
+            for(int state = 0; state<numberOfStates; state++)
+                firstTransition[state + 1] = firstTransition[state] + trie.get(state).size();
+
+            final char[] transitionCharacters = new char[firstTransition[numberOfStates]];
+            final int[] transitionTargets = new int[firstTransition[numberOfStates]];
+            for(int state = 0; state<numberOfStates; state++) {
+                int transition = firstTransition[state];
+                for(Map.Entry<Character,Integer> edge : trie.get(state).entrySet()) {
+                    transitionCharacters[transition] = edge.getKey();
+                    transitionTargets[transition] = edge.getValue();
+                    transition++;
+                }
+            }
+
+            return new InappropriateWords(firstTransition, transitionCharacters, transitionTargets,
+                    failures, isMatch, Collections.unmodifiableList(words));
+        }
+
+        private void addToTrie(String word) {
+            int state = ROOT;
+            for(char character : word.toCharArray()) {
+                final Integer target = trie.get(state).get(character);
+                state = target!=null ? target : addTransition(state, character);
+            }
+            isEndOfWord.set(state, true);
+        }
+
+        private int addTransition(int state, char character) {
+            final int newState = newState();
+            trie.get(state).put(character, newState);
+
+            return newState;
+        }
+
+        private int newState() {
+            trie.add(new TreeMap<>());
+            isEndOfWord.add(false);
+
+            return trie.size() - 1;
+        }
+
+        //Recorrido por niveles: la falla de un estado siempre es menos profunda,
+        //asi que cuando se calcula ya estan calculadas las fallas que necesita
+        private void calculateFailuresAndMatches(int[] failures, boolean[] isMatch) {
+            final Deque<Integer> pending = new ArrayDeque<>();
+            trie.get(ROOT).values().forEach(child -> {
+                failures[child] = ROOT;
+                pending.add(child);
+            });
+            isMatch[ROOT] = false;
+
+            while (!pending.isEmpty()) {
+                final int state = pending.remove();
+                isMatch[state] = isEndOfWord.get(state) || isMatch[failures[state]];
+
+                for(Map.Entry<Character,Integer> edge : trie.get(state).entrySet()) {
+                    final int child = edge.getValue();
+                    failures[child] = failureOf(failures[state], edge.getKey(), failures);
+                    pending.add(child);
+                }
+            }
+        }
+
+        private int failureOf(int parentFailure, char character, int[] failures) {
+            int state = parentFailure;
+            while (true) {
+                final Integer target = trie.get(state).get(character);
+                if(target!=null) return target;
+                if(state==ROOT) return ROOT;
+                state = failures[state];
+            }
+        }
+    }
+}
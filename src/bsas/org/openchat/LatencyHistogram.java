@@ -0,0 +1,107 @@
+package bsas.org.openchat;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/* Histograma de latencias en nanosegundos con buckets log-lineales al estilo HdrHistogram:
+ * cada potencia de 2 se divide en SUB_BUCKETS partes iguales, asi el error relativo de un
+ * percentil es menor a 1/SUB_BUCKETS sin importar si la latencia es de microsegundos o de segundos.
+ * Se registra sin locks, asi lo pueden usar todos los threads de Jetty a la vez. Para consultarlo
+ * conviene hacer una copia, si no los valores pueden cambiar entre una consulta y otra.
+ */
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    //Los valores son positivos, asi que el bit mas alto es a lo sumo el 62
+    private static final int NUMBER_OF_BUCKETS = (Long.SIZE - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts;
+    private final LongAdder totalNanos = new LongAdder();
+    private final LongAccumulator maxValue = new LongAccumulator(Math::max, 0);
+
+    private LatencyHistogram(AtomicLongArray counts) {
+        this.counts = counts;
+    }
+
+    public static LatencyHistogram empty() {
+        return new LatencyHistogram(new AtomicLongArray(NUMBER_OF_BUCKETS));
+    }
+
+    public void record(long nanos) {
+        final long value = Math.max(nanos, 0);
+        counts.incrementAndGet(bucketIndexOf(value));
+        totalNanos.add(value);
+        maxValue.accumulate(value);
+    }
+
+    public void add(LatencyHistogram anotherHistogram) {
+        for(int index = 0; index<NUMBER_OF_BUCKETS; index++) counts.addAndGet(index, anotherHistogram.counts.get(index));
+        totalNanos.add(anotherHistogram.totalNanos());
+        maxValue.accumulate(anotherHistogram.max());
+    }
+
+    public LatencyHistogram copy() {
+        final LatencyHistogram copy = empty();
+        copy.add(this);
+
+        return copy;
+    }
+
+    public long count() {
+        long totalCount = 0;
+        for(int index = 0; index<NUMBER_OF_BUCKETS; index++) totalCount += counts.get(index);
+
+        return totalCount;
+    }
+
+    public long totalNanos() {
+        return totalNanos.sum();
+    }
+
+    public long max() {
+        return maxValue.get();
+    }
+
+    //Los valores de un bucket que incluye a nanos pero tambien a valores mayores no se cuentan
+    public long countAtOrBelow(long nanos) {
+        long accumulatedCount = 0;
+        for(int index = 0; index<NUMBER_OF_BUCKETS && highestValueIn(index)<=nanos; index++)
+            accumulatedCount += counts.get(index);
+
+        return accumulatedCount;
+    }
+
+    //El mayor valor del bucket donde esta el percentil, como hace HdrHistogram
+    public long valueAtPercentile(double percentile) {
+        final long totalCount = count();
+        if(totalCount==0) return 0;
+
+        final long countAtPercentile = Math.max(1, (long) Math.ceil(percentile / 100 * totalCount));
+        long accumulatedCount = 0;
+        for(int index = 0; index<NUMBER_OF_BUCKETS; index++) {
+            accumulatedCount += counts.get(index);
+            if(accumulatedCount>=countAtPercentile) return Math.min(highestValueIn(index), max());
+        }
+
+        return max();
+    }
+
+    private static int bucketIndexOf(long value) {
+        if(value<SUB_BUCKETS) return (int) value;
+
+        final int magnitude = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+        final int shift = magnitude - SUB_BUCKET_BITS;
+
+        return shift * SUB_BUCKETS + (int) (value >>> shift);
+    }
+
+    private static long highestValueIn(int index) {
+        if(index<SUB_BUCKETS) return index;
+
+        final int shift = (index - SUB_BUCKETS) / SUB_BUCKETS;
+        final long subBucket = SUB_BUCKETS + (index - SUB_BUCKETS) % SUB_BUCKETS;
+
+        return ((subBucket + 1) << shift) - 1;
+    }
+}
@@ -0,0 +1,80 @@
+package bsas.org.openchat;
+
+import java.util.List;
+import java.util.Optional;
+
+/* Mantiene las ultimas publicaciones del muro a medida que se publican
+ * (fan-out on write). Mientras no haya tenido que descartar ninguna
+ * el muro se lee directamente del buffer, sino se arma como siempre.
+ * Se sincroniza sobre si mismo porque lo actualizan los publishers seguidos
+ * mientras el dueño lo lee.
+ */
+class MaterializedWall implements Wall {
+    public static final String INVALID_CAPACITY = "Wall capacity must be positive";
+
+    private TimeOrderedPublications publications = TimeOrderedPublications.empty();
+    private final int capacity;
+    private boolean isComplete = true;
+
+    public static MaterializedWall withCapacity(int capacity) {
+        assertIsPositive(capacity);
+
+        return new MaterializedWall(capacity);
+    }
+
+    static void assertIsPositive(int capacity) {
+        if(capacity<=0) throw new ModelException(INVALID_CAPACITY);
+    }
+
+    private MaterializedWall(int capacity) {
+        this.capacity = capacity;
+    }
+
+    @Override
+    public List<Publication> publicationsOf(Publisher owner, PublicationsPage page) {
+        return page.selectFromWallOf(owner, this);
+    }
+
+    public List<Publication> latest(Publisher owner, int limit) {
+        return publicationsIfEnoughFor(limit)
+                .map(enoughPublications -> enoughPublications.newest(limit))
+                .orElseGet(() -> owner.assembledWall(PublicationsPage.latest(limit)));
+    }
+
+    @Override
+    public synchronized void publicationAdded(Publication publication) {
+        publications = publications.with(publication);
+        discardOldestOverCapacity();
+    }
+
+    @Override
+    public synchronized void followerAdded(Publisher follower) {
+        final List<Publication> followerTimeLine = follower.timeLine(capacity);
+        final TimeOrderedPublications merged = publications.mergedWith(followerTimeLine, capacity);
+
+        if(merged.size()<publications.size() + followerTimeLine.size()) isComplete = false;
+        if(follower.numberOfPublications()>followerTimeLine.size()) isComplete = false;
+        publications = merged;
+    }
+
+    public synchronized boolean isComplete() {
+        return isComplete;
+    }
+
+    public synchronized int size() {
+        return publications.size();
+    }
+
+    private synchronized Optional<TimeOrderedPublications> publicationsIfEnoughFor(int limit) {
+        if(!isComplete && publications.size()<limit) return Optional.empty();
+
+        return Optional.of(publications);
+    }
+
+    private void discardOldestOverCapacity() {
+        while(publications.size()>capacity) {
+            publications = publications.withoutOldest();
+            isComplete = false;
+        }
+    }
+}
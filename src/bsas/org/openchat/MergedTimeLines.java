@@ -0,0 +1,142 @@
+package bsas.org.openchat;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/* Recorre las publicaciones de varios timelines en orden sin juntarlas ni
+ * ordenarlas. El orden es de la mas nueva a la mas vieja y cuando dos
+ * publicaciones tienen el mismo tiempo sale primero la del timeline que se
+ * paso antes, igual que con el sort estable que habia antes.
+ * Para paginar se puede empezar despues de una publicacion, yendo hacia las
+ * mas viejas, o antes de ella yendo hacia las mas nuevas (en orden inverso).
+ */
+class MergedTimeLines implements Iterator<Publication> {
+    private static final int TOWARDS_OLDEST = -1;
+    private static final int TOWARDS_NEWEST = 1;
+
+    private final PriorityQueue<TimeLineCursor> cursors;
+
+    public static MergedTimeLines newestFirst(List<TimeOrderedPublications> timeLines) {
+        return new MergedTimeLines(IntStream.range(0, timeLines.size())
+                .mapToObj(index -> new TimeLineCursor(
+                        timeLines.get(index), index, timeLines.get(index).size() - 1, TOWARDS_OLDEST))
+                .collect(Collectors.toList()));
+    }
+
+    public static MergedTimeLines newestFirstOlderThan(Publication publication, List<TimeOrderedPublications> timeLines) {
+        final int publicationTimeLineIndex = timeLineIndexOf(publication, timeLines);
+
+        return new MergedTimeLines(IntStream.range(0, timeLines.size())
+                .mapToObj(index -> new TimeLineCursor(
+                        timeLines.get(index),
+                        index,
+                        lastIndexOlderThan(publication, publicationTimeLineIndex, index, timeLines.get(index)),
+                        TOWARDS_OLDEST))
+                .collect(Collectors.toList()));
+    }
+
+    public static MergedTimeLines oldestFirstNewerThan(Publication publication, List<TimeOrderedPublications> timeLines) {
+        final int publicationTimeLineIndex = timeLineIndexOf(publication, timeLines);
+
+        return new MergedTimeLines(IntStream.range(0, timeLines.size())
+                .mapToObj(index -> new TimeLineCursor(
+                        timeLines.get(index),
+                        index,
+                        firstIndexNewerThan(publication, publicationTimeLineIndex, index, timeLines.get(index)),
+                        TOWARDS_NEWEST))
+                .collect(Collectors.toList()));
+    }
+
+    private static int timeLineIndexOf(Publication publication, List<TimeOrderedPublications> timeLines) {
+        return IntStream.range(0, timeLines.size())
+                .filter(index -> timeLines.get(index).indexOf(publication)>=0)
+                .findFirst()
+                .orElseThrow(() -> new ModelException(OpenChatSystem.INVALID_PUBLICATION));
+    }
+
+    private static int lastIndexOlderThan(Publication publication, int publicationTimeLineIndex,
+                                          int timeLineIndex, TimeOrderedPublications timeLine) {
+        if(timeLineIndex<publicationTimeLineIndex) return timeLine.firstIndexNotOlderThan(publication) - 1;
+        if(timeLineIndex>publicationTimeLineIndex) return timeLine.firstIndexNewerThan(publication) - 1;
+        return timeLine.indexOf(publication) - 1;
+    }
+
+    private static int firstIndexNewerThan(Publication publication, int publicationTimeLineIndex,
+                                           int timeLineIndex, TimeOrderedPublications timeLine) {
+        if(timeLineIndex<publicationTimeLineIndex) return timeLine.firstIndexNotOlderThan(publication);
+        if(timeLineIndex>publicationTimeLineIndex) return timeLine.firstIndexNewerThan(publication);
+        return timeLine.indexOf(publication) + 1;
+    }
+
+    private MergedTimeLines(List<TimeLineCursor> cursors) {
+        this.cursors = new PriorityQueue<>(cursors.stream()
+                .filter(cursor -> cursor.hasCurrent())
+                .collect(Collectors.toList()));
+    }
+
+    @Override
+    public boolean hasNext() {
+        return !cursors.isEmpty();
+    }
+
+    @Override
+    public Publication next() {
+        final TimeLineCursor nextCursor = cursors.poll();
+        if(nextCursor==null) throw new NoSuchElementException();
+
+        final Publication nextPublication = nextCursor.current();
+        if(nextCursor.advance()) cursors.add(nextCursor);
+
+        return nextPublication;
+    }
+
+    public List<Publication> next(int limit) {
+        final List<Publication> publications = new ArrayList<>(Math.min(limit, 16));
+        while(publications.size()<limit && hasNext())
+            publications.add(next());
+
+        return publications;
+    }
+
+    private static class TimeLineCursor implements Comparable<TimeLineCursor> {
+        private final TimeOrderedPublications timeLine;
+        private final int timeLineIndex;
+        private final int step;
+        private int position;
+
+        public TimeLineCursor(TimeOrderedPublications timeLine, int timeLineIndex, int position, int step) {
+            this.timeLine = timeLine;
+            this.timeLineIndex = timeLineIndex;
+            this.position = position;
+            this.step = step;
+        }
+
+        public boolean hasCurrent() {
+            return position>=0 && position<timeLine.size();
+        }
+
+        public Publication current() {
+            return timeLine.get(position);
+        }
+
+        public boolean advance() {
+            position += step;
+            return hasCurrent();
+        }
+
+        @Override
+        public int compareTo(TimeLineCursor cursorToCompare) {
+            final int timeComparison = cursorToCompare.current().comparePublicationTimeWith(current());
+            final int newestFirstComparison = timeComparison!=0
+                    ? timeComparison
+                    : Integer.compare(timeLineIndex, cursorToCompare.timeLineIndex);
+
+            return step==TOWARDS_OLDEST ? newestFirstComparison : -newestFirstComparison;
+        }
+    }
+}
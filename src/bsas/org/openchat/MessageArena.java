@@ -0,0 +1,83 @@
+package bsas.org.openchat;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.function.LongFunction;
+
+/* Los mensajes de las publicaciones en UTF-8, fuera del heap, en chunks de ByteBuffers directos
+ * donde se agregan uno a continuacion del otro. Asi el GC no recorre ni copia el texto, que es lo
+ * que mas memoria ocupa. Un mensaje se identifica por su direccion (el numero de chunk en los 32
+ * bits altos y la posicion en el chunk en los bajos) y su largo. Cada OpenChatSystem tiene el
+ * suyo. Los mensajes no se borran, como las publicaciones, asi que los chunks se liberan recien
+ * cuando el GC junta al arena.
+ * Se agrega con el lock del arena. Se lee sin locks: quien lee una direccion ya vio a la
+ * publicacion, que se hizo visible despues de agregar el mensaje.
+ */
+class MessageArena {
+    public static final int DEFAULT_CHUNK_SIZE = 1 << 20;
+
+    private final int chunkSize;
+    private volatile ByteBuffer[] chunks = new ByteBuffer[0];
+    private ByteBuffer currentChunk = ByteBuffer.allocateDirect(0);
+
+    private MessageArena(int chunkSize) {
+        this.chunkSize = chunkSize;
+    }
+
+    public static MessageArena withChunkSize(int chunkSize) {
+        return new MessageArena(chunkSize);
+    }
+
+    public long add(byte[] encodedMessage) {
+        return add(encodedMessage, address -> address);
+    }
+
+    /* addedMessage se evalua con la direccion del mensaje ya copiado y con el lock del arena.
+     * Si falla, el lugar del mensaje se vuelve a usar para el siguiente
+     */
+    public synchronized <T> T add(byte[] encodedMessage, LongFunction<T> addedMessage) {
+        //Sin chunks ni un mensaje vacio tendria donde estar
+        if(chunks.length==0 || encodedMessage.length>currentChunk.remaining()) addChunkWithRoomFor(encodedMessage.length);
+
+        final int position = currentChunk.position();
+        currentChunk.put(encodedMessage);
+        try {
+            return addedMessage.apply(((long) (chunks.length - 1) << 32) | position);
+        } catch (RuntimeException error) {
+            currentChunk.position(position);
+            throw error;
+        }
+    }
+
+    public String messageAt(long address, int length) {
+        final byte[] encodedMessage = new byte[length];
+        final ByteBuffer chunk = chunkAt(address).duplicate();
+        chunk.position(positionOf(address));
+        chunk.get(encodedMessage);
+
+        return new String(encodedMessage, StandardCharsets.UTF_8);
+    }
+
+    //Copia los bytes del mensaje al writer escapandolos, sin armar el String
+    public void writeMessageTo(Utf8JsonWriter writer, long address, int length) throws IOException {
+        writer.utf8String(chunkAt(address), positionOf(address), length);
+    }
+
+    private ByteBuffer chunkAt(long address) {
+        return chunks[(int) (address >>> 32)];
+    }
+
+    private static int positionOf(long address) {
+        return (int) address;
+    }
+
+    //Lo que quede libre en el chunk actual no se usa mas, un mensaje siempre esta en un solo chunk
+    private void addChunkWithRoomFor(int length) {
+        currentChunk = ByteBuffer.allocateDirect(Math.max(chunkSize, length));
+        final ByteBuffer[] newChunks = Arrays.copyOf(chunks, chunks.length + 1);
+        newChunks[chunks.length] = currentChunk;
+        chunks = newChunks;
+    }
+}
@@ -0,0 +1,179 @@
+package bsas.org.openchat;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/* Cada cambio que se hace por la API, con los ids que le asigno el RestReceptionist.
+ * Se guardan en el EventLog y al arrancar se vuelven a aplicar en el mismo orden.
+ */
+public abstract class OpenChatEvent {
+    public static final String INVALID_EVENT_TYPE = "Invalid event type";
+
+    private static final byte USER_REGISTERED = 1;
+    private static final byte FOLLOWED = 2;
+    private static final byte PUBLISHED = 3;
+    private static final byte LIKED = 4;
+
+    public static OpenChatEvent userRegistered(String userId, String userName, String password, String about, String homePage) {
+        return new UserRegistered(userId, userName, password, about, homePage);
+    }
+
+    public static OpenChatEvent followed(String followedId, String followerId) {
+        return new Followed(followedId, followerId);
+    }
+
+    public static OpenChatEvent published(String publicationId, String userId, String message, LocalDateTime publicationTime) {
+        return new Published(publicationId, userId, message, publicationTime);
+    }
+
+    public static OpenChatEvent liked(String publicationId, String likerId) {
+        return new Liked(publicationId, likerId);
+    }
+
+    public static OpenChatEvent readFrom(DataInput input) throws IOException {
+        final byte type = input.readByte();
+        switch (type) {
+            case USER_REGISTERED: return new UserRegistered(
+                    readString(input), readString(input), readString(input), readString(input), readString(input));
+            case FOLLOWED: return new Followed(readString(input), readString(input));
+            case PUBLISHED: return new Published(
+                    readString(input), readString(input), readString(input), readDateTime(input));
+            case LIKED: return new Liked(readString(input), readString(input));
+            default: throw new IOException(INVALID_EVENT_TYPE + ": " + type);
+        }
+    }
+
+    public abstract void writeTo(DataOutput output) throws IOException;
+
+    public abstract void restoreOn(RestReceptionist receptionist);
+
+    //No uso writeUTF porque limita los strings a 64K
+    static void writeString(DataOutput output, String value) throws IOException {
+        final byte[] encodedValue = value.getBytes(StandardCharsets.UTF_8);
+        output.writeInt(encodedValue.length);
+        output.write(encodedValue);
+    }
+
+    static String readString(DataInput input) throws IOException {
+        final byte[] encodedValue = new byte[input.readInt()];
+        input.readFully(encodedValue);
+
+        return new String(encodedValue, StandardCharsets.UTF_8);
+    }
+
+    static void writeDateTime(DataOutput output, LocalDateTime dateTime) throws IOException {
+        output.writeLong(dateTime.toEpochSecond(ZoneOffset.UTC));
+        output.writeInt(dateTime.getNano());
+    }
+
+    static LocalDateTime readDateTime(DataInput input) throws IOException {
+        return LocalDateTime.ofEpochSecond(input.readLong(), input.readInt(), ZoneOffset.UTC);
+    }
+
+    private static class UserRegistered extends OpenChatEvent {
+        private final String userId;
+        private final String userName;
+        private final String password;
+        private final String about;
+        private final String homePage;
+
+        private UserRegistered(String userId, String userName, String password, String about, String homePage) {
+            this.userId = userId;
+            this.userName = userName;
+            this.password = password;
+            this.about = about;
+            this.homePage = homePage;
+        }
+
+        @Override
+        public void writeTo(DataOutput output) throws IOException {
+            output.writeByte(USER_REGISTERED);
+            writeString(output, userId);
+            writeString(output, userName);
+            writeString(output, password);
+            writeString(output, about);
+            writeString(output, homePage);
+        }
+
+        @Override
+        public void restoreOn(RestReceptionist receptionist) {
+            receptionist.restoreRegistration(userId, userName, password, about, homePage);
+        }
+    }
+
+    private static class Followed extends OpenChatEvent {
+        private final String followedId;
+        private final String followerId;
+
+        private Followed(String followedId, String followerId) {
+            this.followedId = followedId;
+            this.followerId = followerId;
+        }
+
+        @Override
+        public void writeTo(DataOutput output) throws IOException {
+            output.writeByte(FOLLOWED);
+            writeString(output, followedId);
+            writeString(output, followerId);
+        }
+
+        @Override
+        public void restoreOn(RestReceptionist receptionist) {
+            receptionist.restoreFollowing(followedId, followerId);
+        }
+    }
+
+    private static class Published extends OpenChatEvent {
+        private final String publicationId;
+        private final String userId;
+        private final String message;
+        private final LocalDateTime publicationTime;
+
+        private Published(String publicationId, String userId, String message, LocalDateTime publicationTime) {
+            this.publicationId = publicationId;
+            this.userId = userId;
+            this.message = message;
+            this.publicationTime = publicationTime;
+        }
+
+        @Override
+        public void writeTo(DataOutput output) throws IOException {
+            output.writeByte(PUBLISHED);
+            writeString(output, publicationId);
+            writeString(output, userId);
+            writeString(output, message);
+            writeDateTime(output, publicationTime);
+        }
+
+        @Override
+        public void restoreOn(RestReceptionist receptionist) {
+            receptionist.restorePublication(publicationId, userId, message, publicationTime);
+        }
+    }
+
+    private static class Liked extends OpenChatEvent {
+        private final String publicationId;
+        private final String likerId;
+
+        private Liked(String publicationId, String likerId) {
+            this.publicationId = publicationId;
+            this.likerId = likerId;
+        }
+
+        @Override
+        public void writeTo(DataOutput output) throws IOException {
+            output.writeByte(LIKED);
+            writeString(output, publicationId);
+            writeString(output, likerId);
+        }
+
+        @Override
+        public void restoreOn(RestReceptionist receptionist) {
+            receptionist.restoreLike(publicationId, likerId);
+        }
+    }
+}
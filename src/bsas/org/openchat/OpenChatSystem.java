@@ -1,6 +1,11 @@
 package bsas.org.openchat;
 
+import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
@@ -9,13 +14,30 @@ public class OpenChatSystem {
     public static final String CANNOT_REGISTER_SAME_USER_TWICE = "Username already in use.";
     public static final String USER_NOT_REGISTERED = "User not registered";
     public static final String INVALID_PUBLICATION = "Invalid post";
+    public static final String INVALID_USERS_PAGE = "Invalid users page";
 
-    private final Map<String,UserCard> userCards = new HashMap<>();
-    private final Map<Publication,Set<Publisher>> likersByPublication = new HashMap<>();
+    private final Map<String,UserCard> userCards = new ConcurrentHashMap<>();
+    private final AppendOnlyList<User> usersInRegistrationOrder = new AppendOnlyList<>();
+    //Solo las publicaciones que tienen likes, se agregan con el primero
+    private final Map<Publication,PublicationLikes> likesByPublication = new ConcurrentHashMap<>();
     private final Clock clock;
+    private final BiFunction<User,MessageArena,Publisher> publisherCreator;
+    //Los mensajes de todas las publicaciones, se libera junto con el sistema
+    private final MessageArena messageArena = MessageArena.withChunkSize(MessageArena.DEFAULT_CHUNK_SIZE);
 
     public OpenChatSystem(Clock clock){
+        this(clock, (user, messageArena) -> Publisher.relatedTo(user, messageArena));
+    }
+
+    public static OpenChatSystem withMaterializedWalls(Clock clock, int wallCapacity){
+        MaterializedWall.assertIsPositive(wallCapacity);
+
+        return new OpenChatSystem(clock, (user, messageArena) -> Publisher.withMaterializedWallRelatedTo(user, wallCapacity, messageArena));
+    }
+
+    private OpenChatSystem(Clock clock, BiFunction<User,MessageArena,Publisher> publisherCreator){
         this.clock = clock;
+        this.publisherCreator = publisherCreator;
     }
 
     public boolean hasUsers() {
@@ -23,16 +45,87 @@ public class OpenChatSystem {
     }
 
     public User register(String userName, String password, String about, String homePage) {
-        assertIsNotDuplicated(userName);
+        return register(userName, password, about, homePage, newPublisher -> {});
+    }
 
+    /* beforeBeingVisible se evalua con el publisher del usuario ya aceptado pero antes de que
+     * otro thread lo pueda encontrar. Si falla, el usuario no se registra
+     */
+    public User register(String userName, String password, String about, String homePage, Consumer<Publisher> beforeBeingVisible) {
         final User newUser = User.named(userName, about,homePage);
-        userCards.put(
-                userName,
-                UserCard.of(newUser,password, Publisher.relatedTo(newUser)));
+        final Publisher newPublisher = publisherCreator.apply(newUser, messageArena);
+
+        //Se sincroniza solo para que el chequeo de duplicados y el orden de registro sean atomicos
+        synchronized (usersInRegistrationOrder) {
+            assertIsNotDuplicated(userName);
+            beforeBeingVisible.accept(newPublisher);
+            addRegistered(newUser, password, newPublisher);
+        }
 
         return newUser;
     }
 
+    public void registerAll(List<Registration> registrations,
+                            BiConsumer<Registration,User> registeredClosure,
+                            BiConsumer<Registration,ModelException> failedClosure) {
+        registerAll(registrations, registeredClosure, failedClosure, (acceptedRegistrations, newPublishers) -> {});
+    }
+
+    /* Registra a todos tomando el lock una sola vez, los que no se pueden registrar no impiden
+     * registrar al resto. beforeBeingVisible se evalua una vez con los aceptados y sus publishers,
+     * en orden, antes de que otro thread pueda encontrar a alguno; si falla no se registra ninguno.
+     * Despues evalua registeredClosure o failedClosure para cada uno, en orden
+     */
+    public void registerAll(List<Registration> registrations,
+                            BiConsumer<Registration,User> registeredClosure,
+                            BiConsumer<Registration,ModelException> failedClosure,
+                            BiConsumer<List<Registration>,List<Publisher>> beforeBeingVisible) {
+        final User[] newUsers = new User[registrations.size()];
+        final Publisher[] newPublishers = new Publisher[registrations.size()];
+        final ModelException[] failures = new ModelException[registrations.size()];
+        for(int index = 0; index<registrations.size(); index++) {
+            final Registration registration = registrations.get(index);
+            try {
+                newUsers[index] = User.named(registration.userName(), registration.about(), registration.homePage());
+                newPublishers[index] = publisherCreator.apply(newUsers[index], messageArena);
+            } catch (ModelException error) {
+                failures[index] = error;
+            }
+        }
+
+        synchronized (usersInRegistrationOrder) {
+            final List<Registration> acceptedRegistrations = new ArrayList<>(registrations.size());
+            final List<Publisher> acceptedPublishers = new ArrayList<>(registrations.size());
+            final Set<String> acceptedNames = new HashSet<>();
+            for(int index = 0; index<registrations.size(); index++) {
+                if(newUsers[index]==null) continue;
+                //Tambien rechaza al segundo con el mismo nombre dentro de registrations
+                if(hasUserNamed(newUsers[index].name()) || !acceptedNames.add(newUsers[index].name())) {
+                    failures[index] = new ModelException(CANNOT_REGISTER_SAME_USER_TWICE);
+                    newUsers[index] = null;
+                } else {
+                    acceptedRegistrations.add(registrations.get(index));
+                    acceptedPublishers.add(newPublishers[index]);
+                }
+            }
+
+            beforeBeingVisible.accept(acceptedRegistrations, acceptedPublishers);
+            for(int index = 0; index<registrations.size(); index++)
+                if(newUsers[index]!=null) addRegistered(newUsers[index], registrations.get(index).password(), newPublishers[index]);
+        }
+
+        for(int index = 0; index<registrations.size(); index++) {
+            if(newUsers[index]==null) failedClosure.accept(registrations.get(index), failures[index]);
+            else registeredClosure.accept(registrations.get(index), newUsers[index]);
+        }
+    }
+
+    //Primero se agrega a la lista, asi todo indice de registro que se pueda usar ya esta en ella
+    private void addRegistered(User newUser, String password, Publisher newPublisher) {
+        final int registrationIndex = usersInRegistrationOrder.add(newUser);
+        userCards.put(newUser.name(), UserCard.of(newUser, password, newPublisher, registrationIndex));
+    }
+
     public boolean hasUserNamed(String potentialUserName) {
         //Uso userCardForUserName en vez de hacer userCards.get
         //para que la búsqueda por nombre esté en un solo lugar
@@ -51,38 +144,116 @@ public class OpenChatSystem {
                 .orElseGet(failedClosure);
     }
 
+    public Publisher publisherRelatedTo(User user) {
+        return userCardForUserName(user.name())
+                .filter(userCard -> userCard.user().equals(user))
+                .map(userCard -> userCard.publisher())
+                .orElseThrow(()-> new ModelException(USER_NOT_REGISTERED));
+    }
+
     public Publication publishForUserNamed(String userName, String message) {
-        final Publication newPublication = publisherForUserNamed(userName).publish(message, clock.now());
-        likersByPublication.put(newPublication,new HashSet<>());
+        return publishFor(publisherForUserNamed(userName), message);
+    }
+
+    public Publication publishFor(Publisher publisher, String message) {
+        return publishFor(publisher, message, newPublication -> {});
+    }
+
+    public Publication publishFor(Publisher publisher, String message, Consumer<Publication> beforeBeingVisible) {
+        return publisher.publish(message, clock.now(), beforeBeingVisible);
+    }
 
-        return newPublication;
+    //Para volver a armar publicaciones que ya se habian hecho, con su fecha original
+    Publication restorePublicationFor(Publisher publisher, String message, LocalDateTime publicationTime,
+                                      Consumer<Publication> beforeBeingVisible) {
+        return publisher.restorePublication(message, publicationTime, beforeBeingVisible);
     }
 
     public List<Publication> timeLineForUserNamed(String userName) {
-        return publisherForUserNamed(userName).timeLine();
+        return timeLineOf(publisherForUserNamed(userName));
+    }
+
+    public List<Publication> timeLineForUserNamed(String userName, PublicationsPage page) {
+        return timeLineOf(publisherForUserNamed(userName), page);
+    }
+
+    public List<Publication> timeLineOf(Publisher publisher) {
+        return publisher.timeLine();
+    }
+
+    public List<Publication> timeLineOf(Publisher publisher, PublicationsPage page) {
+        return publisher.timeLine(page);
     }
 
     public void followForUserNamed(String followedUserName, String followerUserName) {
-        Publisher followed = publisherForUserNamed(followedUserName);
-        Publisher follower = publisherForUserNamed(followerUserName);
+        follow(
+                publisherForUserNamed(followedUserName),
+                publisherForUserNamed(followerUserName));
+    }
 
-        followed.followedBy(follower);
+    public void follow(Publisher followed, Publisher follower) {
+        follow(followed, follower, () -> {});
+    }
+
+    public void follow(Publisher followed, Publisher follower, Runnable beforeBeingVisible) {
+        followed.followedBy(follower, beforeBeingVisible);
     }
 
     public List<User> followersOfUserNamed(String userName) {
-        return publisherForUserNamed(userName).followers().stream()
-                .map(publisher -> publisher.relatedUser())
+        return followersOf(publisherForUserNamed(userName));
+    }
+
+    public List<User> followersOf(Publisher publisher) {
+        return publisher.followers().stream()
+                .map(follower -> follower.relatedUser())
                 .collect(Collectors.toList());
     }
 
     public List<Publication> wallForUserNamed(String userName) {
-        return publisherForUserNamed(userName).wall();
+        return wallOf(publisherForUserNamed(userName));
+    }
+
+    public List<Publication> wallForUserNamed(String userName, PublicationsPage page) {
+        return wallOf(publisherForUserNamed(userName), page);
+    }
+
+    public List<Publication> wallOf(Publisher publisher) {
+        return publisher.wall();
+    }
+
+    public List<Publication> wallOf(Publisher publisher, PublicationsPage page) {
+        return publisher.wall(page);
     }
 
     public List<User> users() {
-        return userCards.values().stream()
-                .map(userCard->userCard.user())
-                .collect(Collectors.toList());
+        return new ArrayList<>(usersInRegistrationOrder.asList());
+    }
+
+    public List<User> users(int offset, int limit) {
+        assertIsValidUsersPage(offset, limit);
+
+        return usersInRegistrationOrder.subList(offset, (int) Math.min((long) offset + limit, Integer.MAX_VALUE));
+    }
+
+    public List<User> usersRegisteredAfter(User user, int limit) {
+        final int registrationIndex = userCardForUserName(user.name())
+                .filter(userCard -> userCard.user().equals(user))
+                .map(userCard -> userCard.registrationIndex())
+                .orElseThrow(()-> new ModelException(USER_NOT_REGISTERED));
+
+        return users(registrationIndex + 1, limit);
+    }
+
+    //Solo para guardar el estado, la password no sale del sistema por ningun otro lado
+    String passwordOf(User user) {
+        return userCardForUserName(user.name())
+                .filter(userCard -> userCard.user().equals(user))
+                .map(userCard -> userCard.password)
+                .orElseThrow(()-> new ModelException(USER_NOT_REGISTERED));
+    }
+
+    private void assertIsValidUsersPage(int offset, int limit) {
+        if(offset<0 || limit<=0) throw new ModelException(INVALID_USERS_PAGE);
     }
 
     private void assertIsNotDuplicated(String userName) {
@@ -107,38 +278,75 @@ public class OpenChatSystem {
     }
 
     public int likesOf(Publication publication) {
-        return likersOf(publication).size();
+        assertIsPublished(publication);
+        final PublicationLikes likes = likesByPublication.get(publication);
+
+        return likes==null ? 0 : likes.count();
     }
 
     public int likePublication(Publication publication, String userName) {
-        final Set<Publisher> likers = likersOf(publication);
+        assertIsPublished(publication);
 
-        likers.add(publisherForUserNamed(userName));
+        return addLikerTo(publication, userCardForUserName(userName)
+                .orElseThrow(()-> new ModelException(USER_NOT_REGISTERED)));
+    }
 
-        return likers.size();
+    public int likePublication(Publication publication, Publisher liker) {
+        return likePublication(publication, liker, () -> {});
     }
 
-    private Set<Publisher> likersOf(Publication publication) {
-        final Set<Publisher> likers = likersByPublication.get(publication);
-        if (likers == null) throw new ModelException(INVALID_PUBLICATION);
+    //beforeBeingVisible se evalua cuando ya se sabe que puede darle like pero antes de contarlo
+    public int likePublication(Publication publication, Publisher liker, Runnable beforeBeingVisible) {
+        assertIsPublished(publication);
+        final UserCard likerCard = userCardForUserName(liker.relatedUser().name())
+                .filter(userCard -> userCard.publisher()==liker)
+                .orElseThrow(()-> new ModelException(USER_NOT_REGISTERED));
+        beforeBeingVisible.run();
+
+        return addLikerTo(publication, likerCard);
+    }
+
+    public List<User> likersOf(Publication publication) {
+        final List<User> users = usersInRegistrationOrder.asList();
+        final List<User> likers = new ArrayList<>();
+        assertIsPublished(publication);
+        final PublicationLikes likes = likesByPublication.get(publication);
+        if(likes!=null) likes.likerIndexesDo(likerIndex -> likers.add(users.get(likerIndex)));
 
         return likers;
     }
 
+    private int addLikerTo(Publication publication, UserCard likerCard) {
+        final PublicationLikes likes = likesByPublication.computeIfAbsent(publication, newlyLiked -> PublicationLikes.empty());
+        if(likes.likedBy(likerCard.registrationIndex())) publication.likesChanged();
+
+        return likes.count();
+    }
+
+    //La publico el publisher registrado en este sistema para su usuario
+    private void assertIsPublished(Publication publication) {
+        if(userCardForUserName(publication.publisherRelatedUser().name())
+                .filter(userCard -> publication.wasPublishedBy(userCard.publisher()))
+                .isEmpty())
+            throw new ModelException(INVALID_PUBLICATION);
+    }
+
     private static class UserCard {
 
         private final User user;
         private final String password;
         private final Publisher publisher;
+        private final int registrationIndex;
 
-        public UserCard(User user, String password, Publisher publisher) {
+        public UserCard(User user, String password, Publisher publisher, int registrationIndex) {
             this.user = user;
             this.password = password;
             this.publisher = publisher;
+            this.registrationIndex = registrationIndex;
         }
 
-        public static UserCard of(User user, String password, Publisher publisher) {
-            return new UserCard(user,password,publisher);
+        public static UserCard of(User user, String password, Publisher publisher, int registrationIndex) {
+            return new UserCard(user,password,publisher,registrationIndex);
         }
 
         public User user() {
@@ -152,5 +360,9 @@ public class OpenChatSystem {
         public Publisher publisher() {
             return publisher;
         }
+
+        public int registrationIndex() {
+            return registrationIndex;
+        }
     }
 }
\ No newline at end of file
@@ -1,29 +1,55 @@
 package bsas.org.openchat;
 
+import java.io.IOException;
 import java.time.LocalDateTime;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.function.Consumer;
 
 public class Publication {
     public static final String INAPPROPRIATE_WORD = "Post contains inappropriate language.";
     public static final List<String> inappropriateWords =
             Collections.unmodifiableList(Arrays.asList("elephant","ice cream","orange"));
 
+    //Es volatile para poder cambiar las palabras mientras se publica sin bloquear a nadie
+    private static volatile InappropriateWords inappropriateWordsInUse = InappropriateWords.from(inappropriateWords);
+
+    //El mensaje y el tiempo estan en el PublicationStore del publisher, en la posicion index
     private final Publisher publisher;
-    private final String message;
-    private final LocalDateTime publicationTime;
+    private final int index;
 
-    public Publication(Publisher publisher, String message, LocalDateTime publicationTime) {
+    private Publication(Publisher publisher, int index) {
         this.publisher = publisher;
-        this.message = message;
-        this.publicationTime = publicationTime;
+        this.index = index;
     }
 
     public static Publication madeBy(Publisher publisher, String message, LocalDateTime publicationTime) {
+        return madeBy(publisher,message,publicationTime,newPublication -> {});
+    }
+
+    static Publication madeBy(Publisher publisher, String message, LocalDateTime publicationTime,
+                              Consumer<Publication> beforeBeingStored) {
         assertIsAppropriate(message);
 
-        return new Publication(publisher,message,publicationTime);
+        return storedFor(publisher,message,publicationTime,beforeBeingStored);
+    }
+
+    static Publication restoredFor(Publisher publisher, String message, LocalDateTime publicationTime,
+                                   Consumer<Publication> beforeBeingStored) {
+        return storedFor(publisher,message,publicationTime,beforeBeingStored);
+    }
+
+    /* beforeBeingStored se evalua con la publicacion ya en el store, con su lock. Si falla la
+     * publicacion se saca del store, asi lo que no se pudo guardar en el log no ocupa memoria
+     */
+    private static Publication storedFor(Publisher publisher, String message, LocalDateTime publicationTime,
+                                         Consumer<Publication> beforeBeingStored) {
+        return publisher.publicationStore().add(message,publicationTime,index -> {
+            final Publication newPublication = new Publication(publisher,index);
+            beforeBeingStored.accept(newPublication);
+            return newPublication;
+        });
     }
 
     private static void assertIsAppropriate(String message) {
@@ -32,33 +58,56 @@ public class Publication {
     }
 
     private static boolean isInappropriate(String message) {
-        final String lowerCaseMessage = message.toLowerCase();
+        return inappropriateWordsInUse.areContainedIn(message);
+    }
+
+    public static void useInappropriateWords(InappropriateWords newInappropriateWords) {
+        inappropriateWordsInUse = newInappropriateWords;
+    }
 
-        return inappropriateWords.stream().anyMatch(inappropriateWord ->
-                lowerCaseMessage.contains(inappropriateWord));
+    public static InappropriateWords inappropriateWordsInUse() {
+        return inappropriateWordsInUse;
     }
 
     public boolean hasMessage(String potentialMessage) {
-        return message.equals(potentialMessage);
+        return message().equals(potentialMessage);
     }
 
     public boolean wasPublishedAt(LocalDateTime potentialTime) {
-        return publicationTime.equals(potentialTime);
+        return epochNanos()==PublicationStore.epochNanosOf(potentialTime);
+    }
+
+    public boolean wasPublishedBy(Publisher potentialPublisher) {
+        return publisher==potentialPublisher;
     }
 
+    //Se compara sin armar los LocalDateTime, es lo que mas se hace al ordenar muros
     public int comparePublicationTimeWith(Publication publicationToCompare) {
-        return publicationTime.compareTo(publicationToCompare.publicationTime());
+        return Long.compare(epochNanos(), publicationToCompare.epochNanos());
     }
 
     public LocalDateTime publicationTime() {
-        return publicationTime;
+        return publisher.publicationStore().publicationTimeAt(index);
     }
 
     public String message() {
-        return message;
+        return publisher.publicationStore().messageAt(index);
+    }
+
+    //Para el Json de la publicacion, sin pasar el mensaje a String
+    void writeMessageTo(Utf8JsonWriter writer) throws IOException {
+        publisher.publicationStore().writeMessageTo(writer, index);
+    }
+
+    private long epochNanos() {
+        return publisher.publicationStore().epochNanosAt(index);
     }
 
     public User publisherRelatedUser(){
         return publisher.relatedUser();
     }
+
+    void likesChanged() {
+        publisher.publicationsChanged();
+    }
 }
@@ -0,0 +1,79 @@
+package bsas.org.openchat;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntConsumer;
+
+/* Likes de una publicacion pensados para publicaciones muy likeadas desde
+ * muchos threads a la vez. Cada liker se identifica por su indice de registro,
+ * que es compacto, y se marca en un bitset con compareAndSet, asi que dos likes
+ * solo compiten si caen en el mismo long. El total se lleva en un LongAdder
+ * para que contar no sea un punto de contencion. El bitset esta partido en chunks
+ * que se crean cuando se necesitan, guardados por numero de chunk, asi un like de
+ * un usuario registrado hace mucho o hace poco ocupa lo mismo.
+ */
+class PublicationLikes {
+    private static final int BITS_PER_WORD = Long.SIZE;
+    private static final int WORDS_PER_CHUNK = 16;
+    private static final int BITS_PER_CHUNK = BITS_PER_WORD * WORDS_PER_CHUNK;
+
+    private final Map<Integer,AtomicLongArray> chunks = new ConcurrentHashMap<>();
+    private final LongAdder count = new LongAdder();
+
+    public static PublicationLikes empty() {
+        return new PublicationLikes();
+    }
+
+    public boolean likedBy(int likerIndex) {
+        final AtomicLongArray chunk = chunkFor(likerIndex);
+        final int wordIndex = (likerIndex % BITS_PER_CHUNK) / BITS_PER_WORD;
+        final long mask = 1L << (likerIndex % BITS_PER_WORD);
+
+        long word;
+        do {
+            word = chunk.get(wordIndex);
+            if((word & mask)!=0) return false;
+        } while (!chunk.compareAndSet(wordIndex, word, word | mask));
+
+        count.increment();
+        return true;
+    }
+
+    public boolean isLikedBy(int likerIndex) {
+        final AtomicLongArray chunk = chunks.get(likerIndex / BITS_PER_CHUNK);
+        if(chunk==null) return false;
+
+        return (chunk.get((likerIndex % BITS_PER_CHUNK) / BITS_PER_WORD)
+                & (1L << (likerIndex % BITS_PER_WORD)))!=0;
+    }
+
+    //En orden de registro
+    public void likerIndexesDo(IntConsumer closure) {
+        final int[] chunkIndexes = chunks.keySet().stream().mapToInt(chunkIndex -> chunkIndex).sorted().toArray();
+        for(int chunkIndex : chunkIndexes) {
+            final AtomicLongArray chunk = chunks.get(chunkIndex);
+            for(int wordIndex = 0; wordIndex<WORDS_PER_CHUNK; wordIndex++) {
+                long word = chunk.get(wordIndex);
+                while (word!=0) {
+                    closure.accept(chunkIndex * BITS_PER_CHUNK + wordIndex * BITS_PER_WORD + Long.numberOfTrailingZeros(word));
+                    word &= word - 1;
+                }
+            }
+        }
+    }
+
+    public int count() {
+        return count.intValue();
+    }
+
+    //Si el chunk ya existe no se toma ningun lock, crearlo solo bloquea a los que caen en el mismo lugar del map
+    private AtomicLongArray chunkFor(int likerIndex) {
+        final int chunkIndex = likerIndex / BITS_PER_CHUNK;
+        final AtomicLongArray chunk = chunks.get(chunkIndex);
+        if(chunk!=null) return chunk;
+
+        return chunks.computeIfAbsent(chunkIndex, newChunkIndex -> new AtomicLongArray(WORDS_PER_CHUNK));
+    }
+}
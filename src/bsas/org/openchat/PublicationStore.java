@@ -0,0 +1,118 @@
+package bsas.org.openchat;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.function.IntFunction;
+
+/* Las publicaciones de un publisher guardadas en columnas de tipos primitivos, en el orden
+ * en que se publicaron: el tiempo en nanosegundos desde epoch (UTC) y la direccion y el largo
+ * del mensaje en el MessageArena, fuera del heap. Asi cada publicacion no necesita un String
+ * ni un LocalDateTime, que son varios objetos, y Publication es solo una vista con el indice.
+ * Los mensajes y tiempos se arman al leerlos.
+ * Se agrega con el lock del store. Se lee sin locks: las columnas se reemplazan enteras al
+ * crecer y quien lee un indice ya vio a la publicacion, que se hizo visible despues de agregarla.
+ */
+class PublicationStore {
+    private static final int INITIAL_CAPACITY = 8;
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+
+    private final MessageArena messageArena;
+    private volatile Columns columns = new Columns(new long[0], new long[0], new int[0]);
+    private int size = 0;
+
+    private PublicationStore(MessageArena messageArena) {
+        this.messageArena = messageArena;
+    }
+
+    public static PublicationStore in(MessageArena messageArena) {
+        return new PublicationStore(messageArena);
+    }
+
+    public int add(String message, LocalDateTime publicationTime) {
+        return add(message, publicationTime, index -> index);
+    }
+
+    /* addedPublication se evalua con el indice ya ocupado, antes de que se vea la publicacion.
+     * Si falla no queda nada: el indice y el lugar del mensaje en el arena se vuelven a usar
+     */
+    public synchronized <T> T add(String message, LocalDateTime publicationTime, IntFunction<T> addedPublication) {
+        final byte[] encodedMessage = message.getBytes(StandardCharsets.UTF_8);
+        final long epochNanos = epochNanosOf(publicationTime);
+        final Columns currentColumns = columnsWithRoom();
+
+        final T publication = messageArena.add(encodedMessage, messageAddress -> {
+            currentColumns.epochNanos[size] = epochNanos;
+            currentColumns.messageAddresses[size] = messageAddress;
+            currentColumns.messageLengths[size] = encodedMessage.length;
+
+            return addedPublication.apply(size);
+        });
+        size++;
+
+        return publication;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public long epochNanosAt(int index) {
+        return columns.epochNanos[index];
+    }
+
+    public LocalDateTime publicationTimeAt(int index) {
+        final long epochNanos = epochNanosAt(index);
+
+        return LocalDateTime.ofEpochSecond(
+                Math.floorDiv(epochNanos, NANOS_PER_SECOND),
+                (int) Math.floorMod(epochNanos, NANOS_PER_SECOND),
+                ZoneOffset.UTC);
+    }
+
+    public String messageAt(int index) {
+        final Columns currentColumns = columns;
+
+        return messageArena.messageAt(currentColumns.messageAddresses[index], currentColumns.messageLengths[index]);
+    }
+
+    public void writeMessageTo(Utf8JsonWriter writer, int index) throws IOException {
+        final Columns currentColumns = columns;
+
+        messageArena.writeMessageTo(writer, currentColumns.messageAddresses[index], currentColumns.messageLengths[index]);
+    }
+
+    static long epochNanosOf(LocalDateTime time) {
+        return Math.addExact(
+                Math.multiplyExact(time.toEpochSecond(ZoneOffset.UTC), NANOS_PER_SECOND),
+                time.getNano());
+    }
+
+    private Columns columnsWithRoom() {
+        final Columns currentColumns = columns;
+        if(size<currentColumns.epochNanos.length) return currentColumns;
+
+        final int capacity = Math.max(INITIAL_CAPACITY, size * 2);
+        columns = new Columns(
+                Arrays.copyOf(currentColumns.epochNanos, capacity),
+                Arrays.copyOf(currentColumns.messageAddresses, capacity),
+                Arrays.copyOf(currentColumns.messageLengths, capacity));
+
+        return columns;
+    }
+
+    //Los campos son final para que quien lea las columnas nuevas vea lo que se copio en ellas
+    private static class Columns {
+        private final long[] epochNanos;
+        private final long[] messageAddresses;
+        private final int[] messageLengths;
+
+        Columns(long[] epochNanos, long[] messageAddresses, int[] messageLengths) {
+            this.epochNanos = epochNanos;
+            this.messageAddresses = messageAddresses;
+            this.messageLengths = messageLengths;
+        }
+    }
+}
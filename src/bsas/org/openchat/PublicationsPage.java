@@ -0,0 +1,102 @@
+package bsas.org.openchat;
+
+import java.util.Collections;
+import java.util.List;
+
+public abstract class PublicationsPage {
+    public static final String INVALID_LIMIT = "Page limit must be positive";
+
+    protected final int limit;
+
+    public static PublicationsPage all() {
+        return latest(Integer.MAX_VALUE);
+    }
+
+    public static PublicationsPage latest(int limit) {
+        assertIsPositive(limit);
+
+        return new Latest(limit);
+    }
+
+    public static PublicationsPage olderThan(Publication publication, int limit) {
+        assertIsPositive(limit);
+
+        return new OlderThan(publication, limit);
+    }
+
+    public static PublicationsPage newerThan(Publication publication, int limit) {
+        assertIsPositive(limit);
+
+        return new NewerThan(publication, limit);
+    }
+
+    private static void assertIsPositive(int limit) {
+        if(limit<=0) throw new ModelException(INVALID_LIMIT);
+    }
+
+    protected PublicationsPage(int limit) {
+        this.limit = limit;
+    }
+
+    abstract List<Publication> selectFrom(List<TimeOrderedPublications> timeLines);
+
+    abstract List<Publication> selectFromWallOf(Publisher owner, MaterializedWall wall);
+
+    private static class Latest extends PublicationsPage {
+        private Latest(int limit) {
+            super(limit);
+        }
+
+        @Override
+        List<Publication> selectFrom(List<TimeOrderedPublications> timeLines) {
+            return MergedTimeLines.newestFirst(timeLines).next(limit);
+        }
+
+        @Override
+        List<Publication> selectFromWallOf(Publisher owner, MaterializedWall wall) {
+            return wall.latest(owner, limit);
+        }
+    }
+
+    private static class OlderThan extends PublicationsPage {
+        private final Publication publication;
+
+        private OlderThan(Publication publication, int limit) {
+            super(limit);
+            this.publication = publication;
+        }
+
+        @Override
+        List<Publication> selectFrom(List<TimeOrderedPublications> timeLines) {
+            return MergedTimeLines.newestFirstOlderThan(publication, timeLines).next(limit);
+        }
+
+        @Override
+        List<Publication> selectFromWallOf(Publisher owner, MaterializedWall wall) {
+            return owner.assembledWall(this);
+        }
+    }
+
+    private static class NewerThan extends PublicationsPage {
+        private final Publication publication;
+
+        private NewerThan(Publication publication, int limit) {
+            super(limit);
+            this.publication = publication;
+        }
+
+        @Override
+        List<Publication> selectFrom(List<TimeOrderedPublications> timeLines) {
+            final List<Publication> oldestFirst =
+                    MergedTimeLines.oldestFirstNewerThan(publication, timeLines).next(limit);
+            Collections.reverse(oldestFirst);
+
+            return oldestFirst;
+        }
+
+        @Override
+        List<Publication> selectFromWallOf(Publisher owner, MaterializedWall wall) {
+            return owner.assembledWall(this);
+        }
+    }
+}
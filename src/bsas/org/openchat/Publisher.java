@@ -4,22 +4,55 @@ import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
-import java.util.stream.Collectors;
-
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/* Las lecturas (timeline, muro, followers) no toman locks: las publicaciones
+ * son una instancia inmutable que se reemplaza al publicar y los followers
+ * son copy on write. Publicar y seguir toman el lock de los publishers
+ * involucrados, siempre en el mismo orden para evitar deadlocks.
+ * La version cambia despues de todo cambio visible en el timeline o el muro,
+ * asi quien la lee antes de leerlos nunca la asocia a datos viejos.
+ */
 public class Publisher {
     public static final String CANNOT_FOLLOW_SELF = "Can not follow self";
     public static final String CANNOT_FOLLOW_TWICE = "Can not follow publisher twice";
 
-    private final List<Publisher> followers = new ArrayList<>();
-    private final List<Publication> publications = new ArrayList<>();
+    private static final AtomicLong lockOrderSequence = new AtomicLong();
+
+    private final List<Publisher> followers = new CopyOnWriteArrayList<>();
+    private final List<Publisher> followedPublishers = new CopyOnWriteArrayList<>();
+    private final List<WallSubscription> wallSubscriptions = new CopyOnWriteArrayList<>();
+    private volatile TimeOrderedPublications publications = TimeOrderedPublications.empty();
+    private final PublicationStore publicationStore;
     private final User user;
+    private final Wall wall;
+    private final long lockOrder = lockOrderSequence.getAndIncrement();
+    private final AtomicLong version = new AtomicLong();
 
+    //Con un MessageArena propio, para publishers fuera de un OpenChatSystem
     public static Publisher relatedTo(User user){
-        return new Publisher(user);
+        return relatedTo(user, MessageArena.withChunkSize(MessageArena.DEFAULT_CHUNK_SIZE));
+    }
+
+    //Los mensajes de las publicaciones se guardan en messageArena
+    static Publisher relatedTo(User user, MessageArena messageArena){
+        return new Publisher(user, new AssembledOnReadWall(), messageArena);
+    }
+
+    public static Publisher withMaterializedWallRelatedTo(User user, int wallCapacity){
+        return withMaterializedWallRelatedTo(user, wallCapacity, MessageArena.withChunkSize(MessageArena.DEFAULT_CHUNK_SIZE));
     }
 
-    private Publisher(User user) {
+    static Publisher withMaterializedWallRelatedTo(User user, int wallCapacity, MessageArena messageArena){
+        return new Publisher(user, MaterializedWall.withCapacity(wallCapacity), messageArena);
+    }
+
+    private Publisher(User user, Wall wall, MessageArena messageArena) {
         this.user = user;
+        this.wall = wall;
+        this.publicationStore = PublicationStore.in(messageArena);
     }
 
     public boolean hasFollowers() {
@@ -27,10 +60,22 @@ public class Publisher {
     }
 
     public void followedBy(Publisher potentialFollower) {
+        followedBy(potentialFollower, () -> {});
+    }
+
+    //beforeBeingVisible se evalua cuando ya se sabe que puede seguirlo pero antes de que se vea
+    public void followedBy(Publisher potentialFollower, Runnable beforeBeingVisible) {
         assertCanNotFollowSelf(potentialFollower);
-        assertCanNotFollowTwice(potentialFollower);
 
-        followers.add(potentialFollower);
+        withLocksOf(this, potentialFollower, () -> {
+            assertCanNotFollowTwice(potentialFollower);
+            beforeBeingVisible.run();
+
+            followers.add(potentialFollower);
+            potentialFollower.followedPublishers.add(this);
+            wall.followerAdded(potentialFollower);
+            version.incrementAndGet();
+        });
     }
 
     public boolean isFollowedBy(Publisher potentialFollower) {
@@ -46,20 +91,100 @@ public class Publisher {
     }
 
     public Publication publish(String message, LocalDateTime publicationTime) {
-        final Publication newPublication = Publication.madeBy(this, message, publicationTime);
-        publications.add(newPublication);
+        return publish(message, publicationTime, newPublication -> {});
+    }
+
+    /* beforeBeingVisible se evalua con la publicacion ya creada pero antes de
+     * que otro thread la pueda ver en un timeline o muro. Si falla no se publica
+     * y su lugar en el store se vuelve a usar
+     */
+    public Publication publish(String message, LocalDateTime publicationTime, Consumer<Publication> beforeBeingVisible) {
+        return add(Publication.madeBy(this, message, publicationTime, beforeBeingVisible));
+    }
+
+    //Las publicaciones que se restauran ya fueron aceptadas, no se vuelven a validar con las palabras de ahora
+    Publication restorePublication(String message, LocalDateTime publicationTime, Consumer<Publication> beforeBeingVisible) {
+        return add(Publication.restoredFor(this, message, publicationTime, beforeBeingVisible));
+    }
+
+    private Publication add(Publication newPublication) {
+        synchronized (this) {
+            publications = publications.with(newPublication);
+            wall.publicationAdded(newPublication);
+            followedPublishers.forEach(followed -> followed.wall.publicationAdded(newPublication));
+        }
+        publicationsChanged();
+        wallSubscriptions.forEach(subscription -> subscription.publicationAdded(newPublication));
+        followedPublishers.forEach(followed ->
+                followed.wallSubscriptions.forEach(subscription -> subscription.publicationAdded(newPublication)));
 
         return newPublication;
     }
 
+    //publicationsAvailable se evalua en el thread que publica, no deberia hacer mas que avisar
+    public WallSubscription subscribeToWall(int capacity, Runnable publicationsAvailable) {
+        final WallSubscription subscription = WallSubscription.to(this, capacity, publicationsAvailable);
+        wallSubscriptions.add(subscription);
+
+        return subscription;
+    }
+
+    void unsubscribe(WallSubscription subscription) {
+        wallSubscriptions.remove(subscription);
+    }
+
+    public int numberOfWallSubscriptions() {
+        return wallSubscriptions.size();
+    }
+
+    //Las publicaciones estan en el timeline y el muro de este publisher y en los muros de los que sigue
+    void publicationsChanged() {
+        version.incrementAndGet();
+        followedPublishers.forEach(followed -> followed.version.incrementAndGet());
+    }
+
+    PublicationStore publicationStore() {
+        return publicationStore;
+    }
+
+    public long version() {
+        return version.get();
+    }
+
+    public int numberOfPublications() {
+        return publications.size();
+    }
+
     public List<Publication> timeLine() {
-        return sortedPublications(publications);
+        return publications.newestFirst();
+    }
+
+    public List<Publication> timeLine(int limit) {
+        return publications.newest(limit);
+    }
+
+    public List<Publication> timeLine(PublicationsPage page) {
+        return page.selectFrom(List.of(publications));
     }
 
     public List<Publication> wall() {
-        final ArrayList<Publication> wall = new ArrayList<>(this.publications);
-        followers.stream().forEach(follower->follower.addPublicationTo(wall));
-        return sortedPublications(wall);
+        return wall(PublicationsPage.all());
+    }
+
+    public List<Publication> wall(int limit) {
+        return wall(PublicationsPage.latest(limit));
+    }
+
+    public List<Publication> wall(PublicationsPage page) {
+        return wall.publicationsOf(this, page);
+    }
+
+    List<Publication> assembledWall(PublicationsPage page) {
+        final List<TimeOrderedPublications> timeLines = new ArrayList<>(followers.size() + 1);
+        timeLines.add(publications);
+        followers.forEach(follower -> timeLines.add(follower.publications));
+
+        return page.selectFrom(timeLines);
     }
 
     public List<Publisher> followers() {
@@ -78,14 +203,14 @@ public class Publisher {
         if(this.equals(potentialFollower)) throw new ModelException(CANNOT_FOLLOW_SELF);
     }
 
-    private List<Publication> sortedPublications(List<Publication> publications) {
-        return publications.stream()
-                .sorted((left, right) -> right.comparePublicationTimeWith(left))
-                .collect(Collectors.toList());
-    }
+    private static void withLocksOf(Publisher aPublisher, Publisher anotherPublisher, Runnable closure) {
+        final Publisher first = aPublisher.lockOrder<anotherPublisher.lockOrder ? aPublisher : anotherPublisher;
+        final Publisher second = first==aPublisher ? anotherPublisher : aPublisher;
 
-    private void addPublicationTo(List<Publication> publicationCollector) {
-        publicationCollector.addAll(publications);
+        synchronized (first) {
+            synchronized (second) {
+                closure.run();
+            }
+        }
     }
-
 }
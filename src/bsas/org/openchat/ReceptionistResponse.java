@@ -5,13 +5,22 @@ import com.eclipsesource.json.JsonArray;
 import com.eclipsesource.json.JsonObject;
 import com.eclipsesource.json.JsonValue;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+
+import static org.eclipse.jetty.http.HttpStatus.NOT_MODIFIED_304;
+
 public class ReceptionistResponse {
     private final int status;
-    private final String responseBody;
+    private final ResponseBodyWriter responseBodyWriter;
+    private final Optional<String> entityTag;
 
     public ReceptionistResponse(int status, String responseBody) {
-        this.status = status;
-        this.responseBody = responseBody;
+        this(status, output -> output.write(responseBody.getBytes(StandardCharsets.UTF_8)));
     }
 
     /* Lamentablemente no se puede usar solo un Json como responseBody
@@ -22,12 +31,49 @@ public class ReceptionistResponse {
         this(status,bodyAsJson.toString());
     }
 
+    /* Para respuestas grandes, como la lista de usuarios o el wall, el body se
+     * escribe como bytes UTF-8 directamente en la respuesta sin armarlo entero en memoria
+     */
+    public ReceptionistResponse(int status, ResponseBodyWriter responseBodyWriter) {
+        this(status, responseBodyWriter, Optional.empty());
+    }
+
+    private ReceptionistResponse(int status, ResponseBodyWriter responseBodyWriter, Optional<String> entityTag) {
+        this.status = status;
+        this.responseBodyWriter = responseBodyWriter;
+        this.entityTag = entityTag;
+    }
+
+    public static ReceptionistResponse notModified(String entityTag) {
+        return new ReceptionistResponse(NOT_MODIFIED_304, output -> {}, Optional.of(entityTag));
+    }
+
+    //El tag va en el header ETag, el cliente lo manda en If-None-Match para saber si cambio la respuesta
+    public ReceptionistResponse withEntityTag(String entityTag) {
+        return new ReceptionistResponse(status, responseBodyWriter, Optional.of(entityTag));
+    }
+
+    public Optional<String> entityTag() {
+        return entityTag;
+    }
+
     public boolean isStatus(int potentialStatus) {
         return status()==potentialStatus;
     }
 
     public String responseBody() {
-        return responseBody;
+        final ByteArrayOutputStream responseBody = new ByteArrayOutputStream();
+        try {
+            writeResponseBodyTo(responseBody);
+        } catch (IOException error) {
+            throw new UncheckedIOException(error);
+        }
+
+        return new String(responseBody.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    public void writeResponseBodyTo(OutputStream output) throws IOException {
+        responseBodyWriter.writeTo(output);
     }
 
     public int status() {
@@ -35,10 +81,10 @@ public class ReceptionistResponse {
     }
 
     public JsonObject responseBodyAsJson() {
-        return Json.parse(responseBody).asObject();
+        return Json.parse(responseBody()).asObject();
     }
 
     public JsonArray responseBodyAsJsonArray() {
-        return Json.parse(responseBody).asArray();
+        return Json.parse(responseBody()).asArray();
     }
 }
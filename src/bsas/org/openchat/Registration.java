@@ -0,0 +1,36 @@
+package bsas.org.openchat;
+
+//Los datos con los que alguien pide registrarse, para registrar a muchos de una vez
+public class Registration {
+    private final String userName;
+    private final String password;
+    private final String about;
+    private final String homePage;
+
+    public static Registration of(String userName, String password, String about, String homePage) {
+        return new Registration(userName, password, about, homePage);
+    }
+
+    private Registration(String userName, String password, String about, String homePage) {
+        this.userName = userName;
+        this.password = password;
+        this.about = about;
+        this.homePage = homePage;
+    }
+
+    public String userName() {
+        return userName;
+    }
+
+    public String password() {
+        return password;
+    }
+
+    public String about() {
+        return about;
+    }
+
+    public String homePage() {
+        return homePage;
+    }
+}
@@ -0,0 +1,105 @@
+package bsas.org.openchat;
+
+import java.math.BigDecimal;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/* Cantidad de requests por ruta y status, y sus latencias, en el formato de texto de Prometheus.
+ * Registrar un request no toma locks, solo actualiza contadores atomicos.
+ */
+public class RequestMetrics {
+    public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+    public static final String REQUESTS_METRIC = "openchat_requests_total";
+    public static final String DURATION_METRIC = "openchat_request_duration_seconds";
+    public static final String DURATION_QUANTILE_METRIC = "openchat_request_duration_quantile_seconds";
+
+    private static final double NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+    private static final double[] BUCKET_BOUNDS_IN_SECONDS = {
+            0.0001, 0.00025, 0.0005, 0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10 };
+    private static final double[] QUANTILES = { 0.5, 0.99, 0.999 };
+
+    private final Map<String, RouteMetrics> routesMetrics = new ConcurrentHashMap<>();
+
+    public static RequestMetrics empty() {
+        return new RequestMetrics();
+    }
+
+    public void record(String route, int status, long nanos) {
+        routesMetrics.computeIfAbsent(route, newRoute -> new RouteMetrics()).record(status, nanos);
+    }
+
+    public long requestsTo(String route, int status) {
+        final RouteMetrics routeMetrics = routesMetrics.get(route);
+        return routeMetrics==null ? 0 : routeMetrics.requestsWith(status);
+    }
+
+    public String asPrometheusText() {
+        final Map<String, RouteMetrics> sortedRoutesMetrics = new TreeMap<>(routesMetrics);
+        final Map<String, LatencyHistogram> latencies = new TreeMap<>();
+        sortedRoutesMetrics.forEach((route, routeMetrics) -> latencies.put(route, routeMetrics.latencies.copy()));
+        final StringBuilder text = new StringBuilder();
+
+        header(text, REQUESTS_METRIC, "counter", "Requests handled by route and status.");
+        sortedRoutesMetrics.forEach((route, routeMetrics) ->
+                new TreeMap<>(routeMetrics.statusCounts).forEach((status, count) -> text
+                        .append(REQUESTS_METRIC).append("{route=\"").append(escaped(route))
+                        .append("\",status=\"").append(status).append("\"} ").append(count.sum()).append('\n')));
+
+        header(text, DURATION_METRIC, "histogram", "Time spent handling requests by route.");
+        latencies.forEach((route, histogram) -> {
+            for(double bound : BUCKET_BOUNDS_IN_SECONDS)
+                sample(text, DURATION_METRIC + "_bucket", route, "le", asLabelValue(bound),
+                        histogram.countAtOrBelow((long) (bound * NANOS_PER_SECOND)));
+            sample(text, DURATION_METRIC + "_bucket", route, "le", "+Inf", histogram.count());
+            text.append(DURATION_METRIC).append("_sum{route=\"").append(escaped(route)).append("\"} ")
+                    .append(histogram.totalNanos() / NANOS_PER_SECOND).append('\n');
+            text.append(DURATION_METRIC).append("_count{route=\"").append(escaped(route)).append("\"} ")
+                    .append(histogram.count()).append('\n');
+        });
+
+        header(text, DURATION_QUANTILE_METRIC, "gauge", "Request duration quantiles by route since start.");
+        latencies.forEach((route, histogram) -> {
+            for(double quantile : QUANTILES)
+                sample(text, DURATION_QUANTILE_METRIC, route, "quantile", asLabelValue(quantile),
+                        histogram.valueAtPercentile(quantile * 100) / NANOS_PER_SECOND);
+        });
+
+        return text.toString();
+    }
+
+    private void header(StringBuilder text, String metric, String type, String help) {
+        text.append("# HELP ").append(metric).append(' ').append(help).append('\n');
+        text.append("# TYPE ").append(metric).append(' ').append(type).append('\n');
+    }
+
+    private void sample(StringBuilder text, String metric, String route, String label, String labelValue, Number value) {
+        text.append(metric).append("{route=\"").append(escaped(route)).append("\",")
+                .append(label).append("=\"").append(labelValue).append("\"} ").append(value).append('\n');
+    }
+
+    private String asLabelValue(double number) {
+        return BigDecimal.valueOf(number).stripTrailingZeros().toPlainString();
+    }
+
+    private String escaped(String labelValue) {
+        return labelValue.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    private static class RouteMetrics {
+        private final LatencyHistogram latencies = LatencyHistogram.empty();
+        private final Map<Integer, LongAdder> statusCounts = new ConcurrentHashMap<>();
+
+        void record(int status, long nanos) {
+            statusCounts.computeIfAbsent(status, newStatus -> new LongAdder()).increment();
+            latencies.record(nanos);
+        }
+
+        long requestsWith(int status) {
+            final LongAdder count = statusCounts.get(status);
+            return count==null ? 0 : count.sum();
+        }
+    }
+}
@@ -0,0 +1,8 @@
+package bsas.org.openchat;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+public interface ResponseBodyWriter {
+    void writeTo(OutputStream output) throws IOException;
+}
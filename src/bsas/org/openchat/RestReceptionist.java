@@ -1,14 +1,23 @@
 package bsas.org.openchat;
 
-import com.eclipsesource.json.JsonArray;
 import com.eclipsesource.json.JsonObject;
+import com.eclipsesource.json.JsonValue;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
-import java.util.HashMap;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
-import java.util.UUID;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 import static java.time.format.DateTimeFormatter.ofPattern;
 import static org.eclipse.jetty.http.HttpStatus.*;
@@ -27,39 +36,160 @@ public class RestReceptionist {
     public static final String DATE_TIME_KEY = "dateTime";
     public static final String LIKES_KEY = "likes";
     public static final String PUBLICATION_ID_KEY = "publicationId";
+    public static final String PUBLICATION_IDS_KEY = "ids";
+    public static final String LIMIT_KEY = "limit";
+    public static final String BEFORE_KEY = "before";
+    public static final String AFTER_KEY = "after";
+    public static final String OFFSET_KEY = "offset";
+    public static final String STATUS_KEY = "status";
+    public static final String USER_KEY = "user";
+    public static final String ERROR_KEY = "error";
     public static final String INVALID_CREDENTIALS = "Invalid credentials.";
     public static final String FOLLOWING_CREATED = "Following created.";
     public static final String INVALID_PUBLICATION = "Invalid post";
+    public static final String INVALID_PAGE = "Can not page before and after a post at the same time";
+    public static final String INVALID_REGISTRATIONS = "Registrations must be an array of users";
+    public static final String ID_IN_USE = "Id already in use";
     public static final DateTimeFormatter DATE_TIME_FORMATTER = ofPattern("yyyy-MM-dd'T'HH:mm:ss'Z'");
 
+    //Los nombres de los campos de usuarios y publicaciones ya codificados, se escriben tal cual
+    private static final byte[] USER_ID_FIELD = fieldNamed(ID_KEY, '{');
+    private static final byte[] USERNAME_FIELD = fieldNamed(USERNAME_KEY, ',');
+    private static final byte[] ABOUT_FIELD = fieldNamed(ABOUT_KEY, ',');
+    private static final byte[] HOME_PAGE_FIELD = fieldNamed(HOME_PAGE_KEY, ',');
+    private static final byte[] POST_ID_FIELD = fieldNamed(POST_ID_KEY, '{');
+    private static final byte[] PUBLISHER_ID_FIELD = fieldNamed(USER_ID_KEY, ',');
+    private static final byte[] TEXT_FIELD = fieldNamed(TEXT_KEY, ',');
+    private static final byte[] DATE_TIME_FIELD = fieldNamed(DATE_TIME_KEY, ',');
+    private static final byte[] LIKES_FIELD = fieldNamed(LIKES_KEY, ',');
+    private static final byte[] STATUS_FIELD = fieldNamed(STATUS_KEY, '{');
+    private static final byte[] USER_FIELD = fieldNamed(USER_KEY, ',');
+    private static final byte[] ERROR_FIELD = fieldNamed(ERROR_KEY, ',');
+
+    private static final byte[] WALL_EVENT_PREFIX = Utf8JsonWriter.encoded("data: ");
+    private static final byte[] WALL_EVENT_SUFFIX = Utf8JsonWriter.encoded("\n\n");
+
+    //Las versiones vuelven a empezar al reiniciar, el epoch evita que un tag de antes coincida con uno nuevo
+    private final String entityTagsEpoch = Long.toHexString(ThreadLocalRandom.current().nextLong());
 
     private final OpenChatSystem system;
-    private final Map<User,String> idsByUser = new HashMap<>();
-    private final Map<Publication,String> idsByPublication = new HashMap<>();
+    private final EventLog eventLog;
+    private final IdGenerator idGenerator;
+    //Todo cambio guarda el evento antes de terminar de aplicarlo, un snapshot tiene que esperarlos
+    private final ReadWriteLock consistentPointGate = new ReentrantReadWriteLock();
+    private final Map<User,String> idsByUser = new ConcurrentHashMap<>();
+    private final Map<String,Publisher> publishersById = new ConcurrentHashMap<>();
+    private final Map<Publication,String> idsByPublication = new ConcurrentHashMap<>();
+    private final Map<String,Publication> publicationsById = new ConcurrentHashMap<>();
+    //Las publicaciones no cambian salvo los likes, por eso se guardan ya codificadas hasta "likes":, salvo el texto
+    private final Map<Publication,EncodedPublication> encodedPublications = new ConcurrentHashMap<>();
 
     public RestReceptionist(OpenChatSystem system) {
+        this(system, EventLog.none());
+    }
+
+    public RestReceptionist(OpenChatSystem system, EventLog eventLog) {
+        this(system, eventLog, IdGenerator.randomUuids());
+    }
+
+    public RestReceptionist(OpenChatSystem system, EventLog eventLog, IdGenerator idGenerator) {
         this.system = system;
+        this.eventLog = eventLog;
+        this.idGenerator = idGenerator;
     }
 
     public ReceptionistResponse registerUser(JsonObject registrationBodyAsJson) {
         try {
-            User registeredUser = system.register(
+            final String registeredUserId = unusedIdIn(publishersById);
+            //El id se asocia y el evento se guarda antes de que el usuario se pueda listar o loguear
+            final User registeredUser = asLoggedMutationDo(() -> system.register(
                     userNameFrom(registrationBodyAsJson),
                     passwordFrom(registrationBodyAsJson),
                     aboutFrom(registrationBodyAsJson),
-                    homePageFrom(registrationBodyAsJson));
-
-            final String registeredUserId = UUID.randomUUID().toString();
-            idsByUser.put(registeredUser,registeredUserId);
-
-            return new ReceptionistResponse(
-                    CREATED_201,
-                    userResponseAsJson(registeredUser, registeredUserId));
+                    homePageFrom(registrationBodyAsJson),
+                    newPublisher -> {
+                        final User newUser = newPublisher.relatedUser();
+                        rememberUser(newPublisher, registeredUserId);
+                        logOrUndo(
+                                () -> eventLog.append(OpenChatEvent.userRegistered(
+                                        registeredUserId,
+                                        newUser.name(),
+                                        passwordFrom(registrationBodyAsJson),
+                                        newUser.about(),
+                                        newUser.homePage())),
+                                () -> forgetUser(newPublisher, registeredUserId));
+                    }));
+            eventLog.commit();
+
+            return userResponse(CREATED_201, registeredUser, registeredUserId);
         } catch (ModelException error){
             return new ReceptionistResponse(BAD_REQUEST_400,error.getMessage());
         }
     }
 
+    /* Registra todos los usuarios del array con un solo chequeo de duplicados y agrega todos los
+     * eventos al log de una vez. Responde, en el mismo orden, el status y el usuario o el error de cada uno
+     */
+    public ReceptionistResponse registerUsers(JsonValue registrationsBodyAsJson) {
+        if(!registrationsBodyAsJson.isArray()) return new ReceptionistResponse(BAD_REQUEST_400, INVALID_REGISTRATIONS);
+        final List<Registration> registrations = new ArrayList<>(registrationsBodyAsJson.asArray().size());
+        for(JsonValue registrationAsJson : registrationsBodyAsJson.asArray()) {
+            if(!registrationAsJson.isObject()) return new ReceptionistResponse(BAD_REQUEST_400, INVALID_REGISTRATIONS);
+            registrations.add(registrationFrom(registrationAsJson.asObject()));
+        }
+
+        final List<String> newIds = unusedIdsIn(publishersById, registrations.size());
+        final String[] registeredUserIds = new String[registrations.size()];
+        final User[] registeredUsers = new User[registrations.size()];
+        final String[] failures = new String[registrations.size()];
+        asLoggedMutationDo(() -> {
+            final int[] index = { 0 };
+            system.registerAll(registrations,
+                    (registration, newUser) -> {
+                        registeredUsers[index[0]] = newUser;
+                        registeredUserIds[index[0]] = userIdFor(newUser);
+                        index[0]++;
+                    },
+                    (registration, error) -> failures[index[0]++] = error.getMessage(),
+                    //Igual que al registrar de a uno, antes de que se puedan encontrar se asocian los ids y se guardan los eventos
+                    (acceptedRegistrations, newPublishers) -> {
+                        final List<OpenChatEvent> events = new ArrayList<>(acceptedRegistrations.size());
+                        for(int acceptedIndex = 0; acceptedIndex<acceptedRegistrations.size(); acceptedIndex++) {
+                            final User newUser = newPublishers.get(acceptedIndex).relatedUser();
+                            events.add(OpenChatEvent.userRegistered(newIds.get(acceptedIndex),
+                                    newUser.name(), acceptedRegistrations.get(acceptedIndex).password(), newUser.about(), newUser.homePage()));
+                        }
+                        logOrUndo(
+                                () -> {
+                                    for(int acceptedIndex = 0; acceptedIndex<newPublishers.size(); acceptedIndex++)
+                                        rememberUser(newPublishers.get(acceptedIndex), newIds.get(acceptedIndex));
+                                    eventLog.appendAll(events);
+                                },
+                                () -> {
+                                    for(int acceptedIndex = 0; acceptedIndex<newPublishers.size(); acceptedIndex++)
+                                        forgetUser(newPublishers.get(acceptedIndex), newIds.get(acceptedIndex));
+                                });
+                    });
+            return registeredUsers;
+        });
+        eventLog.commit();
+
+        return jsonResponse(OK_200, writer -> {
+            writer.raw('[');
+            for(int index = 0; index<registeredUsers.length; index++) {
+                if(index>0) writer.raw(',');
+                if(registeredUsers[index]==null)
+                    writer.raw(STATUS_FIELD).number(BAD_REQUEST_400).raw(ERROR_FIELD).string(failures[index]);
+                else {
+                    writer.raw(STATUS_FIELD).number(CREATED_201).raw(USER_FIELD);
+                    writeUserTo(writer, registeredUsers[index], registeredUserIds[index]);
+                }
+                writer.raw('}');
+            }
+            writer.raw(']');
+        });
+    }
+
     public ReceptionistResponse login(JsonObject loginBodyAsJson) {
         return system.withAuthenticatedUserDo(
                 userNameFrom(loginBodyAsJson),
@@ -70,7 +200,15 @@ public class RestReceptionist {
     }
 
     public ReceptionistResponse users() {
-        return okResponseWithUserArrayFrom(system.users());
+        return users(new JsonObject());
+    }
+
+    public ReceptionistResponse users(JsonObject pageAsJson) {
+        try {
+            return okResponseWithUserArrayFrom(usersPageFrom(pageAsJson));
+        } catch (ModelException error){
+            return new ReceptionistResponse(BAD_REQUEST_400,error.getMessage());
+        }
     }
 
     public ReceptionistResponse followings(JsonObject followingsBodyAsJson) {
@@ -79,9 +217,14 @@ public class RestReceptionist {
         String followerId = followingsBodyAsJson.getString(FOLLOWER_ID_KEY,"");
 
         try {
-            system.followForUserNamed(
-                    userNameIdentifiedAs(followedId),
-                    userNameIdentifiedAs(followerId));
+            //El evento se guarda antes de que se vea, si no se puede guardar no se sigue
+            final Publisher followed = publisherIdentifiedAs(followedId);
+            final Publisher follower = publisherIdentifiedAs(followerId);
+            asLoggedMutationDo(() -> {
+                system.follow(followed, follower, () -> eventLog.append(OpenChatEvent.followed(followedId, followerId)));
+                return followed;
+            });
+            eventLog.commit();
 
             return new ReceptionistResponse(CREATED_201, FOLLOWING_CREATED);
         } catch (ModelException error){
@@ -91,48 +234,105 @@ public class RestReceptionist {
 
     public ReceptionistResponse followersOf(String userId) {
         final List<User> followers =
-                system.followersOfUserNamed(userNameIdentifiedAs(userId));
+                system.followersOf(publisherIdentifiedAs(userId));
 
         return okResponseWithUserArrayFrom(followers);
     }
 
     public ReceptionistResponse addPublication(String userId, JsonObject messageBodyAsJson) {
         try {
-            Publication publication = system.publishForUserNamed(userNameIdentifiedAs(userId), messageBodyAsJson.getString("text", ""));
-            String publicationId = UUID.randomUUID().toString();
-            idsByPublication.put(publication, publicationId);
-
-            return new ReceptionistResponse(
-                    CREATED_201,
-                    publicationAsJson(userId, publication, publicationId));
+            final String publicationId = unusedIdIn(publicationsById);
+            //El evento se guarda antes de que la publicacion aparezca en un muro, asi un like no puede quedar antes
+            final Publisher publisher = publisherIdentifiedAs(userId);
+            final Publication publication = asLoggedMutationDo(() -> system.publishFor(
+                    publisher,
+                    messageBodyAsJson.getString("text", ""),
+                    newPublication -> {
+                        rememberPublication(newPublication, publicationId, userId);
+                        logOrUndo(
+                                () -> eventLog.append(OpenChatEvent.published(
+                                        publicationId, userId, newPublication.message(), newPublication.publicationTime())),
+                                () -> forgetPublication(newPublication, publicationId));
+                    }));
+            eventLog.commit();
+
+            return jsonResponse(CREATED_201, writer -> writePublicationTo(writer, publication));
         } catch (ModelException error){
             return new ReceptionistResponse(BAD_REQUEST_400,error.getMessage());
         }
     }
 
     public ReceptionistResponse timelineOf(String userId) {
-        List<Publication> timeLine =
-                system.timeLineForUserNamed(userNameIdentifiedAs(userId));
+        return timelineOf(userId, new JsonObject());
+    }
 
-        return publicationsAsJson(timeLine);
+    public ReceptionistResponse timelineOf(String userId, JsonObject pageAsJson) {
+        return timelineOf(userId, pageAsJson, "");
+    }
+
+    //entityTagsToMatch es el valor de If-None-Match, vacio si no vino
+    public ReceptionistResponse timelineOf(String userId, JsonObject pageAsJson, String entityTagsToMatch) {
+        try {
+            final Publisher publisher = publisherIdentifiedAs(userId);
+            final PublicationsPage page = pageFrom(pageAsJson);
+
+            return versionedResponseDo(publisher, entityTagsToMatch,
+                    () -> okResponseWithPublicationArrayFrom(system.timeLineOf(publisher, page)));
+        } catch (ModelException error){
+            return new ReceptionistResponse(BAD_REQUEST_400,error.getMessage());
+        }
     }
 
     public ReceptionistResponse wallOf(String userId) {
-        List<Publication> wall = system.wallForUserNamed(userNameIdentifiedAs(userId));
+        return wallOf(userId, new JsonObject());
+    }
 
-        return publicationsAsJson(wall);
+    public ReceptionistResponse wallOf(String userId, JsonObject pageAsJson) {
+        return wallOf(userId, pageAsJson, "");
+    }
+
+    public ReceptionistResponse wallOf(String userId, JsonObject pageAsJson, String entityTagsToMatch) {
+        try {
+            final Publisher publisher = publisherIdentifiedAs(userId);
+            final PublicationsPage page = pageFrom(pageAsJson);
+
+            return versionedResponseDo(publisher, entityTagsToMatch,
+                    () -> okResponseWithPublicationArrayFrom(system.wallOf(publisher, page)));
+        } catch (ModelException error){
+            return new ReceptionistResponse(BAD_REQUEST_400,error.getMessage());
+        }
+    }
+
+    //Las publicaciones nuevas del muro de userId a medida que se publican
+    public WallSubscription subscribeToWallOf(String userId, int capacity, Runnable publicationsAvailable) {
+        return publisherIdentifiedAs(userId).subscribeToWall(capacity, publicationsAvailable);
+    }
+
+    //La publicacion como un evento de server-sent events, con el mismo Json que en el muro
+    public byte[] wallEventOf(Publication publication) {
+        final ByteArrayOutputStream wallEvent = new ByteArrayOutputStream();
+        try {
+            final Utf8JsonWriter writer = Utf8JsonWriter.on(wallEvent);
+            writer.raw(WALL_EVENT_PREFIX);
+            writePublicationTo(writer, publication);
+            writer.raw(WALL_EVENT_SUFFIX);
+            writer.flush();
+        } catch (IOException error) {
+            throw new UncheckedIOException(error);
+        }
+
+        return wallEvent.toByteArray();
     }
 
     public ReceptionistResponse likePublicationIdentifiedAs(String publicationId, JsonObject likerAsJson) {
         try {
-            final String userName = userNameIdentifiedAs(likerAsJson.getString(USER_ID_KEY, ""));
-            final Publication publication = idsByPublication.entrySet().stream()
-                    .filter(idByPublication->idByPublication.getValue().equals(publicationId))
-                    .findFirst()
-                    .map(idByPublication->idByPublication.getKey())
+            final Publisher liker = publisherIdentifiedAs(likerAsJson.getString(USER_ID_KEY, ""));
+            final Publication publication = publicationIdentifiedAs(publicationId)
                     .orElseThrow(()->new ModelException(INVALID_PUBLICATION));
 
-            int likes = system.likePublication(publication, userName);
+            int likes = asLoggedMutationDo(() -> system.likePublication(publication, liker,
+                    () -> eventLog.append(OpenChatEvent.liked(publicationId, likerAsJson.getString(USER_ID_KEY, "")))));
+            eventLog.commit();
 
             JsonObject likesAsJsonObject = new JsonObject()
                     .add(LIKES_KEY, likes);
@@ -142,6 +342,234 @@ public class RestReceptionist {
         }
     }
 
+    public ReceptionistResponse publicationsIdentifiedAs(List<String> publicationIds) {
+        List<Publication> publications = publicationIds.stream()
+                .map(publicationId -> publicationIdentifiedAs(publicationId))
+                .flatMap(publication -> publication.stream())
+                .collect(Collectors.toList());
+
+        return okResponseWithPublicationArrayFrom(publications);
+    }
+
+    public boolean restore(OpenChatEvent event) {
+        try {
+            event.restoreOn(this);
+            return true;
+        } catch (ModelException error) {
+            return false;
+        }
+    }
+
+    /* Un snapshot se escribe mientras se siguen haciendo cambios, asi que puede tener
+     * eventos que tambien estan en el log despues de su posicion. Por eso restaurar
+     * algo que ya esta restaurado no hace nada
+     */
+    Publisher restoreRegistration(String userId, String userName, String password, String about, String homePage) {
+        final Publisher restoredPublisher = publishersById.get(userId);
+        if(restoredPublisher!=null) return restoredPublisher;
+        idGenerator.restored(userId);
+
+        final User user = system.register(userName, password, about, homePage,
+                newPublisher -> rememberUser(newPublisher, userId));
+
+        return system.publisherRelatedTo(user);
+    }
+
+    void restoreFollowing(String followedId, String followerId) {
+        restoreFollowing(publisherIdentifiedAs(followedId), publisherIdentifiedAs(followerId));
+    }
+
+    void restoreFollowing(Publisher followed, Publisher follower) {
+        if(followed.isFollowedBy(follower)) return;
+
+        system.follow(followed, follower);
+    }
+
+    void restorePublication(String publicationId, String userId, String message, LocalDateTime publicationTime) {
+        restorePublication(publicationId, userId, publisherIdentifiedAs(userId), message, publicationTime);
+    }
+
+    Publication restorePublication(String publicationId, String userId, Publisher publisher, String message, LocalDateTime publicationTime) {
+        final Publication restoredPublication = publicationsById.get(publicationId);
+        if(restoredPublication!=null) return restoredPublication;
+        idGenerator.restored(publicationId);
+
+        return system.restorePublicationFor(
+                publisher,
+                message,
+                publicationTime,
+                newPublication -> rememberPublication(newPublication, publicationId, userId));
+    }
+
+    void restoreLike(String publicationId, String likerId) {
+        restoreLike(cursorIdentifiedAs(publicationId), publisherIdentifiedAs(likerId));
+    }
+
+    void restoreLike(Publication publication, Publisher liker) {
+        system.likePublication(publication, liker);
+    }
+
+    /* Devuelve lo que devuelve closure evaluado cuando todos los eventos que ya estan
+     * en el log tambien estan aplicados. Se usa para tomar la posicion del log de un snapshot
+     */
+    public <T> T atConsistentPointDo(Supplier<T> closure) {
+        consistentPointGate.writeLock().lock();
+        try {
+            return closure.get();
+        } finally {
+            consistentPointGate.writeLock().unlock();
+        }
+    }
+
+    //Primero todos los usuarios, despues a quienes siguen y por ultimo las publicaciones de cada uno con sus likes
+    void writeStateOn(Snapshot.StateWriter stateWriter) throws IOException {
+        final List<User> users = system.users();
+        for(User user : users) {
+            final String userId = userIdFor(user);
+            if(userId!=null) stateWriter.user(user, userId, system.passwordOf(user));
+        }
+
+        for(User followed : users)
+            for(User follower : system.followersOf(system.publisherRelatedTo(followed)))
+                stateWriter.following(followed, follower);
+
+        for(User publisher : users)
+            for(Publication publication : inPublishingOrder(system.timeLineOf(system.publisherRelatedTo(publisher)))) {
+                final String publicationId = publicationIdFor(publication);
+                if(publicationId!=null)
+                    stateWriter.publication(publicationId, publisher, publication, system.likersOf(publication));
+            }
+    }
+
+    //Las que tienen el mismo tiempo se ven en el timeline en el orden en que se publicaron
+    private List<Publication> inPublishingOrder(List<Publication> timeLine) {
+        final List<Publication> publications = new ArrayList<>(timeLine.size());
+        int groupEnd = timeLine.size();
+        while (groupEnd>0) {
+            int groupStart = groupEnd - 1;
+            while (groupStart>0 && timeLine.get(groupStart - 1).comparePublicationTimeWith(timeLine.get(groupEnd - 1))==0)
+                groupStart--;
+            publications.addAll(timeLine.subList(groupStart, groupEnd));
+            groupEnd = groupStart;
+        }
+
+        return publications;
+    }
+
+    private <T> T asLoggedMutationDo(Supplier<T> mutation) {
+        consistentPointGate.readLock().lock();
+        try {
+            return mutation.get();
+        } finally {
+            consistentPointGate.readLock().unlock();
+        }
+    }
+
+    /* Los ids se asocian antes de guardar el evento, asi un id repetido no llega al log.
+     * Si despues no se puede guardar, logOrUndo los olvida
+     */
+    private void logOrUndo(Runnable logging, Runnable undo) {
+        try {
+            logging.run();
+        } catch (RuntimeException error) {
+            undo.run();
+            throw error;
+        }
+    }
+
+    //Un id nunca se reasigna. Si el generador repite uno que ya esta en uso se le pide otro
+    private String unusedIdIn(Map<String,?> idsInUse) {
+        String id = idGenerator.nextId();
+        while (idsInUse.containsKey(id)) id = idGenerator.nextId();
+
+        return id;
+    }
+
+    private List<String> unusedIdsIn(Map<String,?> idsInUse, int numberOfIds) {
+        final List<String> ids = idGenerator.nextIds(numberOfIds);
+        ids.replaceAll(id -> idsInUse.containsKey(id) ? unusedIdIn(idsInUse) : id);
+
+        return ids;
+    }
+
+    private void rememberUser(Publisher publisher, String userId) {
+        if(publishersById.putIfAbsent(userId,publisher)!=null) throw new ModelException(ID_IN_USE);
+        if(idsByUser.putIfAbsent(publisher.relatedUser(),userId)!=null) {
+            publishersById.remove(userId,publisher);
+            throw new ModelException(ID_IN_USE);
+        }
+    }
+
+    private void forgetUser(Publisher publisher, String userId) {
+        idsByUser.remove(publisher.relatedUser(),userId);
+        publishersById.remove(userId,publisher);
+    }
+
+    private void rememberPublication(Publication publication, String publicationId, String userId) {
+        if(publicationsById.putIfAbsent(publicationId, publication)!=null) throw new ModelException(ID_IN_USE);
+        if(idsByPublication.putIfAbsent(publication, publicationId)!=null) {
+            publicationsById.remove(publicationId, publication);
+            throw new ModelException(ID_IN_USE);
+        }
+        encodedPublications.put(publication, encodedWithoutLikes(userId, publication, publicationId));
+    }
+
+    private void forgetPublication(Publication publication, String publicationId) {
+        encodedPublications.remove(publication);
+        idsByPublication.remove(publication, publicationId);
+        publicationsById.remove(publicationId, publication);
+    }
+
+    private Optional<Publication> publicationIdentifiedAs(String publicationId) {
+        return Optional.ofNullable(publicationsById.get(publicationId));
+    }
+
+    private PublicationsPage pageFrom(JsonObject pageAsJson) {
+        final int limit = intFrom(pageAsJson, LIMIT_KEY, Integer.MAX_VALUE, PublicationsPage.INVALID_LIMIT);
+        final String beforeId = pageAsJson.getString(BEFORE_KEY, "");
+        final String afterId = pageAsJson.getString(AFTER_KEY, "");
+
+        if(!beforeId.isEmpty() && !afterId.isEmpty()) throw new ModelException(INVALID_PAGE);
+        if(!beforeId.isEmpty()) return PublicationsPage.olderThan(cursorIdentifiedAs(beforeId), limit);
+        if(!afterId.isEmpty()) return PublicationsPage.newerThan(cursorIdentifiedAs(afterId), limit);
+
+        return PublicationsPage.latest(limit);
+    }
+
+    private List<User> usersPageFrom(JsonObject pageAsJson) {
+        final int limit = intFrom(pageAsJson, LIMIT_KEY, Integer.MAX_VALUE, OpenChatSystem.INVALID_USERS_PAGE);
+        final String afterId = pageAsJson.getString(AFTER_KEY, "");
+
+        if(!afterId.isEmpty())
+            return system.usersRegisteredAfter(publisherIdentifiedAs(afterId).relatedUser(), limit);
+
+        return system.users(intFrom(pageAsJson, OFFSET_KEY, 0, OpenChatSystem.INVALID_USERS_PAGE), limit);
+    }
+
+    private int intFrom(JsonObject json, String key, int defaultValue, String invalidValueMessage) {
+        final JsonValue value = json.get(key);
+        if(value==null) return defaultValue;
+
+        try {
+            return value.isNumber() ? value.asInt() : Integer.parseInt(value.asString());
+        } catch (NumberFormatException | UnsupportedOperationException error) {
+            throw new ModelException(invalidValueMessage);
+        }
+    }
+
+    private Publication cursorIdentifiedAs(String publicationId) {
+        return publicationIdentifiedAs(publicationId)
+                .orElseThrow(()->new ModelException(INVALID_PUBLICATION));
+    }
+
+    private Registration registrationFrom(JsonObject registrationAsJson) {
+        return Registration.of(
+                userNameFrom(registrationAsJson),
+                passwordFrom(registrationAsJson),
+                aboutFrom(registrationAsJson),
+                homePageFrom(registrationAsJson));
+    }
+
     private String passwordFrom(JsonObject registrationAsJson) {
         return registrationAsJson.getString(PASSWORD_KEY, "");
     }
@@ -158,68 +586,141 @@ public class RestReceptionist {
         return registrationAsJson.getString(HOME_PAGE_KEY, "");
     }
 
-    private JsonObject userResponseAsJson(User registeredUser, String registeredUserId) {
-        return new JsonObject()
-                .add(ID_KEY, registeredUserId)
-                .add(USERNAME_KEY, registeredUser.name())
-                .add(ABOUT_KEY, registeredUser.about())
-                .add(HOME_PAGE_KEY,registeredUser.homePage());
-    }
-
     private ReceptionistResponse authenticatedUserResponse(User authenticatedUser) {
-        JsonObject responseAsJson = userResponseAsJson(
-                authenticatedUser,
-                userIdFor(authenticatedUser));
-
-        return new ReceptionistResponse(OK_200,responseAsJson.toString());
+        return userResponse(OK_200, authenticatedUser, userIdFor(authenticatedUser));
     }
 
-    private User userIdentifiedAs(String userId) {
-        return idsByUser.entrySet().stream()
-                .filter(userAndId->userAndId.getValue().equals(userId))
-                .findFirst()
-                .map(userAndId->userAndId.getKey())
+    private Publisher publisherIdentifiedAs(String userId) {
+        return Optional.ofNullable(publishersById.get(userId))
                 .orElseThrow(()->new ModelException(INVALID_CREDENTIALS));
     }
 
+    private ReceptionistResponse userResponse(int status, User user, String userId) {
+        return jsonResponse(status, writer -> writeUserTo(writer, user, userId));
+    }
+
     private ReceptionistResponse okResponseWithUserArrayFrom(List<User> users) {
-        JsonArray usersAsJsonArray = new JsonArray();
+        return jsonResponse(OK_200, writer -> {
+            writer.raw('[');
+            for(int index = 0; index<users.size(); index++) {
+                if(index>0) writer.raw(',');
+                final User user = users.get(index);
+                writeUserTo(writer, user, userIdFor(user));
+            }
+            writer.raw(']');
+        });
+    }
+
+    /* Si el cliente ya tiene la version actual del publisher se responde 304 sin armar el timeline o el muro.
+     * La version se lee antes de armarlos, asi si cambian mientras tanto el tag queda viejo y no adelantado
+     */
+    private ReceptionistResponse versionedResponseDo(Publisher publisher, String entityTagsToMatch,
+                                                     Supplier<ReceptionistResponse> responseClosure) {
+        final String entityTag = '"' + entityTagsEpoch + '.' + publisher.version() + '"';
+        if(anyEntityTagMatches(entityTagsToMatch, entityTag)) return ReceptionistResponse.notModified(entityTag);
+
+        return responseClosure.get().withEntityTag(entityTag);
+    }
+
+    //If-None-Match puede traer varios tags separados por coma, o *. Para GET se comparan ignorando W/
+    private boolean anyEntityTagMatches(String entityTagsToMatch, String entityTag) {
+        for(String entityTagToMatch : entityTagsToMatch.split(",")) {
+            final String trimmedEntityTag = entityTagToMatch.trim();
+            if(trimmedEntityTag.equals("*")
+                    || trimmedEntityTag.equals(entityTag)
+                    || trimmedEntityTag.equals("W/" + entityTag)) return true;
+        }
+
+        return false;
+    }
+
+    private ReceptionistResponse okResponseWithPublicationArrayFrom(List<Publication> publications) {
+        return jsonResponse(OK_200, writer -> {
+            writer.raw('[');
+            for(int index = 0; index<publications.size(); index++) {
+                if(index>0) writer.raw(',');
+                writePublicationTo(writer, publications.get(index));
+            }
+            writer.raw(']');
+        });
+    }
+
+    private void writeUserTo(Utf8JsonWriter writer, User user, String userId) throws IOException {
+        writer.raw(USER_ID_FIELD).string(userId)
+                .raw(USERNAME_FIELD).string(user.name())
+                .raw(ABOUT_FIELD).string(user.about())
+                .raw(HOME_PAGE_FIELD).string(user.homePage())
+                .raw('}');
+    }
 
-        users.stream()
-                .map(user -> userResponseAsJson(user, userIdFor(user)))
-                .forEach(userAsJson -> usersAsJsonArray.add(userAsJson));
+    private void writePublicationTo(Utf8JsonWriter writer, Publication publication) throws IOException {
+        final EncodedPublication encodedPublication = encodedPublications.get(publication);
+        //Puede no estar si la publicacion no se hizo a traves del receptionist
+        if(encodedPublication==null)
+            writePublicationWithoutLikesTo(
+                    writer,
+                    userIdFor(publication.publisherRelatedUser()),
+                    publication,
+                    publicationIdFor(publication));
+        else {
+            writer.raw(encodedPublication.fieldsBeforeText);
+            publication.writeMessageTo(writer);
+            writer.raw(encodedPublication.fieldsAfterText);
+        }
 
-        return new ReceptionistResponse(OK_200, usersAsJsonArray);
+        writer.number(system.likesOf(publication)).raw('}');
     }
 
-    private String userNameIdentifiedAs(String userId) {
-        return userIdentifiedAs(userId).name();
+    private void writePublicationWithoutLikesTo(Utf8JsonWriter writer, String userId, Publication publication, String publicationId) throws IOException {
+        writeFieldsBeforeTextTo(writer, userId, publicationId);
+        publication.writeMessageTo(writer);
+        writeFieldsAfterTextTo(writer, publication);
     }
 
-    private JsonObject publicationAsJson(String userId, Publication publication, String publicationId) {
-        return new JsonObject()
-                .add(POST_ID_KEY, publicationId)
-                .add(USER_ID_KEY, userId)
-                .add(TEXT_KEY, publication.message())
-                .add(DATE_TIME_KEY, formatDateTime(publication.publicationTime()))
-                .add(LIKES_KEY,system.likesOf(publication));
+    private void writeFieldsBeforeTextTo(Utf8JsonWriter writer, String userId, String publicationId) throws IOException {
+        writer.raw(POST_ID_FIELD).string(publicationId)
+                .raw(PUBLISHER_ID_FIELD).string(userId)
+                .raw(TEXT_FIELD);
     }
 
-    private String formatDateTime(LocalDateTime dateTimeToFormat) {
-        return DATE_TIME_FORMATTER.format(dateTimeToFormat);
+    private void writeFieldsAfterTextTo(Utf8JsonWriter writer, Publication publication) throws IOException {
+        writer.raw(DATE_TIME_FIELD).dateTime(publication.publicationTime())
+                .raw(LIKES_FIELD);
     }
 
-    private ReceptionistResponse publicationsAsJson(List<Publication> timeLine) {
-        JsonArray publicationsAsJsonObject = new JsonArray();
+    //El texto no se guarda, esta fuera del heap en el MessageArena y se copia de ahi al escribir
+    private EncodedPublication encodedWithoutLikes(String userId, Publication publication, String publicationId) {
+        return new EncodedPublication(
+                encoded(writer -> writeFieldsBeforeTextTo(writer, userId, publicationId)),
+                encoded(writer -> writeFieldsAfterTextTo(writer, publication)));
+    }
 
-        timeLine.stream()
-                .map(publication -> publicationAsJson(
-                        userIdFor(publication.publisherRelatedUser()),
-                        publication,
-                        publicationIdFor(publication)))
-                .forEach(userAsJson -> publicationsAsJsonObject.add(userAsJson));
+    private byte[] encoded(JsonBodyWriter bodyWriter) {
+        final ByteArrayOutputStream encodedFields = new ByteArrayOutputStream();
+        try {
+            final Utf8JsonWriter writer = Utf8JsonWriter.on(encodedFields);
+            bodyWriter.writeTo(writer);
+            writer.flush();
+        } catch (IOException error) {
+            throw new UncheckedIOException(error);
+        }
 
-        return new ReceptionistResponse(OK_200, publicationsAsJsonObject);
+        return encodedFields.toByteArray();
+    }
+
+    /* El body se escribe recien cuando se manda la respuesta, directo al OutputStream.
+     * Para usuarios y publicaciones no se usa minimal-json porque su forma es fija
+     */
+    private ReceptionistResponse jsonResponse(int status, JsonBodyWriter bodyWriter) {
+        return new ReceptionistResponse(status, output -> {
+            final Utf8JsonWriter writer = Utf8JsonWriter.on(output);
+            bodyWriter.writeTo(writer);
+            writer.flush();
+        });
+    }
+
+    private static byte[] fieldNamed(String key, char previousCharacter) {
+        return Utf8JsonWriter.encoded(previousCharacter + "\"" + key + "\":");
     }
 
     private String publicationIdFor(Publication publication) {
@@ -230,4 +731,18 @@ public class RestReceptionist {
         return idsByUser.get(user);
     }
 
+    private interface JsonBodyWriter {
+        void writeTo(Utf8JsonWriter writer) throws IOException;
+    }
+
+    private static class EncodedPublication {
+        private final byte[] fieldsBeforeText;
+        private final byte[] fieldsAfterText;
+
+        EncodedPublication(byte[] fieldsBeforeText, byte[] fieldsAfterText) {
+            this.fieldsBeforeText = fieldsBeforeText;
+            this.fieldsAfterText = fieldsAfterText;
+        }
+    }
+
 }
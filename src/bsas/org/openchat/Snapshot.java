@@ -0,0 +1,300 @@
+package bsas.org.openchat;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/* Todo el estado del RestReceptionist junto con la posicion del FileEventLog hasta
+ * la que incluye los cambios. Al arrancar se carga el snapshot y despues solo se
+ * reproduce el log desde esa posicion.
+ *
+ * A diferencia del log, los usuarios se guardan una sola vez y despues se referencian
+ * por su indice en el snapshot, asi seguidores y likers son ints y al cargarlo no hay
+ * que buscar cada id en un mapa.
+ *
+ * Se escribe mientras se siguen haciendo cambios, asi que puede incluir cambios
+ * posteriores a la posicion, por eso restaurar un evento del log dos veces no hace nada.
+ * Se escribe en un archivo temporal que reemplaza al anterior recien cuando esta
+ * completo, asi que si se corta el proceso queda el snapshot anterior.
+ *
+ * Formato: MAGIC, VERSION, posicion del log, los registros (usuario, seguimiento o
+ * publicacion con sus likers) y al final la cantidad de registros, el CRC32 de todo lo
+ * anterior y MAGIC otra vez para saber que esta completo. El CRC se verifica antes de
+ * restaurar nada, asi un snapshot roto no deja a medias al receptionist.
+ */
+public class Snapshot {
+    public static final String INVALID_SNAPSHOT = "Invalid snapshot";
+
+    private static final int MAGIC = 0x4F43534E;
+    private static final byte USER = 1;
+    private static final byte FOLLOWING = 2;
+    private static final byte PUBLICATION = 3;
+    private static final int VERSION = 2;
+    private static final int HEADER_SIZE = 2 * Integer.BYTES + Long.BYTES;
+    private static final int TRAILER_SIZE = Long.BYTES + 2 * Integer.BYTES;
+    private static final int WRITE_BUFFER_SIZE = 1 << 16;
+    //Se mapea de a partes para no depender del limite de 2GB de un MappedByteBuffer
+    private static final long MAPPED_REGION_SIZE = 256L * 1024 * 1024;
+
+    private final Path file;
+
+    private Snapshot(Path file) {
+        this.file = file;
+    }
+
+    public static Snapshot at(Path file) {
+        return new Snapshot(file);
+    }
+
+    public boolean exists() {
+        return Files.exists(file);
+    }
+
+    //Devuelve cuantos registros se guardaron
+    public long writeFrom(RestReceptionist receptionist, FileEventLog eventLog) throws IOException {
+        final long logPosition = receptionist.atConsistentPointDo(() -> eventLog.position());
+        final Path temporaryFile = file.resolveSibling(file.getFileName() + ".tmp");
+
+        final long numberOfRecords;
+        try(FileChannel channel = FileChannel.open(temporaryFile,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            final CheckedOutputStream checkedOutput = new CheckedOutputStream(
+                    new BufferedOutputStream(Channels.newOutputStream(channel), WRITE_BUFFER_SIZE), new CRC32());
+            final DataOutputStream output = new DataOutputStream(checkedOutput);
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            output.writeLong(logPosition);
+            final StateWriter stateWriter = new StateWriter(output);
+            receptionist.writeStateOn(stateWriter);
+            numberOfRecords = stateWriter.numberOfRecords;
+            output.writeLong(numberOfRecords);
+            output.writeInt((int) checkedOutput.getChecksum().getValue());
+            output.writeInt(MAGIC);
+            output.flush();
+            channel.force(true);
+        }
+
+        //El snapshot no puede tener cambios que despues de cortarse el proceso no esten en el log
+        eventLog.awaitDurable(eventLog.position());
+        Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        return numberOfRecords;
+    }
+
+    /* Restaura todo en receptionist, que tiene que estar vacio, y devuelve la posicion del log desde donde hay que reproducirlo.
+     * Si el snapshot esta roto no restaura nada
+     */
+    public long loadInto(RestReceptionist receptionist) throws IOException {
+        try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            final long size = channel.size();
+            if(size<HEADER_SIZE + TRAILER_SIZE) throw invalidSnapshot();
+            final ByteBuffer trailer = trailerOf(channel, size);
+            final long numberOfRecords = trailer.getLong();
+            if(trailer.getInt()!=crcOf(channel, size - TRAILER_SIZE + Long.BYTES)
+                    || trailer.getInt()!=MAGIC
+                    || numberOfRecords<0)
+                throw invalidSnapshot();
+
+            final DataInputStream input = new DataInputStream(new MappedInputStream(channel, size - TRAILER_SIZE));
+            if(input.readInt()!=MAGIC || input.readInt()!=VERSION) throw invalidSnapshot();
+            final long logPosition = input.readLong();
+
+            final StateReader stateReader = new StateReader(input, receptionist);
+            for(long recordNumber = 0; recordNumber<numberOfRecords; recordNumber++)
+                stateReader.restoreNextRecord();
+
+            return logPosition;
+        } catch (EOFException error) {
+            throw invalidSnapshot();
+        }
+    }
+
+    private ByteBuffer trailerOf(FileChannel channel, long size) throws IOException {
+        final ByteBuffer trailer = ByteBuffer.allocate(TRAILER_SIZE);
+        while (trailer.hasRemaining())
+            if(channel.read(trailer, size - TRAILER_SIZE + trailer.position())<0) throw invalidSnapshot();
+
+        return trailer.flip();
+    }
+
+    //El CRC32 de los primeros end bytes, leyendolos mapeados como al restaurar
+    private static int crcOf(FileChannel channel, long end) throws IOException {
+        final CRC32 crc = new CRC32();
+        for(long regionStart = 0; regionStart<end; regionStart += MAPPED_REGION_SIZE)
+            crc.update(channel.map(FileChannel.MapMode.READ_ONLY, regionStart, Math.min(MAPPED_REGION_SIZE, end - regionStart)));
+
+        return (int) crc.getValue();
+    }
+
+    private IOException invalidSnapshot() {
+        return new IOException(INVALID_SNAPSHOT + ": " + file);
+    }
+
+    //Lo que usa el RestReceptionist para guardar su estado. Los usuarios se tienen que guardar antes de referenciarlos
+    static class StateWriter {
+        private final DataOutputStream output;
+        private final Map<User,Integer> indexesByUser = new IdentityHashMap<>();
+        private long numberOfRecords = 0;
+
+        private StateWriter(DataOutputStream output) {
+            this.output = output;
+        }
+
+        void user(User user, String userId, String password) throws IOException {
+            output.writeByte(USER);
+            OpenChatEvent.writeString(output, userId);
+            OpenChatEvent.writeString(output, user.name());
+            OpenChatEvent.writeString(output, password);
+            OpenChatEvent.writeString(output, user.about());
+            OpenChatEvent.writeString(output, user.homePage());
+            indexesByUser.put(user, indexesByUser.size());
+            numberOfRecords++;
+        }
+
+        //Los que se registraron despues de empezar a escribir el snapshot se ignoran, estan en el log
+        void following(User followed, User follower) throws IOException {
+            final Integer followedIndex = indexesByUser.get(followed);
+            final Integer followerIndex = indexesByUser.get(follower);
+            if(followedIndex==null || followerIndex==null) return;
+
+            output.writeByte(FOLLOWING);
+            output.writeInt(followedIndex);
+            output.writeInt(followerIndex);
+            numberOfRecords++;
+        }
+
+        void publication(String publicationId, User publisher, Publication publication, List<User> likers) throws IOException {
+            final Integer publisherIndex = indexesByUser.get(publisher);
+            if(publisherIndex==null) return;
+            final int[] likerIndexes = likers.stream()
+                    .map(liker -> indexesByUser.get(liker))
+                    .filter(likerIndex -> likerIndex!=null)
+                    .mapToInt(likerIndex -> likerIndex)
+                    .toArray();
+
+            output.writeByte(PUBLICATION);
+            OpenChatEvent.writeString(output, publicationId);
+            output.writeInt(publisherIndex);
+            OpenChatEvent.writeString(output, publication.message());
+            OpenChatEvent.writeDateTime(output, publication.publicationTime());
+            output.writeInt(likerIndexes.length);
+            for(int likerIndex : likerIndexes) output.writeInt(likerIndex);
+            numberOfRecords++;
+        }
+    }
+
+    private class StateReader {
+        private final DataInputStream input;
+        private final RestReceptionist receptionist;
+        private final List<String> userIds = new ArrayList<>();
+        private final List<Publisher> publishers = new ArrayList<>();
+
+        private StateReader(DataInputStream input, RestReceptionist receptionist) {
+            this.input = input;
+            this.receptionist = receptionist;
+        }
+
+        private void restoreNextRecord() throws IOException {
+            final byte type = input.readByte();
+            switch (type) {
+                case USER: restoreUser(); break;
+                case FOLLOWING: receptionist.restoreFollowing(publisherAt(input.readInt()), publisherAt(input.readInt())); break;
+                case PUBLICATION: restorePublication(); break;
+                default: throw invalidSnapshot();
+            }
+        }
+
+        private void restoreUser() throws IOException {
+            final String userId = OpenChatEvent.readString(input);
+            userIds.add(userId);
+            publishers.add(receptionist.restoreRegistration(
+                    userId,
+                    OpenChatEvent.readString(input),
+                    OpenChatEvent.readString(input),
+                    OpenChatEvent.readString(input),
+                    OpenChatEvent.readString(input)));
+        }
+
+        private void restorePublication() throws IOException {
+            final String publicationId = OpenChatEvent.readString(input);
+            final int publisherIndex = input.readInt();
+            final Publication publication = receptionist.restorePublication(
+                    publicationId,
+                    userIdAt(publisherIndex),
+                    publisherAt(publisherIndex),
+                    OpenChatEvent.readString(input),
+                    OpenChatEvent.readDateTime(input));
+
+            final int numberOfLikers = input.readInt();
+            for(int likerNumber = 0; likerNumber<numberOfLikers; likerNumber++)
+                receptionist.restoreLike(publication, publisherAt(input.readInt()));
+        }
+
+        private Publisher publisherAt(int index) throws IOException {
+            if(index<0 || index>=publishers.size()) throw invalidSnapshot();
+
+            return publishers.get(index);
+        }
+
+        private String userIdAt(int index) throws IOException {
+            if(index<0 || index>=userIds.size()) throw invalidSnapshot();
+
+            return userIds.get(index);
+        }
+    }
+
+    //Lee el archivo hasta end mapeandolo de a una region por vez
+    private static class MappedInputStream extends InputStream {
+        private final FileChannel channel;
+        private final long end;
+        private long regionStart = 0;
+        private MappedByteBuffer region = null;
+
+        private MappedInputStream(FileChannel channel, long end) {
+            this.channel = channel;
+            this.end = end;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if(!hasRemaining()) return -1;
+
+            return region.get() & 0xff;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) throws IOException {
+            if(length==0) return 0;
+            if(!hasRemaining()) return -1;
+
+            final int bytesToRead = Math.min(length, region.remaining());
+            region.get(bytes, offset, bytesToRead);
+
+            return bytesToRead;
+        }
+
+        private boolean hasRemaining() throws IOException {
+            if(region!=null && region.hasRemaining()) return true;
+
+            final long nextRegionStart = region==null ? 0 : regionStart + region.capacity();
+            if(nextRegionStart>=end) return false;
+
+            regionStart = nextRegionStart;
+            region = channel.map(FileChannel.MapMode.READ_ONLY, regionStart, Math.min(MAPPED_REGION_SIZE, end - regionStart));
+
+            return true;
+        }
+    }
+}
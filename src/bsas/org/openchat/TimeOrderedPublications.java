@@ -0,0 +1,140 @@
+package bsas.org.openchat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/* Las publicaciones se guardan de la mas vieja a la mas nueva, por lo que
+ * publicar con el reloj avanzando es agregar al final. Las que tienen el
+ * mismo tiempo se leen, de la mas nueva a la mas vieja, en el orden en que
+ * se agregaron.
+ * Es inmutable para que se pueda leer desde varios threads sin locks: with
+ * y withoutOldest devuelven una nueva instancia que comparte el array
+ * mientras se agregue al final. Por eso solo se debe llamar with sobre la
+ * ultima instancia, que es lo que hace quien la tenga bajo su lock.
+ */
+class TimeOrderedPublications {
+    private static final int INITIAL_CAPACITY = 8;
+    private static final TimeOrderedPublications EMPTY =
+            new TimeOrderedPublications(new Publication[0], 0, 0);
+
+    private final Publication[] elements;
+    private final int from;
+    private final int to;
+
+    public static TimeOrderedPublications empty() {
+        return EMPTY;
+    }
+
+    private TimeOrderedPublications(Publication[] elements, int from, int to) {
+        this.elements = elements;
+        this.from = from;
+        this.to = to;
+    }
+
+    public TimeOrderedPublications with(Publication publication) {
+        if(isEmpty() || newest().comparePublicationTimeWith(publication)<0) return withNewest(publication);
+
+        return withInserted(publication, firstIndexNotOlderThan(publication));
+    }
+
+    /* Las de esta instancia mas las de newestFirstPublications, que tienen que estar de la mas
+     * nueva a la mas vieja como en un timeline, quedandose solo con las capacity mas nuevas.
+     * Las del mismo tiempo quedan como si se hubieran agregado de a una con with: las de
+     * newestFirstPublications antes que las de esta instancia. Recorre cada una una sola vez
+     */
+    public TimeOrderedPublications mergedWith(List<Publication> newestFirstPublications, int capacity) {
+        final int mergedSize = Math.min(capacity, size() + newestFirstPublications.size());
+        final Publication[] merged = new Publication[Math.max(INITIAL_CAPACITY, mergedSize * 2)];
+        int index = size() - 1;
+        int otherIndex = 0;
+        for(int mergedIndex = mergedSize - 1; mergedIndex>=0; mergedIndex--) {
+            final boolean isOursNewer = otherIndex>=newestFirstPublications.size()
+                    || (index>=0 && get(index).comparePublicationTimeWith(newestFirstPublications.get(otherIndex))>=0);
+            merged[mergedIndex] = isOursNewer ? get(index--) : newestFirstPublications.get(otherIndex++);
+        }
+
+        return new TimeOrderedPublications(merged, 0, mergedSize);
+    }
+
+    public TimeOrderedPublications withoutOldest() {
+        return new TimeOrderedPublications(elements, from + 1, to);
+    }
+
+    public boolean isEmpty() {
+        return size()==0;
+    }
+
+    public int size() {
+        return to - from;
+    }
+
+    public Publication get(int index) {
+        return elements[from + index];
+    }
+
+    public int indexOf(Publication publication) {
+        for(int index = firstIndexNotOlderThan(publication); index<firstIndexNewerThan(publication); index++)
+            if(get(index)==publication) return index;
+
+        return -1;
+    }
+
+    public int firstIndexNotOlderThan(Publication publication) {
+        int low = 0;
+        int high = size();
+        while(low<high) {
+            final int middle = (low + high) >>> 1;
+            if(get(middle).comparePublicationTimeWith(publication)<0) low = middle + 1;
+            else high = middle;
+        }
+        return low;
+    }
+
+    public int firstIndexNewerThan(Publication publication) {
+        int low = 0;
+        int high = size();
+        while(low<high) {
+            final int middle = (low + high) >>> 1;
+            if(get(middle).comparePublicationTimeWith(publication)<=0) low = middle + 1;
+            else high = middle;
+        }
+        return low;
+    }
+
+    public List<Publication> newestFirst() {
+        return newest(size());
+    }
+
+    public List<Publication> newest(int limit) {
+        final List<Publication> newest = new ArrayList<>(Math.min(limit, size()));
+        for(int index = size() - 1; index>=0 && newest.size()<limit; index--)
+            newest.add(get(index));
+
+        return newest;
+    }
+
+    private Publication newest() {
+        return get(size() - 1);
+    }
+
+    private TimeOrderedPublications withNewest(Publication publication) {
+        if(to<elements.length) {
+            elements[to] = publication;
+            return new TimeOrderedPublications(elements, from, to + 1);
+        }
+
+        final Publication[] grown = Arrays.copyOfRange(elements, from, from + Math.max(INITIAL_CAPACITY, size() * 2));
+        grown[size()] = publication;
+        return new TimeOrderedPublications(grown, 0, size() + 1);
+    }
+
+    private TimeOrderedPublications withInserted(Publication publication, int index) {
+        final Publication[] inserted = new Publication[Math.max(INITIAL_CAPACITY, size() * 2)];
+        System.arraycopy(elements, from, inserted, 0, index);
+        inserted[index] = publication;
+        System.arraycopy(elements, from + index, inserted, index + 1, size() - index);
+
+        return new TimeOrderedPublications(inserted, 0, size() + 1);
+    }
+}
@@ -0,0 +1,220 @@
+package bsas.org.openchat;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+
+/* Escribe Json directamente como bytes UTF-8 en un OutputStream, sin armar un
+ * arbol de JsonValue ni un String intermedio. No sabe nada de la forma del Json,
+ * el que lo usa escribe los nombres de los campos ya codificados con raw.
+ * Los strings se escapan igual que minimal-json para que la respuesta no cambie.
+ */
+public class Utf8JsonWriter {
+    private static final int BUFFER_SIZE = 8192;
+    //Lo que mas ocupa un char escrito: un escape unicode de 6 bytes
+    private static final int MAX_BYTES_PER_CHARACTER = 6;
+    private static final byte[] HEX_DIGITS = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+    private static final byte REPLACEMENT = '?';
+    private static final byte[] NULL = encoded("null");
+    private static final byte LINE_SEPARATOR_LAST_BYTE = (byte) 0xa8;
+    private static final byte PARAGRAPH_SEPARATOR_LAST_BYTE = (byte) 0xa9;
+
+    private final OutputStream output;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private int position = 0;
+
+    private Utf8JsonWriter(OutputStream output) {
+        this.output = output;
+    }
+
+    public static Utf8JsonWriter on(OutputStream output) {
+        return new Utf8JsonWriter(output);
+    }
+
+    public static byte[] encoded(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    public Utf8JsonWriter raw(byte[] bytes) throws IOException {
+        if(bytes.length>buffer.length - position) {
+            flushBuffer();
+            if(bytes.length>buffer.length) {
+                output.write(bytes);
+                return this;
+            }
+        }
+        System.arraycopy(bytes, 0, buffer, position, bytes.length);
+        position += bytes.length;
+
+        return this;
+    }
+
+    public Utf8JsonWriter raw(char asciiCharacter) throws IOException {
+        ensureRoomFor(1);
+        buffer[position++] = (byte) asciiCharacter;
+
+        return this;
+    }
+
+    public Utf8JsonWriter string(String value) throws IOException {
+        if(value==null) return raw(NULL);
+
+        raw('"');
+        for(int index = 0; index<value.length(); index++) {
+            ensureRoomFor(MAX_BYTES_PER_CHARACTER);
+            final char character = value.charAt(index);
+            if(Character.isHighSurrogate(character) && index + 1<value.length()
+                    && Character.isLowSurrogate(value.charAt(index + 1))) {
+                writeCodePoint(Character.toCodePoint(character, value.charAt(index + 1)));
+                index++;
+            } else
+                writeCharacter(character);
+        }
+        raw('"');
+
+        return this;
+    }
+
+    /* Los bytes tienen que ser UTF-8 valido, como los de String.getBytes. Se copian escapando
+     * lo mismo que string, asi el resultado es igual al de escribir el String decodificado
+     */
+    public Utf8JsonWriter utf8String(ByteBuffer utf8, int offset, int length) throws IOException {
+        raw('"');
+        final int end = offset + length;
+        for(int index = offset; index<end; index++) {
+            ensureRoomFor(MAX_BYTES_PER_CHARACTER);
+            final byte current = utf8.get(index);
+            if(current>=0) writeCharacter((char) current);
+            else if(isLineOrParagraphSeparatorAt(utf8, index, end)) {
+                writeUnicodeEscaped(utf8.get(index + 2)==LINE_SEPARATOR_LAST_BYTE ? '\u2028' : '\u2029');
+                index += 2;
+            } else buffer[position++] = current;
+        }
+        raw('"');
+
+        return this;
+    }
+
+    public Utf8JsonWriter number(long value) throws IOException {
+        if(value==Long.MIN_VALUE) return raw(encoded(Long.toString(value)));
+
+        ensureRoomFor(20);
+        long remaining = value;
+        if(remaining<0) {
+            buffer[position++] = '-';
+            remaining = -remaining;
+        }
+        final int digits = numberOfDigits(remaining);
+        for(int index = position + digits - 1; index>=position; index--) {
+            buffer[index] = (byte) ('0' + remaining % 10);
+            remaining = remaining / 10;
+        }
+        position += digits;
+
+        return this;
+    }
+
+    //Mismo formato que RestReceptionist.DATE_TIME_FORMATTER, entre comillas
+    public Utf8JsonWriter dateTime(LocalDateTime dateTime) throws IOException {
+        if(dateTime.getYear()<0 || dateTime.getYear()>9999)
+            return string(RestReceptionist.DATE_TIME_FORMATTER.format(dateTime));
+
+        ensureRoomFor(22);
+        buffer[position++] = '"';
+        writeDigits(dateTime.getYear(), 4);
+        buffer[position++] = '-';
+        writeDigits(dateTime.getMonthValue(), 2);
+        buffer[position++] = '-';
+        writeDigits(dateTime.getDayOfMonth(), 2);
+        buffer[position++] = 'T';
+        writeDigits(dateTime.getHour(), 2);
+        buffer[position++] = ':';
+        writeDigits(dateTime.getMinute(), 2);
+        buffer[position++] = ':';
+        writeDigits(dateTime.getSecond(), 2);
+        buffer[position++] = 'Z';
+        buffer[position++] = '"';
+
+        return this;
+    }
+
+    public void flush() throws IOException {
+        flushBuffer();
+        output.flush();
+    }
+
+    private void writeCharacter(char character) {
+        if(character=='"' || character=='\\') {
+            buffer[position++] = '\\';
+            buffer[position++] = (byte) character;
+        } else if(character=='\n') writeEscaped('n');
+        else if(character=='\r') writeEscaped('r');
+        else if(character=='\t') writeEscaped('t');
+        else if(character<0x20 || character=='\u2028' || character=='\u2029') writeUnicodeEscaped(character);
+        else if(character<0x80) buffer[position++] = (byte) character;
+        else if(character<0x800) {
+            buffer[position++] = (byte) (0xc0 | (character >> 6));
+            buffer[position++] = (byte) (0x80 | (character & 0x3f));
+        } else if(Character.isSurrogate(character)) buffer[position++] = REPLACEMENT;
+        else {
+            buffer[position++] = (byte) (0xe0 | (character >> 12));
+            buffer[position++] = (byte) (0x80 | ((character >> 6) & 0x3f));
+            buffer[position++] = (byte) (0x80 | (character & 0x3f));
+        }
+    }
+
+    //U+2028 y U+2029 en UTF-8 son E2 80 A8 y E2 80 A9
+    private boolean isLineOrParagraphSeparatorAt(ByteBuffer utf8, int index, int end) {
+        return utf8.get(index)==(byte) 0xe2 && index + 2<end
+                && utf8.get(index + 1)==(byte) 0x80
+                && (utf8.get(index + 2)==LINE_SEPARATOR_LAST_BYTE || utf8.get(index + 2)==PARAGRAPH_SEPARATOR_LAST_BYTE);
+    }
+
+    private void writeCodePoint(int codePoint) {
+        buffer[position++] = (byte) (0xf0 | (codePoint >> 18));
+        buffer[position++] = (byte) (0x80 | ((codePoint >> 12) & 0x3f));
+        buffer[position++] = (byte) (0x80 | ((codePoint >> 6) & 0x3f));
+        buffer[position++] = (byte) (0x80 | (codePoint & 0x3f));
+    }
+
+    private void writeEscaped(char escapedCharacter) {
+        buffer[position++] = '\\';
+        buffer[position++] = (byte) escapedCharacter;
+    }
+
+    private void writeUnicodeEscaped(char character) {
+        buffer[position++] = '\\';
+        buffer[position++] = 'u';
+        buffer[position++] = HEX_DIGITS[(character >> 12) & 0xf];
+        buffer[position++] = HEX_DIGITS[(character >> 8) & 0xf];
+        buffer[position++] = HEX_DIGITS[(character >> 4) & 0xf];
+        buffer[position++] = HEX_DIGITS[character & 0xf];
+    }
+
+    private void writeDigits(int value, int numberOfDigits) {
+        int remaining = value;
+        for(int index = position + numberOfDigits - 1; index>=position; index--) {
+            buffer[index] = (byte) ('0' + remaining % 10);
+            remaining = remaining / 10;
+        }
+        position += numberOfDigits;
+    }
+
+    private int numberOfDigits(long positiveValue) {
+        int digits = 1;
+        for(long limit = 10; digits<19 && positiveValue>=limit; limit *= 10) digits++;
+
+        return digits;
+    }
+
+    private void ensureRoomFor(int numberOfBytes) throws IOException {
+        if(buffer.length - position<numberOfBytes) flushBuffer();
+    }
+
+    private void flushBuffer() throws IOException {
+        output.write(buffer, 0, position);
+        position = 0;
+    }
+}
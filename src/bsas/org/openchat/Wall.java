@@ -0,0 +1,11 @@
+package bsas.org.openchat;
+
+import java.util.List;
+
+interface Wall {
+    List<Publication> publicationsOf(Publisher owner, PublicationsPage page);
+
+    void publicationAdded(Publication publication);
+
+    void followerAdded(Publisher follower);
+}
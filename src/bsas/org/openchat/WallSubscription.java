@@ -0,0 +1,52 @@
+package bsas.org.openchat;
+
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/* Las publicaciones que se agregan al muro de un publisher, para quien lo sigue en vivo.
+ * Publicar solo las encola y avisa con publicationsAvailable, asi un suscriptor lento no
+ * demora a quien publica. La cola es acotada: si se llena el suscriptor no da abasto y se
+ * lo da de baja en lugar de acumular publicaciones, tambien avisandole con publicationsAvailable.
+ */
+public class WallSubscription {
+    public static final String INVALID_CAPACITY = "Wall subscription capacity must be positive";
+
+    private final Publisher publisher;
+    private final BlockingQueue<Publication> publications;
+    private final Runnable publicationsAvailable;
+    private volatile boolean isCancelled = false;
+
+    static WallSubscription to(Publisher publisher, int capacity, Runnable publicationsAvailable) {
+        if(capacity<=0) throw new ModelException(INVALID_CAPACITY);
+
+        return new WallSubscription(publisher, capacity, publicationsAvailable);
+    }
+
+    private WallSubscription(Publisher publisher, int capacity, Runnable publicationsAvailable) {
+        this.publisher = publisher;
+        this.publications = new ArrayBlockingQueue<>(capacity);
+        this.publicationsAvailable = publicationsAvailable;
+    }
+
+    void publicationAdded(Publication publication) {
+        if(isCancelled) return;
+        if(!publications.offer(publication)) cancel();
+
+        publicationsAvailable.run();
+    }
+
+    public Optional<Publication> nextPublication() {
+        return Optional.ofNullable(publications.poll());
+    }
+
+    public boolean isCancelled() {
+        return isCancelled;
+    }
+
+    public void cancel() {
+        isCancelled = true;
+        publisher.unsubscribe(this);
+        publications.clear();
+    }
+}
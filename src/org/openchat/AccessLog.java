@@ -0,0 +1,205 @@
+package org.openchat;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Instant;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/* Log de acceso asincronico: el thread del request solo copia los datos a un registro de un
+ * buffer circular de capacidad fija y sigue, un thread aparte arma las lineas y las escribe.
+ * Si el buffer esta lleno el registro se descarta y se cuenta, el request nunca espera.
+ * El buffer es una cola acotada de Vyukov: cada registro tiene un numero de secuencia que
+ * indica si esta libre para escribirlo o listo para leerlo, asi no hacen falta locks.
+ * Sin registros el thread que escribe se duerme y lo despierta el proximo request.
+ */
+public class AccessLog {
+    public static final String INVALID_SAMPLE_RATE = "Access log sample rate must be between 0 and 1";
+    public static final String INVALID_CAPACITY = "Access log capacity must be a positive power of two";
+
+    private static Logger logger = LoggerFactory.getLogger(AccessLog.class);
+
+    private final double sampleRate;
+    private final Consumer<String> lineWriter;
+    private final Entry[] entries;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final AtomicLong nextToWrite = new AtomicLong();
+    private final LongAdder droppedEntries = new LongAdder();
+    private volatile Thread writer;
+    //El writer lo pone en true antes de fijarse por ultima vez si hay registros y dormirse
+    private volatile boolean writerIsIdle = false;
+    //Solo lo usa el thread que escribe el log
+    private long nextToRead = 0;
+    private long reportedDroppedEntries = 0;
+
+    private AccessLog(double sampleRate, int capacity, Consumer<String> lineWriter) {
+        this.sampleRate = sampleRate;
+        this.lineWriter = lineWriter;
+        this.entries = new Entry[capacity];
+        this.sequences = new AtomicLongArray(capacity);
+        this.mask = capacity - 1;
+        for(int index = 0; index<capacity; index++) {
+            entries[index] = new Entry();
+            sequences.set(index, index);
+        }
+    }
+
+    //Los requests que terminan con error de servidor se loguean siempre, el resto con probabilidad sampleRate
+    public static AccessLog sampling(double sampleRate, int capacity) {
+        return startedWritingTo(sampleRate, capacity, line -> logger.info(line));
+    }
+
+    static AccessLog startedWritingTo(double sampleRate, int capacity, Consumer<String> lineWriter) {
+        final AccessLog accessLog = writingTo(sampleRate, capacity, lineWriter);
+        accessLog.startWriter();
+
+        return accessLog;
+    }
+
+    //Sin thread que escriba, las lineas se le pasan a lineWriter al llamar a writePendingEntries
+    static AccessLog writingTo(double sampleRate, int capacity, Consumer<String> lineWriter) {
+        if(sampleRate<0 || sampleRate>1) throw new IllegalArgumentException(INVALID_SAMPLE_RATE);
+        if(capacity<=0 || Integer.bitCount(capacity)!=1) throw new IllegalArgumentException(INVALID_CAPACITY);
+
+        return new AccessLog(sampleRate, capacity, lineWriter);
+    }
+
+    public void log(String method, String path, String query, int status, long durationInNanos, String remoteAddress) {
+        if(status<500 && ThreadLocalRandom.current().nextDouble()>=sampleRate) return;
+
+        long position = nextToWrite.get();
+        while (true) {
+            final long sequence = sequences.get(indexOf(position));
+            if(sequence==position) {
+                if(nextToWrite.compareAndSet(position, position + 1)) break;
+                position = nextToWrite.get();
+            } else if(sequence<position) {
+                droppedEntries.increment();
+                return;
+            } else position = nextToWrite.get();
+        }
+
+        entries[indexOf(position)].fill(System.currentTimeMillis(), method, path, query, status, durationInNanos, remoteAddress);
+        sequences.set(indexOf(position), position + 1);
+        if(writerIsIdle) LockSupport.unpark(writer);
+    }
+
+    public long droppedEntries() {
+        return droppedEntries.sum();
+    }
+
+    private void startWriter() {
+        writer = new Thread(() -> writeForever(), "access-log-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /* Se duerme recien despues de marcarse idle y ver que sigue sin registros. Como quien loguea
+     * primero publica el registro y despues se fija si esta idle, alguno de los dos ve al otro
+     */
+    private void writeForever() {
+        while (true) {
+            writePendingEntries();
+            writerIsIdle = true;
+            if(!hasEntryToRead()) LockSupport.park(this);
+            writerIsIdle = false;
+        }
+    }
+
+    //Escribe los registros que ya estan listos y avisa si se descartaron. Devuelve cuantos escribio
+    int writePendingEntries() {
+        final StringBuilder line = new StringBuilder(256);
+        int writtenEntries = 0;
+        while (writeNextEntry(line)) writtenEntries++;
+        reportDroppedEntries();
+
+        return writtenEntries;
+    }
+
+    private boolean hasEntryToRead() {
+        return sequences.get(indexOf(nextToRead))==nextToRead + 1;
+    }
+
+    private boolean writeNextEntry(StringBuilder line) {
+        if(!hasEntryToRead()) return false;
+        final int index = indexOf(nextToRead);
+
+        line.setLength(0);
+        entries[index].writeOn(line);
+        entries[index].clear();
+        sequences.set(index, nextToRead + entries.length);
+        nextToRead++;
+
+        lineWriter.accept(line.toString());
+        return true;
+    }
+
+    private void reportDroppedEntries() {
+        final long dropped = droppedEntries();
+        if(dropped==reportedDroppedEntries) return;
+
+        logger.warn((dropped - reportedDroppedEntries) + " access log entries dropped because the buffer was full");
+        reportedDroppedEntries = dropped;
+    }
+
+    private int indexOf(long position) {
+        return (int) (position & mask);
+    }
+
+    //Se reusan, el thread del request solo copia referencias y numeros
+    private static class Entry {
+        private long timeInMillis;
+        private String method;
+        private String path;
+        private String query;
+        private int status;
+        private long durationInNanos;
+        private String remoteAddress;
+
+        void fill(long timeInMillis, String method, String path, String query, int status, long durationInNanos, String remoteAddress) {
+            this.timeInMillis = timeInMillis;
+            this.method = method;
+            this.path = path;
+            this.query = query;
+            this.status = status;
+            this.durationInNanos = durationInNanos;
+            this.remoteAddress = remoteAddress;
+        }
+
+        void clear() {
+            fill(0, null, null, null, 0, 0, null);
+        }
+
+        //Una linea de pares clave=valor, los valores que vienen del cliente van entre comillas
+        void writeOn(StringBuilder line) {
+            line.append("time=").append(Instant.ofEpochMilli(timeInMillis))
+                    .append(" method=").append(method)
+                    .append(" path=");
+            quoted(line, path);
+            if(query!=null) {
+                line.append(" query=");
+                quoted(line, query);
+            }
+            line.append(" status=").append(status)
+                    .append(" duration_us=").append(TimeUnit.NANOSECONDS.toMicros(durationInNanos))
+                    .append(" remote=").append(remoteAddress);
+        }
+
+        private void quoted(StringBuilder line, String value) {
+            line.append('"');
+            for(int index = 0; index<value.length(); index++) {
+                final char character = value.charAt(index);
+                if(character=='"' || character=='\\') line.append('\\');
+                line.append(character);
+            }
+            line.append('"');
+        }
+    }
+}
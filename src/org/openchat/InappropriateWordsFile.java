@@ -0,0 +1,68 @@
+package org.openchat;
+
+import bsas.org.openchat.InappropriateWords;
+import bsas.org.openchat.Publication;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/* Carga las palabras inapropiadas desde un archivo y las vuelve a cargar cuando
+ * el archivo cambia. El automata nuevo se arma en otro thread y recien despues
+ * se reemplaza, asi los que estan publicando nunca esperan.
+ */
+public class InappropriateWordsFile {
+    private static Logger logger = LoggerFactory.getLogger(InappropriateWordsFile.class);
+
+    private final Path wordsFile;
+    private FileTime lastLoadedModificationTime;
+
+    private InappropriateWordsFile(Path wordsFile) {
+        this.wordsFile = wordsFile;
+    }
+
+    public static InappropriateWordsFile at(Path wordsFile) {
+        return new InappropriateWordsFile(wordsFile);
+    }
+
+    public void loadAndReloadEvery(long checkPeriodInSeconds) {
+        try {
+            load();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        final ScheduledExecutorService checker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "inappropriate-words-reloader");
+            thread.setDaemon(true);
+            return thread;
+        });
+        checker.scheduleWithFixedDelay(
+                () -> reloadIfModified(), checkPeriodInSeconds, checkPeriodInSeconds, TimeUnit.SECONDS);
+    }
+
+    private void reloadIfModified() {
+        try {
+            if(!Files.getLastModifiedTime(wordsFile).equals(lastLoadedModificationTime)) load();
+        } catch (IOException | RuntimeException e) {
+            //Si el archivo nuevo no se puede leer se siguen usando las palabras anteriores
+            logger.error("Could not reload inappropriate words from " + wordsFile + ": " + e.getMessage());
+        }
+    }
+
+    private void load() throws IOException {
+        final FileTime modificationTime = Files.getLastModifiedTime(wordsFile);
+        final InappropriateWords inappropriateWords = InappropriateWords.loadedFrom(wordsFile);
+
+        Publication.useInappropriateWords(inappropriateWords);
+        lastLoadedModificationTime = modificationTime;
+        logger.info("Loaded " + inappropriateWords.size() + " inappropriate words from " + wordsFile);
+    }
+}
@@ -1,13 +1,25 @@
 package org.openchat;
 
+import org.eclipse.jetty.server.Server;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import spark.Spark;
+import spark.embeddedserver.jetty.JettyHandler;
+import spark.globalstate.ServletFlag;
+import spark.http.matching.MatcherFilter;
+import spark.route.ServletRoutes;
+import spark.staticfiles.StaticFilesConfiguration;
 
 import static org.eclipse.jetty.http.HttpStatus.NOT_IMPLEMENTED_501;
 import static spark.Spark.*;
 
 public class OpenChat {
+    public static final int PORT = 4321;
+    public static final String WORKER_POOL_PROPERTY = "openchat.workerPool";
+    public static final String MIN_THREADS_PROPERTY = "openchat.minThreads";
+    public static final String MAX_THREADS_PROPERTY = "openchat.maxThreads";
+    public static final String THREAD_IDLE_TIMEOUT_PROPERTY = "openchat.threadIdleTimeoutInMillis";
+    public static final String WORKER_QUEUE_CAPACITY_PROPERTY = "openchat.workerQueueCapacity";
 
     private static Logger logger = LoggerFactory.getLogger(OpenChat.class);
 
@@ -15,22 +27,57 @@ public class OpenChat {
     private static final String INTERNAL_SERVER_ERROR = "Internal server error.";
 
     private Routes routes = new Routes();
+    private Server server;
 
+    //Cuando termina ya se pueden mandar requests
     public void start() {
-        port(4321);
+        //Spark solo registra las rutas, Jetty lo levanto yo para poder elegir su pool de workers
+        ServletFlag.runFromServlet();
         enableCORS();
-        setLog();
         routes.create();
         configureInternalServerError();
         configureNotImplemented();
+        startServer(workerPool());
     }
 
     public void stop() {
+        try {
+            server.stop();
+        } catch (Exception error) {
+            logger.error("Could not stop Jetty: " + error.getMessage());
+        }
         Spark.stop();
     }
 
-    public void awaitInitialization() {
-        Spark.awaitInitialization();
+    public void join() throws InterruptedException {
+        server.join();
+    }
+
+    private void startServer(WorkerPool workerPool) {
+        final MatcherFilter matcherFilter = new MatcherFilter(
+                ServletRoutes.get(), StaticFilesConfiguration.servletInstance, false, false);
+        matcherFilter.init(null);
+
+        server = new Server(workerPool.newThreadPool());
+        server.addConnector(workerPool.newConnector(server, "0.0.0.0", PORT));
+        server.setHandler(new JettyHandler(matcherFilter));
+        try {
+            server.start();
+        } catch (Exception error) {
+            throw new IllegalStateException("Could not start Jetty on port " + PORT, error);
+        }
+        logger.info("Listening on port " + PORT + " with " + workerPool.description());
+    }
+
+    //Por defecto los mismos valores que usa Spark
+    private WorkerPool workerPool() {
+        return WorkerPool.described(
+                System.getProperty(WORKER_POOL_PROPERTY, WorkerPool.PLATFORM_DESCRIPTION),
+                WorkerPool.platform(
+                        Integer.getInteger(MIN_THREADS_PROPERTY, 8),
+                        Integer.getInteger(MAX_THREADS_PROPERTY, 200),
+                        Integer.getInteger(THREAD_IDLE_TIMEOUT_PROPERTY, 60000),
+                        Integer.getInteger(WORKER_QUEUE_CAPACITY_PROPERTY, WorkerPool.UNBOUNDED_QUEUE)));
     }
 
     private void configureInternalServerError() {
@@ -58,10 +105,4 @@ public class OpenChat {
         });
     }
 
-    private void setLog() {
-        before((request, response) -> {
-            logger.info("URL request: " + request.requestMethod() + " " + request.uri() + " - headers: " + request.headers());
-        });
-    }
-
 }
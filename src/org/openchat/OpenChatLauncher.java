@@ -2,7 +2,9 @@ package org.openchat;
 
 public class OpenChatLauncher {
 
-    public static void main(String[] args) {
-        new OpenChat().start();
+    public static void main(String[] args) throws InterruptedException {
+        final OpenChat openChat = new OpenChat();
+        openChat.start();
+        openChat.join();
     }
 }
@@ -1,39 +1,219 @@
 package org.openchat;
 
+import bsas.org.openchat.Clock;
+import bsas.org.openchat.CommitPolicy;
+import bsas.org.openchat.EventLog;
+import bsas.org.openchat.FileEventLog;
+import bsas.org.openchat.IdGenerator;
+import bsas.org.openchat.ModelException;
 import bsas.org.openchat.OpenChatSystem;
 import bsas.org.openchat.ReceptionistResponse;
+import bsas.org.openchat.RequestMetrics;
 import bsas.org.openchat.RestReceptionist;
+import bsas.org.openchat.Snapshot;
 import com.eclipsesource.json.Json;
 import com.eclipsesource.json.JsonObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import spark.Request;
 import spark.Response;
+import spark.Route;
 
+import javax.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
 import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static spark.Spark.get;
 import static spark.Spark.post;
 
 public class Routes {
 
-    private RestReceptionist receptionist = new RestReceptionist(new OpenChatSystem(
-            ()-> LocalDateTime.now()));
+    public static final String MATERIALIZED_WALL_CAPACITY_PROPERTY = "openchat.materializedWallCapacity";
+    public static final String INAPPROPRIATE_WORDS_FILE_PROPERTY = "openchat.inappropriateWordsFile";
+    public static final String INAPPROPRIATE_WORDS_CHECK_PERIOD_PROPERTY = "openchat.inappropriateWordsCheckPeriodInSeconds";
+    public static final String EVENT_LOG_FILE_PROPERTY = "openchat.eventLogFile";
+    public static final String EVENT_LOG_COMMIT_POLICY_PROPERTY = "openchat.eventLogCommitPolicy";
+    public static final String SNAPSHOT_FILE_PROPERTY = "openchat.snapshotFile";
+    public static final String SNAPSHOT_PERIOD_PROPERTY = "openchat.snapshotPeriodInSeconds";
+    public static final String ACCESS_LOG_SAMPLE_RATE_PROPERTY = "openchat.accessLogSampleRate";
+    public static final String ACCESS_LOG_CAPACITY_PROPERTY = "openchat.accessLogCapacity";
+    public static final String ID_GENERATOR_PROPERTY = "openchat.ids";
+    public static final String ID_NODE_PROPERTY = "openchat.idNode";
+    public static final String WALL_STREAM_QUEUE_CAPACITY_PROPERTY = "openchat.wallStreamQueueCapacity";
+    public static final String WALL_STREAM_HEARTBEAT_PERIOD_PROPERTY = "openchat.wallStreamHeartbeatPeriodInSeconds";
+
+    private static Logger logger = LoggerFactory.getLogger(Routes.class);
+
+    private RestReceptionist receptionist = createReceptionist();
+    private final RequestMetrics metrics = RequestMetrics.empty();
+    private final AccessLog accessLog = AccessLog.sampling(
+            Double.parseDouble(System.getProperty(ACCESS_LOG_SAMPLE_RATE_PROPERTY, "1")),
+            Integer.getInteger(ACCESS_LOG_CAPACITY_PROPERTY, 8192));
+    private final WallStreams wallStreams = WallStreams.of(
+            receptionist,
+            Integer.getInteger(WALL_STREAM_QUEUE_CAPACITY_PROPERTY, 64),
+            Long.getLong(WALL_STREAM_HEARTBEAT_PERIOD_PROPERTY, 15));
+
+    private static RestReceptionist createReceptionist() {
+        final OpenChatSystem system = createSystem();
+        final IdGenerator idGenerator = IdGenerator.described(
+                System.getProperty(ID_GENERATOR_PROPERTY, IdGenerator.UUID_DESCRIPTION),
+                Integer.getInteger(ID_NODE_PROPERTY, 0));
+
+        return Optional.ofNullable(System.getProperty(EVENT_LOG_FILE_PROPERTY))
+                .map(eventLogFileName -> restoredReceptionistFor(system, idGenerator, FileEventLog.at(
+                        Paths.get(eventLogFileName),
+                        CommitPolicy.described(System.getProperty(
+                                EVENT_LOG_COMMIT_POLICY_PROPERTY, CommitPolicy.EVERY_REQUEST_DESCRIPTION)))))
+                .orElseGet(() -> new RestReceptionist(system, EventLog.none(), idGenerator));
+    }
+
+    private static RestReceptionist restoredReceptionistFor(OpenChatSystem system, IdGenerator idGenerator, FileEventLog eventLog) {
+        final RestReceptionist restoredReceptionist = new RestReceptionist(system, eventLog, idGenerator);
+        final Optional<Snapshot> snapshot = Optional.ofNullable(System.getProperty(SNAPSHOT_FILE_PROPERTY))
+                .map(snapshotFileName -> Snapshot.at(Paths.get(snapshotFileName)));
+        final AtomicInteger notRestoredEvents = new AtomicInteger();
+        try {
+            final long logPosition = snapshot.filter(Snapshot::exists).isPresent()
+                    ? logPositionAfterLoading(snapshot.get(), restoredReceptionist)
+                    : 0;
+            final int replayedEvents = eventLog.replayOn(event -> {
+                if(!restoredReceptionist.restore(event)) notRestoredEvents.incrementAndGet();
+            }, logPosition);
+            logger.info("Replayed " + replayedEvents + " events from position " + logPosition
+                    + ", " + notRestoredEvents.get() + " could not be restored");
+        } catch (IOException error) {
+            throw new UncheckedIOException(error);
+        }
+        snapshot.ifPresent(snapshotToWrite -> writeEvery(
+                Long.getLong(SNAPSHOT_PERIOD_PROPERTY, 300), snapshotToWrite, restoredReceptionist, eventLog));
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> closeLogging(eventLog)));
+
+        return restoredReceptionist;
+    }
+
+    //Un snapshot roto no restaura nada, entonces se reproduce todo el log
+    private static long logPositionAfterLoading(Snapshot snapshot, RestReceptionist receptionist) {
+        try {
+            return snapshot.loadInto(receptionist);
+        } catch (IOException error) {
+            logger.error("Could not load snapshot, replaying the whole event log: " + error.getMessage());
+            return 0;
+        }
+    }
+
+    private static void writeEvery(long periodInSeconds, Snapshot snapshot, RestReceptionist receptionist, FileEventLog eventLog) {
+        final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "snapshot-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(
+                () -> write(snapshot, receptionist, eventLog), periodInSeconds, periodInSeconds, TimeUnit.SECONDS);
+    }
+
+    private static void write(Snapshot snapshot, RestReceptionist receptionist, FileEventLog eventLog) {
+        try {
+            final long startTime = System.nanoTime();
+            final long numberOfRecords = snapshot.writeFrom(receptionist, eventLog);
+            logger.info("Snapshot of " + numberOfRecords + " records written in "
+                    + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime) + " ms");
+        } catch (IOException | RuntimeException error) {
+            logger.error("Could not write snapshot: " + error.getMessage());
+        }
+    }
+
+    private static void closeLogging(FileEventLog eventLog) {
+        try {
+            eventLog.close();
+        } catch (IOException error) {
+            logger.error("Could not close event log: " + error.getMessage());
+        }
+    }
+
+    private static OpenChatSystem createSystem() {
+        final Clock clock = ()-> LocalDateTime.now();
+        final int materializedWallCapacity = Integer.getInteger(MATERIALIZED_WALL_CAPACITY_PROPERTY, 0);
+
+        return materializedWallCapacity > 0
+                ? OpenChatSystem.withMaterializedWalls(clock, materializedWallCapacity)
+                : new OpenChatSystem(clock);
+    }
 
     public void create() {
+        loadInappropriateWords();
         openchatRoutes();
     }
 
+    private void loadInappropriateWords() {
+        Optional.ofNullable(System.getProperty(INAPPROPRIATE_WORDS_FILE_PROPERTY))
+                .map(wordsFileName -> InappropriateWordsFile.at(Paths.get(wordsFileName)))
+                .ifPresent(wordsFile -> wordsFile.loadAndReloadEvery(
+                        Long.getLong(INAPPROPRIATE_WORDS_CHECK_PERIOD_PROPERTY, 10)));
+    }
+
     private void openchatRoutes() {
         get("status", (req, res) -> "OpenChat: OK!");
-        post("users", (req, res) -> registerUser(req,res));
-        post("login", (req, res) -> login(req,res));
-        get("users", (req, res) -> users(res));
-        post("users/:userId/timeline", (req, res) -> publish(req,res));
-        get("users/:userId/timeline", (req, res) -> timeLine(req,res));
-        post("followings", (req, res) -> followings(req,res));
-        get("followings/:followerId/followees", (req, res) -> followees(req,res));
-        get("users/:userId/wall", (req, res) -> wall(req,res));
-        post("publications/:publicationId/like", (req, res) -> likePublication(req,res));
+        get("metrics", (req, res) -> metrics(res));
+        measuredPost("users", (req, res) -> registerUser(req,res));
+        measuredPost("users/batch", (req, res) -> registerUsers(req,res));
+        measuredPost("login", (req, res) -> login(req,res));
+        measuredGet("users", (req, res) -> users(req,res));
+        measuredPost("users/:userId/timeline", (req, res) -> publish(req,res));
+        measuredGet("users/:userId/timeline", (req, res) -> timeLine(req,res));
+        measuredPost("followings", (req, res) -> followings(req,res));
+        measuredGet("followings/:followerId/followees", (req, res) -> followees(req,res));
+        measuredGet("users/:userId/wall", (req, res) -> wall(req,res));
+        //No se mide, el request dura lo que el cliente siga conectado
+        get("users/:userId/wall/stream", (req, res) -> wallStream(req,res));
+        measuredPost("publications/:publicationId/like", (req, res) -> likePublication(req,res));
+        measuredGet("publications", (req, res) -> publications(req,res));
+    }
+
+    private void measuredGet(String path, Route route) {
+        get(path, measured("GET /" + path, route));
+    }
+
+    private void measuredPost(String path, Route route) {
+        post(path, measured("POST /" + path, route));
+    }
+
+    //Mide todo el request, incluyendo leer el body y escribir la respuesta, y lo anota en el log de acceso.
+    //Si falla, Spark responde 500
+    private Route measured(String routeName, Route route) {
+        return (request, response) -> {
+            final long startTime = System.nanoTime();
+            int status = HttpServletResponse.SC_INTERNAL_SERVER_ERROR;
+            try {
+                final Object body = route.handle(request, response);
+                status = response.raw().getStatus();
+                return body;
+            } finally {
+                final long elapsedTime = System.nanoTime() - startTime;
+                metrics.record(routeName, status, elapsedTime);
+                accessLog.log(request.requestMethod(), request.raw().getRequestURI(), request.raw().getQueryString(),
+                        status, elapsedTime, request.ip());
+            }
+        };
+    }
+
+    private String metrics(Response response) {
+        response.type(RequestMetrics.CONTENT_TYPE);
+        return metrics.asPrometheusText() + wallStreams.asPrometheusText();
     }
 
     private String likePublication(Request request, Response response) {
@@ -43,16 +223,63 @@ public class Routes {
                 response);
     }
 
+    private String publications(Request request, Response response) {
+        return receptionistDo(
+                ()->receptionist.publicationsIdentifiedAs(publicationIdsFromQueryOf(request)),
+                response);
+    }
+
+    private List<String> publicationIdsFromQueryOf(Request request) {
+        final String publicationIds = Optional
+                .ofNullable(request.queryParams(RestReceptionist.PUBLICATION_IDS_KEY))
+                .orElse("");
+
+        return Arrays.stream(publicationIds.split(","))
+                .filter(publicationId -> !publicationId.isBlank())
+                .collect(Collectors.toList());
+    }
+
+    private JsonObject publicationsPageFromQueryOf(Request request) {
+        return queryParamsAsJsonOf(request,
+                RestReceptionist.LIMIT_KEY, RestReceptionist.BEFORE_KEY, RestReceptionist.AFTER_KEY);
+    }
+
+    private String entityTagsToMatchOf(Request request) {
+        return Optional.ofNullable(request.headers("If-None-Match")).orElse("");
+    }
+
+    private JsonObject queryParamsAsJsonOf(Request request, String... keys) {
+        final JsonObject queryParamsAsJson = new JsonObject();
+        Stream.of(keys)
+                .filter(key -> request.queryParams(key)!=null)
+                .forEach(key -> queryParamsAsJson.add(key, request.queryParams(key)));
+
+        return queryParamsAsJson;
+    }
+
     private String publicationIdFromParamsOf(Request request) {
         return request.params(RestReceptionist.PUBLICATION_ID_KEY);
     }
 
     private String wall(Request request, Response response) {
         return receptionistDo(
-                ()->receptionist.wallOf(userIdFromParamsOf(request)),
+                ()->receptionist.wallOf(userIdFromParamsOf(request), publicationsPageFromQueryOf(request),
+                        entityTagsToMatchOf(request)),
                 response);
     }
 
+    //El request sigue abierto despues de que termina la ruta, el muro se sigue escribiendo desde WallStreams
+    private String wallStream(Request request, Response response) throws IOException {
+        try {
+            wallStreams.stream(userIdFromParamsOf(request), request.raw(), response.raw());
+            return "";
+        } catch (ModelException error) {
+            return receptionistDo(
+                    ()->new ReceptionistResponse(HttpServletResponse.SC_BAD_REQUEST, error.getMessage()),
+                    response);
+        }
+    }
+
     private String followees(Request request, Response response) {
         return receptionistDo(
                 ()->receptionist.followersOf(followerIdFromParamsOf(request)),
@@ -67,7 +294,8 @@ public class Routes {
 
     private String timeLine(Request request, Response response) {
         return receptionistDo(
-                ()->receptionist.timelineOf(userIdFromParamsOf(request)),
+                ()->receptionist.timelineOf(userIdFromParamsOf(request), publicationsPageFromQueryOf(request),
+                        entityTagsToMatchOf(request)),
                 response);
     }
 
@@ -77,8 +305,11 @@ public class Routes {
                 response);
     }
 
-    private String users(Response response) {
-        return receptionistDo(()->receptionist.users(), response);
+    private String users(Request request, Response response) {
+        return receptionistDo(
+                ()->receptionist.users(queryParamsAsJsonOf(request,
+                        RestReceptionist.OFFSET_KEY, RestReceptionist.LIMIT_KEY, RestReceptionist.AFTER_KEY)),
+                response);
     }
 
     private String login(Request request, Response response) {
@@ -93,12 +324,31 @@ public class Routes {
                 response);
     }
 
+    private String registerUsers(Request request, Response response) {
+        return receptionistDo(
+                ()-> receptionist.registerUsers(Json.parse(request.body())),
+                response);
+    }
+
     private String receptionistDo(Supplier<ReceptionistResponse> action, Response response) {
         ReceptionistResponse receptionistResponse = action.get();
         response.status(receptionistResponse.status());
         response.type("application/json");
+        receptionistResponse.entityTag().ifPresent(entityTag -> response.header("ETag", entityTag));
+
+        writeResponseBody(receptionistResponse, response);
+        return "";
+    }
 
-        return receptionistResponse.responseBody();
+    //Escribo el body directamente, Spark no lo vuelve a serializar si la respuesta ya se envió
+    private void writeResponseBody(ReceptionistResponse receptionistResponse, Response response) {
+        try {
+            final OutputStream body = response.raw().getOutputStream();
+            receptionistResponse.writeResponseBodyTo(body);
+            body.flush();
+        } catch (IOException error) {
+            throw new UncheckedIOException(error);
+        }
     }
 
     private String userIdFromParamsOf(Request request) {
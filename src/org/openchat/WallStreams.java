@@ -0,0 +1,243 @@
+package org.openchat;
+
+import bsas.org.openchat.RestReceptionist;
+import bsas.org.openchat.WallSubscription;
+import org.eclipse.jetty.server.HttpChannel;
+import org.eclipse.jetty.server.Request;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/* Streams de server-sent events con las publicaciones nuevas de un muro. Cada stream es un
+ * request asincronico que escribe sin bloquear, asi no ocupa un thread de Jetty mientras espera
+ * publicaciones ni mientras el cliente no lee. Lo encolado lo escribe un unico thread, que nunca
+ * espera al cliente, o el thread de Jetty que avisa que el cliente puede volver a recibir.
+ * Si el cliente no lee lo suficiente se le llena la cola de la suscripcion y se lo desconecta.
+ * Cada tanto se manda un comentario vacio para que los proxies no cierren la conexion y para
+ * detectar clientes que ya no estan.
+ */
+public class WallStreams {
+    public static final String INVALID_WALL_STREAMS = "Wall stream queue capacity and heartbeat period must be positive";
+    public static final String CONTENT_TYPE = "text/event-stream; charset=utf-8";
+    public static final String STREAMS_METRIC = "openchat_wall_streams";
+
+    private static Logger logger = LoggerFactory.getLogger(WallStreams.class);
+    private static final byte[] HEARTBEAT = ":\n\n".getBytes(StandardCharsets.US_ASCII);
+
+    private final RestReceptionist receptionist;
+    private final int queueCapacity;
+    private final Set<WallStream> streams = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService writer = Executors.newSingleThreadScheduledExecutor(job -> {
+        final Thread writerThread = new Thread(job, "wall-streams-writer");
+        writerThread.setDaemon(true);
+        return writerThread;
+    });
+
+    private WallStreams(RestReceptionist receptionist, int queueCapacity) {
+        this.receptionist = receptionist;
+        this.queueCapacity = queueCapacity;
+    }
+
+    public static WallStreams of(RestReceptionist receptionist, int queueCapacity, long heartbeatPeriodInSeconds) {
+        if(queueCapacity<=0 || heartbeatPeriodInSeconds<=0) throw new IllegalArgumentException(INVALID_WALL_STREAMS);
+
+        final WallStreams wallStreams = new WallStreams(receptionist, queueCapacity);
+        wallStreams.sendHeartbeatsEvery(heartbeatPeriodInSeconds);
+
+        return wallStreams;
+    }
+
+    //Si userId no es valido lanza ModelException antes de empezar a responder
+    public void stream(String userId, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        streamTo(userId, stream -> {
+            response.setStatus(HttpServletResponse.SC_OK);
+            response.setContentType(CONTENT_TYPE);
+            response.setHeader("Cache-Control", "no-cache");
+            final AsyncContext asyncContext = request.startAsync();
+            //Manda los headers, asi el cliente sabe que el stream empezo aunque no haya publicaciones
+            response.flushBuffer();
+            final HttpChannel channel = Request.getBaseRequest(request).getHttpChannel();
+            stream.start(asyncContext, response.getOutputStream(), error -> channel.abort(error));
+        });
+    }
+
+    //Sin Jetty, abortConnection corta la conexion sin terminar la respuesta
+    void stream(String userId, AsyncContext asyncContext, ServletOutputStream output, Consumer<IOException> abortConnection) throws IOException {
+        streamTo(userId, stream -> stream.start(asyncContext, output, abortConnection));
+    }
+
+    //Si no se puede empezar a responder se cancela la suscripcion, si no el publisher la seguiria alimentando
+    private void streamTo(String userId, StreamStart start) throws IOException {
+        final WallStream stream = new WallStream();
+        stream.subscription = receptionist.subscribeToWallOf(userId, queueCapacity, () -> stream.publicationsAvailable());
+        try {
+            start.value(stream);
+        } catch (IOException | RuntimeException error) {
+            stream.subscription.cancel();
+            throw error;
+        }
+        streams.add(stream);
+    }
+
+    public int numberOfStreams() {
+        return streams.size();
+    }
+
+    //Para agregar a las metricas de RequestMetrics
+    public String asPrometheusText() {
+        return "# HELP " + STREAMS_METRIC + " Open wall streams.\n"
+                + "# TYPE " + STREAMS_METRIC + " gauge\n"
+                + STREAMS_METRIC + " " + numberOfStreams() + "\n";
+    }
+
+    private void sendHeartbeatsEvery(long periodInSeconds) {
+        writer.scheduleAtFixedRate(() -> sendHeartbeats(), periodInSeconds, periodInSeconds, TimeUnit.SECONDS);
+    }
+
+    //Escribir en la conexion de un cliente que ya no esta falla, asi se lo detecta y se cierra su stream
+    void sendHeartbeats() {
+        streams.forEach(stream -> stream.heartbeat());
+    }
+
+    /* El ServletOutputStream asincronico solo acepta escribir despues de que isReady respondio true,
+     * si responde false Jetty llama a onWritePossible cuando se puede seguir. Por eso todo se escribe
+     * desde writeWhileReady, sincronizado, y cada evento se escribe entero con un solo write.
+     */
+    private class WallStream implements WriteListener, AsyncListener {
+        private WallSubscription subscription;
+        private AsyncContext asyncContext;
+        private Consumer<IOException> abortConnection;
+        private ServletOutputStream output;
+        private final AtomicBoolean isWriteScheduled = new AtomicBoolean(false);
+        private boolean isHeartbeatPending = false;
+        private boolean hasUnflushedEvents = false;
+        private boolean isWritePending = false;
+        private boolean isClosed = false;
+
+        void start(AsyncContext asyncContext, ServletOutputStream output, Consumer<IOException> abortConnection) {
+            this.asyncContext = asyncContext;
+            this.abortConnection = abortConnection;
+            asyncContext.setTimeout(0);
+            asyncContext.addListener(this);
+            this.output = output;
+            output.setWriteListener(this);
+        }
+
+        //Lo llama el thread que publica, la escritura se hace en el de WallStreams
+        void publicationsAvailable() {
+            if(isWriteScheduled.compareAndSet(false, true))
+                writer.execute(() -> {
+                    isWriteScheduled.set(false);
+                    writeWhileReady();
+                });
+        }
+
+        synchronized void heartbeat() {
+            isHeartbeatPending = true;
+            writeWhileReady();
+        }
+
+        @Override
+        public synchronized void onWritePossible() {
+            isWritePending = false;
+            writeWhileReady();
+        }
+
+        private synchronized void writeWhileReady() {
+            if(isClosed || output==null) return;
+            if(subscription.isCancelled()) {
+                close();
+                return;
+            }
+
+            try {
+                while (output.isReady()) {
+                    final byte[] event = nextEvent();
+                    if(event!=null) {
+                        output.write(event);
+                        hasUnflushedEvents = true;
+                    } else if(hasUnflushedEvents) {
+                        hasUnflushedEvents = false;
+                        output.flush();
+                    } else return;
+                }
+                isWritePending = true;
+            } catch (IOException | IllegalStateException error) {
+                close();
+            }
+        }
+
+        private byte[] nextEvent() {
+            if(isHeartbeatPending) {
+                isHeartbeatPending = false;
+                return HEARTBEAT;
+            }
+
+            return subscription.nextPublication()
+                    .map(publication -> receptionist.wallEventOf(publication))
+                    .orElse(null);
+        }
+
+        private synchronized void close() {
+            if(isClosed) return;
+
+            isClosed = true;
+            subscription.cancel();
+            streams.remove(this);
+            //Con una escritura pendiente Jetty no puede terminar la respuesta, el cliente no lee y se corta la conexion
+            if(isWritePending) {
+                abortConnection.accept(new IOException("Wall stream client is not reading"));
+                return;
+            }
+            try {
+                asyncContext.complete();
+            } catch (IllegalStateException alreadyCompleted) {
+                logger.debug("Wall stream already completed");
+            }
+        }
+
+        @Override
+        public void onError(Throwable error) {
+            close();
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            close();
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            close();
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            close();
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+        }
+    }
+
+    private interface StreamStart {
+        void value(WallStream stream) throws IOException;
+    }
+}
@@ -0,0 +1,232 @@
+package org.openchat;
+
+import org.eclipse.jetty.io.ManagedSelector;
+import org.eclipse.jetty.server.ForwardedRequestCustomizer;
+import org.eclipse.jetty.server.HttpConfiguration;
+import org.eclipse.jetty.server.HttpConnectionFactory;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.util.BlockingArrayQueue;
+import org.eclipse.jetty.util.component.AbstractLifeCycle;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.eclipse.jetty.util.thread.ThreadPool;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import spark.embeddedserver.jetty.SocketConnectorFactory;
+
+import java.lang.reflect.Method;
+import java.util.Optional;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/* Los threads en los que Jetty atiende los requests. Con threads de plataforma el pool tiene
+ * un minimo y un maximo de threads y puede tener una cola acotada. Cuando la cola se llena la
+ * tarea la corre el thread que la quiso encolar, que en general es un selector de Jetty, asi
+ * deja de leer conexiones hasta terminarla. Rechazarla no sirve: Jetty 9.3 no lo maneja y se
+ * le muere el selector. Con virtual threads cada request corre en uno nuevo, asi muchos clientes
+ * lentos no agotan los threads de plataforma. Los loops de los selectores no terminan nunca y
+ * se quedarian con el carrier, por eso siguen en threads de plataforma y el connector no tiene
+ * acceptors: acepta las conexiones el selector.
+ */
+public abstract class WorkerPool {
+    public static final String INVALID_WORKER_POOL = "Invalid worker pool";
+    public static final String PLATFORM_DESCRIPTION = "platform";
+    public static final String VIRTUAL_DESCRIPTION = "virtual";
+    public static final int UNBOUNDED_QUEUE = 0;
+
+    private static Logger logger = LoggerFactory.getLogger(WorkerPool.class);
+
+    //queueCapacity UNBOUNDED_QUEUE para que la cola crezca sin limite, como hace Jetty por defecto
+    public static WorkerPool platform(int minThreads, int maxThreads, int idleTimeoutInMillis, int queueCapacity) {
+        if(minThreads<=0 || maxThreads<minThreads || idleTimeoutInMillis<=0 || queueCapacity<0)
+            throw new IllegalArgumentException(INVALID_WORKER_POOL);
+
+        return new Platform(minThreads, maxThreads, idleTimeoutInMillis, queueCapacity);
+    }
+
+    //Los virtual threads estan desde Java 21, si la JVM no los tiene se usa platformPool
+    public static WorkerPool virtualOr(WorkerPool platformPool) {
+        return virtualThreadPerTaskExecutorFactory().isPresent() ? new Virtual() : platformPool;
+    }
+
+    //platform o virtual
+    public static WorkerPool described(String description, WorkerPool platformPool) {
+        if(description.equals(PLATFORM_DESCRIPTION)) return platformPool;
+        if(description.equals(VIRTUAL_DESCRIPTION)) {
+            final WorkerPool workerPool = virtualOr(platformPool);
+            if(workerPool==platformPool) logger.warn("Virtual threads are not supported by this JVM, using " + platformPool.description());
+            return workerPool;
+        }
+
+        throw new IllegalArgumentException(INVALID_WORKER_POOL + ": " + description);
+    }
+
+    abstract ThreadPool newThreadPool();
+
+    abstract ServerConnector newConnector(Server server, String host, int port);
+
+    public abstract String description();
+
+    //Se busca por reflection para poder compilar y correr con Java 11
+    private static Optional<Method> virtualThreadPerTaskExecutorFactory() {
+        try {
+            return Optional.of(Executors.class.getMethod("newVirtualThreadPerTaskExecutor"));
+        } catch (NoSuchMethodException error) {
+            return Optional.empty();
+        }
+    }
+
+    private static class Platform extends WorkerPool {
+        private final int minThreads;
+        private final int maxThreads;
+        private final int idleTimeoutInMillis;
+        private final int queueCapacity;
+
+        Platform(int minThreads, int maxThreads, int idleTimeoutInMillis, int queueCapacity) {
+            this.minThreads = minThreads;
+            this.maxThreads = maxThreads;
+            this.idleTimeoutInMillis = idleTimeoutInMillis;
+            this.queueCapacity = queueCapacity;
+        }
+
+        @Override
+        ThreadPool newThreadPool() {
+            final QueuedThreadPool threadPool = queueCapacity==UNBOUNDED_QUEUE
+                    ? new QueuedThreadPool(maxThreads, minThreads, idleTimeoutInMillis)
+                    : new CallerRunsWhenFullThreadPool(maxThreads, minThreads, idleTimeoutInMillis,
+                            new BlockingArrayQueue<>(Math.min(minThreads, queueCapacity), minThreads, queueCapacity));
+            threadPool.setName("openchat-worker");
+
+            return threadPool;
+        }
+
+        @Override
+        ServerConnector newConnector(Server server, String host, int port) {
+            return SocketConnectorFactory.createSocketConnector(server, host, port);
+        }
+
+        @Override
+        public String description() {
+            return PLATFORM_DESCRIPTION + " threads (min " + minThreads + ", max " + maxThreads
+                    + ", idle timeout " + idleTimeoutInMillis + " ms, queue "
+                    + (queueCapacity==UNBOUNDED_QUEUE ? "unbounded" : String.valueOf(queueCapacity)) + ")";
+        }
+    }
+
+    private static class CallerRunsWhenFullThreadPool extends QueuedThreadPool {
+        CallerRunsWhenFullThreadPool(int maxThreads, int minThreads, int idleTimeoutInMillis, BlockingQueue<Runnable> queue) {
+            super(maxThreads, minThreads, idleTimeoutInMillis, queue);
+        }
+
+        //Se pregunta antes porque QueuedThreadPool loguea cada rechazo
+        @Override
+        public void execute(Runnable job) {
+            if(isRunning() && getQueue().remainingCapacity()==0) {
+                job.run();
+                return;
+            }
+            try {
+                super.execute(job);
+            } catch (RejectedExecutionException queueIsFull) {
+                if(!isRunning()) throw queueIsFull;
+                job.run();
+            }
+        }
+    }
+
+    private static class Virtual extends WorkerPool {
+        //Jetty 9.3 solo deja elegir la estrategia de los selectores con esta propiedad
+        private static final String SELECTOR_STRATEGY_PROPERTY =
+                "org.eclipse.jetty.io.ManagedSelector$SelectorProducer.ExecutionStrategy";
+        private static final String PRODUCE_EXECUTE_CONSUME =
+                "org.eclipse.jetty.util.thread.strategy.ProduceExecuteConsume";
+
+        //Como los que usa Jetty por defecto
+        private final int numberOfSelectors = (Runtime.getRuntime().availableProcessors() + 1) / 2;
+
+        @Override
+        ThreadPool newThreadPool() {
+            return new VirtualThreadPool(numberOfSelectors);
+        }
+
+        /* Por defecto el selector corre la tarea que encontro y le pasa el loop a otro thread, que
+         * seria virtual. Con ProduceExecuteConsume el loop se queda en su thread y cada tarea se le
+         * pasa al pool. Es la misma configuracion que SocketConnectorFactory pero sin acceptors
+         */
+        @Override
+        ServerConnector newConnector(Server server, String host, int port) {
+            System.setProperty(SELECTOR_STRATEGY_PROPERTY, PRODUCE_EXECUTE_CONSUME);
+
+            final HttpConfiguration httpConfiguration = new HttpConfiguration();
+            httpConfiguration.setSecureScheme("https");
+            httpConfiguration.addCustomizer(new ForwardedRequestCustomizer());
+            final ServerConnector connector = new ServerConnector(
+                    server, 0, numberOfSelectors, new HttpConnectionFactory(httpConfiguration));
+            connector.setIdleTimeout(TimeUnit.HOURS.toMillis(1));
+            connector.setSoLingerTime(-1);
+            connector.setHost(host);
+            connector.setPort(port);
+
+            return connector;
+        }
+
+        @Override
+        public String description() {
+            return VIRTUAL_DESCRIPTION + " threads (" + numberOfSelectors + " platform selector threads)";
+        }
+    }
+
+    //Jetty maneja su ciclo de vida como el de QueuedThreadPool: lo arranca con el server y lo para con el
+    private static class VirtualThreadPool extends AbstractLifeCycle implements ThreadPool {
+        private final QueuedThreadPool selectorThreads;
+        private ExecutorService executor;
+
+        VirtualThreadPool(int numberOfSelectors) {
+            selectorThreads = new QueuedThreadPool(numberOfSelectors, numberOfSelectors);
+            selectorThreads.setName("openchat-selector");
+        }
+
+        @Override
+        protected void doStart() throws Exception {
+            selectorThreads.start();
+            executor = (ExecutorService) virtualThreadPerTaskExecutorFactory().get().invoke(null);
+        }
+
+        @Override
+        protected void doStop() throws Exception {
+            executor.shutdownNow();
+            selectorThreads.stop();
+        }
+
+        @Override
+        public void execute(Runnable job) {
+            if(job instanceof ManagedSelector) selectorThreads.execute(job);
+            else executor.execute(job);
+        }
+
+        @Override
+        public void join() throws InterruptedException {
+            while (!executor.awaitTermination(1, TimeUnit.DAYS));
+            selectorThreads.join();
+        }
+
+        //Los de los selectores, los virtuales no esperan tareas: se crea uno por tarea
+        @Override
+        public int getThreads() {
+            return selectorThreads.getThreads();
+        }
+
+        @Override
+        public int getIdleThreads() {
+            return selectorThreads.getIdleThreads();
+        }
+
+        @Override
+        public boolean isLowOnThreads() {
+            return false;
+        }
+    }
+}
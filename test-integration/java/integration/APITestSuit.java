@@ -28,7 +28,6 @@ public class APITestSuit {
     public static void setUp() {
         openChat = new OpenChat();
         openChat.start();
-        openChat.awaitInitialization();
     }
 
     @AfterClass
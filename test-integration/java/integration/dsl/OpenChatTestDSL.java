@@ -14,8 +14,10 @@ import java.util.List;
 
 import static integration.APITestSuit.DATE_PATTERN;
 import static integration.APITestSuit.UUID_PATTERN;
+import static integration.dsl.PostDSL.ITPostBuilder.aPost;
 import static integration.dsl.UserDSL.ITUserBuilder.aUser;
 import static io.restassured.RestAssured.given;
+import static io.restassured.RestAssured.when;
 import static io.restassured.http.ContentType.JSON;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.hamcrest.CoreMatchers.is;
@@ -41,20 +43,56 @@ public class OpenChatTestDSL {
         return registeredUser;
     }
 
-    public static void create(ITPost post) {
+    public static ITPost create(ITPost post) {
         logger.info("Create post: " + post);
-        given()
-                .body(withPostJsonContaining(post.text()))
-        .when()
-                .post(BASE_URL + "/users/" + post.userId() + "/timeline")
-        .then()
+        Response response = given()
+                                .body(withPostJsonContaining(post.text()))
+                            .when()
+                                .post(BASE_URL + "/users/" + post.userId() + "/timeline");
+        response.then()
                 .statusCode(201)
                 .contentType(JSON)
                 .body("postId", matchesPattern(UUID_PATTERN))
                 .body("userId", is(post.userId()))
                 .body("text", is(post.text()))
                 .body("dateTime", notNullValue());
-        logger.info("Post created.");
+        ITPost createdPost = aPost().clonedFrom(post).withPostId(postIdFrom(response)).build();
+        logger.info("Post created. Post: " + createdPost);
+        return createdPost;
+    }
+
+    public static void login(ITUser user) {
+        logger.info("Login user: " + user);
+        given()
+                .body(withLoginJsonFor(user))
+        .when()
+                .post(BASE_URL + "/login")
+        .then()
+                .statusCode(200)
+                .contentType(JSON)
+                .body("id", is(user.id()));
+        logger.info("Login done.");
+    }
+
+    public static JsonArray wallOf(ITUser user, int limit) {
+        logger.info("Wall of user: " + user);
+        Response response = when().get(BASE_URL + "/users/" + user.id() + "/wall?limit=" + limit);
+        assertThat(response.statusCode()).isEqualTo(200);
+        JsonArray wall = Json.parse(response.asString()).asArray();
+        logger.info("Wall has " + wall.size() + " posts.");
+        return wall;
+    }
+
+    public static void like(ITPost post, ITUser liker) {
+        logger.info("Like post: " + post + " - liker: " + liker);
+        given()
+                .body(withLikeJsonFor(liker))
+        .when()
+                .post(BASE_URL + "/publications/" + post.postId() + "/like")
+        .then()
+                .statusCode(200)
+                .contentType(JSON);
+        logger.info("Like done.");
     }
 
     public static void createFollowing(ITUser follower, ITUser followee) {
@@ -104,6 +142,22 @@ public class OpenChatTestDSL {
         return new JsonObject().add("text", text).toString();
     }
 
+    private static String withLoginJsonFor(ITUser user) {
+        return new JsonObject()
+                        .add("username", user.username())
+                        .add("password", user.password())
+                        .toString();
+    }
+
+    private static String withLikeJsonFor(ITUser liker) {
+        return new JsonObject().add("userId", liker.id()).toString();
+    }
+
+    private static String postIdFrom(Response response) {
+        JsonObject responseJson = Json.parse(response.body().asString()).asObject();
+        return responseJson.getString("postId", "");
+    }
+
     private static String userIdFrom(Response response) {
         JsonObject responseJson = Json.parse(response.body().asString()).asObject();
         return responseJson.getString("id", "");
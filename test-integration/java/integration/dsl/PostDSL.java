@@ -94,6 +94,14 @@ public class PostDSL {
             return this;
         }
 
+        public ITPostBuilder clonedFrom(ITPost anotherPost) {
+            this.postId = anotherPost.postId();
+            this.userId = anotherPost.userId();
+            this.text = anotherPost.text();
+            this.dateTime = anotherPost.dateTime();
+            return this;
+        }
+
         public ITPost build() {
             return new ITPost(postId, userId, text, dateTime);
         }
@@ -0,0 +1,87 @@
+package integration.load;
+
+import integration.dsl.PostDSL.ITPost;
+import integration.dsl.UserDSL.ITUser;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+
+import static integration.dsl.UserDSL.ITUserBuilder.aUser;
+
+//Los usuarios y posts que ya existen en el servidor, compartidos por todos los clientes
+public class LoadData {
+    private static final int MAX_FOLLOWING_ATTEMPTS = 10;
+
+    private final List<ITUser> users = Collections.synchronizedList(new ArrayList<>());
+    private final List<ITPost> posts = Collections.synchronizedList(new ArrayList<>());
+    private final Set<String> followings = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger createdUsers = new AtomicInteger();
+    private final int wallLimit;
+
+    public LoadData(int wallLimit) {
+        this.wallLimit = wallLimit;
+    }
+
+    public ITUser newUser() {
+        final int userNumber = createdUsers.incrementAndGet();
+
+        return aUser()
+                .withUsername("load-user-" + userNumber)
+                .withPassword("password" + userNumber)
+                .withAbout("About load user " + userNumber)
+                .withHomePage("www.load-user-" + userNumber + ".com")
+                .build();
+    }
+
+    public void added(ITUser registeredUser) {
+        users.add(registeredUser);
+    }
+
+    public void added(ITPost createdPost) {
+        posts.add(createdPost);
+    }
+
+    public ITUser randomUser(Random random) {
+        synchronized (users) {
+            return users.get(random.nextInt(users.size()));
+        }
+    }
+
+    public ITPost randomPost(Random random) {
+        synchronized (posts) {
+            return posts.get(random.nextInt(posts.size()));
+        }
+    }
+
+    public boolean hasPosts() {
+        return !posts.isEmpty();
+    }
+
+    public int numberOfUsers() {
+        return users.size();
+    }
+
+    public int wallLimit() {
+        return wallLimit;
+    }
+
+    //Evalua pairClosure con un usuario y otro al que todavia no sigue, asi el servidor no lo rechaza
+    public void withNotFollowingPairDo(Random random, BiConsumer<ITUser,ITUser> pairClosure, Runnable noPairClosure) {
+        for(int attempt = 0; attempt<MAX_FOLLOWING_ATTEMPTS; attempt++) {
+            final ITUser follower = randomUser(random);
+            final ITUser followee = randomUser(random);
+            if(!follower.id().equals(followee.id()) && followings.add(follower.id() + "->" + followee.id())) {
+                pairClosure.accept(follower, followee);
+                return;
+            }
+        }
+
+        noPairClosure.run();
+    }
+}
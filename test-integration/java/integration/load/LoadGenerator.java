@@ -0,0 +1,174 @@
+package integration.load;
+
+import org.openchat.OpenChat;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+
+/* Generador de carga de lazo cerrado: levanta OpenChat en este proceso y cada cliente
+ * virtual hace una operacion del mix, espera la respuesta y hace la siguiente, usando
+ * el mismo DSL que los tests de integracion. Al final informa requests por segundo y
+ * percentiles de latencia de cada ruta, sin contar los del warmup.
+ * Como cliente y servidor comparten la maquina, el costo del cliente tambien se mide.
+ *
+ * Se corre como main con el classpath de test, configurado con propiedades, por ejemplo:
+ * -Dload.clients=32 -Dload.durationInSeconds=60 -Dload.mix=register:2,login:8,post:15,follow:5,wall:60,like:10
+ */
+public class LoadGenerator {
+    public static final String CLIENTS_PROPERTY = "load.clients";
+    public static final String USERS_PROPERTY = "load.users";
+    public static final String FOLLOWEES_PER_USER_PROPERTY = "load.followeesPerUser";
+    public static final String POSTS_PER_USER_PROPERTY = "load.postsPerUser";
+    public static final String WARMUP_PROPERTY = "load.warmupInSeconds";
+    public static final String DURATION_PROPERTY = "load.durationInSeconds";
+    public static final String WALL_LIMIT_PROPERTY = "load.wallLimit";
+    public static final String MIX_PROPERTY = "load.mix";
+    public static final String DEFAULT_MIX = "register:2,login:8,post:15,follow:5,wall:60,like:10";
+
+    private static final String LOG_LEVEL_PROPERTY = "org.slf4j.simpleLogger.defaultLogLevel";
+
+    private final int clients;
+    private final int users;
+    private final int followeesPerUser;
+    private final int postsPerUser;
+    private final int warmupInSeconds;
+    private final int durationInSeconds;
+    private final OperationMix mix;
+    private final LoadData data;
+
+    private LoadGenerator(int clients, int users, int followeesPerUser, int postsPerUser,
+                          int warmupInSeconds, int durationInSeconds, int wallLimit, OperationMix mix) {
+        this.clients = clients;
+        this.users = users;
+        this.followeesPerUser = followeesPerUser;
+        this.postsPerUser = postsPerUser;
+        this.warmupInSeconds = warmupInSeconds;
+        this.durationInSeconds = durationInSeconds;
+        this.mix = mix;
+        this.data = new LoadData(wallLimit);
+    }
+
+    public static LoadGenerator configuredFromSystemProperties() {
+        return new LoadGenerator(
+                Integer.getInteger(CLIENTS_PROPERTY, 16),
+                Integer.getInteger(USERS_PROPERTY, 1000),
+                Integer.getInteger(FOLLOWEES_PER_USER_PROPERTY, 10),
+                Integer.getInteger(POSTS_PER_USER_PROPERTY, 5),
+                Integer.getInteger(WARMUP_PROPERTY, 10),
+                Integer.getInteger(DURATION_PROPERTY, 30),
+                Integer.getInteger(WALL_LIMIT_PROPERTY, 20),
+                OperationMix.described(System.getProperty(MIX_PROPERTY, DEFAULT_MIX)));
+    }
+
+    public static void main(String[] arguments) throws InterruptedException, ExecutionException {
+        //Si no, el DSL y OpenChat loguean cada request
+        if(System.getProperty(LOG_LEVEL_PROPERTY)==null) System.setProperty(LOG_LEVEL_PROPERTY, "warn");
+
+        final LoadGenerator generator = configuredFromSystemProperties();
+        final OpenChat openChat = new OpenChat();
+        openChat.start();
+        try {
+            generator.populate();
+            generator.runAndPrintOn(System.out);
+        } finally {
+            openChat.stop();
+        }
+    }
+
+    //Registra los usuarios iniciales, hace que cada uno siga a followeesPerUser y que publique postsPerUser veces
+    public void populate() throws InterruptedException, ExecutionException {
+        inParallelDo(users, userNumber -> LoadOperation.REGISTER.runOn(data, ThreadLocalRandom.current()));
+        inParallelDo(users * followeesPerUser, followingNumber -> LoadOperation.FOLLOW.runOn(data, ThreadLocalRandom.current()));
+        inParallelDo(users * postsPerUser, postNumber -> LoadOperation.POST.runOn(data, ThreadLocalRandom.current()));
+    }
+
+    public void runAndPrintOn(PrintStream output) throws InterruptedException, ExecutionException {
+        final long measurementStart = System.nanoTime() + TimeUnit.SECONDS.toNanos(warmupInSeconds);
+        final long end = measurementStart + TimeUnit.SECONDS.toNanos(durationInSeconds);
+
+        final ExecutorService executor = Executors.newFixedThreadPool(clients);
+        final List<Future<Map<LoadOperation,RouteStatistics>>> clientsStatistics = new ArrayList<>();
+        for(int clientNumber = 0; clientNumber<clients; clientNumber++)
+            clientsStatistics.add(executor.submit(() -> runClient(measurementStart, end)));
+        executor.shutdown();
+
+        final Map<LoadOperation,RouteStatistics> statistics = emptyStatistics();
+        for(Future<Map<LoadOperation,RouteStatistics>> clientStatistics : clientsStatistics)
+            clientStatistics.get().forEach((operation, routeStatistics) -> statistics.get(operation).add(routeStatistics));
+
+        printOn(output, statistics);
+    }
+
+    private Map<LoadOperation,RouteStatistics> runClient(long measurementStart, long end) {
+        final Map<LoadOperation,RouteStatistics> statistics = emptyStatistics();
+        final Random random = ThreadLocalRandom.current();
+
+        long operationStart;
+        while ((operationStart = System.nanoTime())<end) {
+            final LoadOperation operation = mix.nextOperation(random);
+            boolean succeeded = true;
+            try {
+                operation.runOn(data, random);
+            } catch (RuntimeException | AssertionError error) {
+                succeeded = false;
+            }
+            final long elapsed = System.nanoTime() - operationStart;
+
+            if(operationStart>=measurementStart) {
+                if(succeeded) statistics.get(operation).succeededIn(elapsed);
+                else statistics.get(operation).failed();
+            }
+        }
+
+        return statistics;
+    }
+
+    private void printOn(PrintStream output, Map<LoadOperation,RouteStatistics> statistics) {
+        output.println(String.format("%d clients, %d initial users, %d followees and %d posts per user, mix %s, %d s warmup, %d s measured",
+                clients, users, followeesPerUser, postsPerUser, mix.description(), warmupInSeconds, durationInSeconds));
+        RouteStatistics.printHeaderOn(output);
+
+        final RouteStatistics allStatistics = RouteStatistics.empty();
+        statistics.forEach((operation, routeStatistics) -> {
+            routeStatistics.printOn(output, operation.route(), durationInSeconds);
+            allStatistics.add(routeStatistics);
+        });
+        allStatistics.printOn(output, "all", durationInSeconds);
+    }
+
+    private Map<LoadOperation,RouteStatistics> emptyStatistics() {
+        final Map<LoadOperation,RouteStatistics> statistics = new EnumMap<>(LoadOperation.class);
+        for(LoadOperation operation : LoadOperation.values()) statistics.put(operation, RouteStatistics.empty());
+
+        return statistics;
+    }
+
+    /* Si una falla no se hacen las que faltan y se corta la carga, asi lo que se informa
+     * es lo que se pidio poblar
+     */
+    private void inParallelDo(int times, IntConsumer closure) throws InterruptedException, ExecutionException {
+        final ExecutorService executor = Executors.newFixedThreadPool(clients);
+        final AtomicInteger nextNumber = new AtomicInteger();
+        final List<Future<?>> workers = new ArrayList<>();
+        for(int clientNumber = 0; clientNumber<clients; clientNumber++)
+            workers.add(executor.submit(() -> {
+                try {
+                    for(int number = nextNumber.getAndIncrement(); number<times; number = nextNumber.getAndIncrement())
+                        closure.accept(number);
+                } catch (RuntimeException | AssertionError error) {
+                    nextNumber.set(times);
+                    throw error;
+                }
+            }));
+        executor.shutdown();
+
+        for(Future<?> worker : workers) worker.get();
+    }
+}
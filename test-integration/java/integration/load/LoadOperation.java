@@ -0,0 +1,70 @@
+package integration.load;
+
+import java.util.Random;
+
+import static integration.dsl.OpenChatTestDSL.*;
+import static integration.dsl.PostDSL.ITPostBuilder.aPost;
+
+//Lo que puede hacer un cliente virtual, cada una contra una ruta de la API
+public enum LoadOperation {
+    REGISTER("POST /users") {
+        @Override
+        public void runOn(LoadData data, Random random) {
+            data.added(register(data.newUser()));
+        }
+    },
+    LOGIN("POST /login") {
+        @Override
+        public void runOn(LoadData data, Random random) {
+            login(data.randomUser(random));
+        }
+    },
+    POST("POST /users/:userId/timeline") {
+        @Override
+        public void runOn(LoadData data, Random random) {
+            data.added(create(aPost()
+                    .withUserId(data.randomUser(random).id())
+                    .withText("Load post number " + random.nextInt())
+                    .build()));
+        }
+    },
+    FOLLOW("POST /followings") {
+        @Override
+        public void runOn(LoadData data, Random random) {
+            data.withNotFollowingPairDo(random,
+                    (follower, followee) -> createFollowing(follower, followee),
+                    () -> { throw new IllegalStateException(NO_USER_TO_FOLLOW); });
+        }
+    },
+    WALL("GET /users/:userId/wall") {
+        @Override
+        public void runOn(LoadData data, Random random) {
+            wallOf(data.randomUser(random), data.wallLimit());
+        }
+    },
+    LIKE("POST /publications/:publicationId/like") {
+        @Override
+        public void runOn(LoadData data, Random random) {
+            like(data.randomPost(random), data.randomUser(random));
+        }
+    };
+
+    public static final String NO_USER_TO_FOLLOW = "Could not find a user that is not already followed";
+
+    private final String route;
+
+    LoadOperation(String route) {
+        this.route = route;
+    }
+
+    public abstract void runOn(LoadData data, Random random);
+
+    public String route() {
+        return route;
+    }
+
+    //Como se la nombra en el mix de operaciones, por ejemplo wall:60
+    public String mixName() {
+        return name().toLowerCase();
+    }
+}
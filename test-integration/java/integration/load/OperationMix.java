@@ -0,0 +1,75 @@
+package integration.load;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+//Que proporcion de las operaciones es de cada tipo, descripta como register:2,login:8,wall:60
+public class OperationMix {
+    public static final String INVALID_MIX = "Invalid operation mix";
+
+    private final List<LoadOperation> operations = new ArrayList<>();
+    private final List<Integer> accumulatedWeights = new ArrayList<>();
+    private final String description;
+
+    private OperationMix(String description) {
+        this.description = description;
+    }
+
+    public static OperationMix described(String description) {
+        final OperationMix mix = new OperationMix(description);
+        Arrays.stream(description.split(","))
+                .map(String::trim)
+                .filter(operationAndWeight -> !operationAndWeight.isEmpty())
+                .forEach(operationAndWeight -> mix.add(operationAndWeight));
+        if(mix.operations.isEmpty()) throw new IllegalArgumentException(INVALID_MIX + ": " + description);
+
+        return mix;
+    }
+
+    public LoadOperation nextOperation(Random random) {
+        final int weight = random.nextInt(totalWeight());
+        int index = 0;
+        while (accumulatedWeights.get(index)<=weight) index++;
+
+        return operations.get(index);
+    }
+
+    public String description() {
+        return description;
+    }
+
+    private void add(String operationAndWeight) {
+        final String[] parts = operationAndWeight.split(":");
+        if(parts.length!=2) throw new IllegalArgumentException(INVALID_MIX + ": " + operationAndWeight);
+
+        final LoadOperation operation = operationNamed(parts[0].trim());
+        final int weight = weightFrom(parts[1].trim());
+        if(weight==0) return;
+
+        operations.add(operation);
+        accumulatedWeights.add(totalWeight() + weight);
+    }
+
+    private LoadOperation operationNamed(String operationName) {
+        return Arrays.stream(LoadOperation.values())
+                .filter(operation -> operation.mixName().equals(operationName))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException(INVALID_MIX + ": " + operationName));
+    }
+
+    private int weightFrom(String weight) {
+        try {
+            final int parsedWeight = Integer.parseInt(weight);
+            if(parsedWeight<0) throw new IllegalArgumentException(INVALID_MIX + ": " + weight);
+            return parsedWeight;
+        } catch (NumberFormatException error) {
+            throw new IllegalArgumentException(INVALID_MIX + ": " + weight);
+        }
+    }
+
+    private int totalWeight() {
+        return accumulatedWeights.isEmpty() ? 0 : accumulatedWeights.get(accumulatedWeights.size() - 1);
+    }
+}
@@ -0,0 +1,47 @@
+package integration.load;
+
+import bsas.org.openchat.LatencyHistogram;
+
+import java.io.PrintStream;
+
+//Latencias de los requests que salieron bien y cantidad de los que fallaron
+public class RouteStatistics {
+    private static final double NANOS_PER_MILLISECOND = 1_000_000.0;
+
+    private final LatencyHistogram latencies = LatencyHistogram.empty();
+    private long errors = 0;
+
+    public static RouteStatistics empty() {
+        return new RouteStatistics();
+    }
+
+    public void succeededIn(long nanos) {
+        latencies.record(nanos);
+    }
+
+    public void failed() {
+        errors++;
+    }
+
+    public void add(RouteStatistics anotherStatistics) {
+        latencies.add(anotherStatistics.latencies);
+        errors += anotherStatistics.errors;
+    }
+
+    public static void printHeaderOn(PrintStream output) {
+        output.println(String.format("%-40s %9s %9s %7s %9s %9s %9s %9s",
+                "route", "requests", "req/s", "errors", "p50 ms", "p99 ms", "p999 ms", "max ms"));
+    }
+
+    public void printOn(PrintStream output, String route, double seconds) {
+        output.println(String.format("%-40s %9d %9.1f %7d %9.2f %9.2f %9.2f %9.2f",
+                route,
+                latencies.count(),
+                latencies.count() / seconds,
+                errors,
+                latencies.valueAtPercentile(50) / NANOS_PER_MILLISECOND,
+                latencies.valueAtPercentile(99) / NANOS_PER_MILLISECOND,
+                latencies.valueAtPercentile(99.9) / NANOS_PER_MILLISECOND,
+                latencies.max() / NANOS_PER_MILLISECOND));
+    }
+}
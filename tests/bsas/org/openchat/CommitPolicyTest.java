@@ -0,0 +1,42 @@
+package bsas.org.openchat;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static bsas.org.openchat.TestObjectsBucket.assertThrowsModelExceptionWithErrorMessage;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CommitPolicyTest {
+    @Test
+    public void everyRequestWaitsForCommitAndCommitsAsSoonAsThereAreEvents() {
+        CommitPolicy commitPolicy = CommitPolicy.described("request");
+
+        assertTrue(commitPolicy.waitsForCommit());
+        assertEquals(0,commitPolicy.nanosUntilCommit(1, 0));
+        assertEquals(CommitPolicy.WAIT_FOR_EVENTS,commitPolicy.nanosUntilCommit(0, 0));
+    }
+    @Test
+    public void intervalCommitsIntervalAfterFirstPendingEvent() {
+        CommitPolicy commitPolicy = CommitPolicy.described("interval:10");
+
+        assertFalse(commitPolicy.waitsForCommit());
+        assertEquals(Duration.ofMillis(6).toNanos(),commitPolicy.nanosUntilCommit(5, Duration.ofMillis(4).toNanos()));
+    }
+    @Test
+    public void batchCommitsWhenBatchIsCompleteOrTooOld() {
+        CommitPolicy commitPolicy = CommitPolicy.described("batch:3");
+
+        assertFalse(commitPolicy.waitsForCommit());
+        assertEquals(0,commitPolicy.nanosUntilCommit(3, 0));
+        assertTrue(commitPolicy.nanosUntilCommit(2, 0)>0);
+        assertTrue(commitPolicy.nanosUntilCommit(2, CommitPolicy.MAXIMUM_BATCH_DELAY.toNanos())<=0);
+    }
+    @Test
+    public void canNotDescribeUnknownPolicy() {
+        for(String description : new String[]{"", "always", "interval:", "interval:0", "batch:-1", "batch:x"})
+            assertThrowsModelExceptionWithErrorMessage(
+                    () -> CommitPolicy.described(description),
+                    CommitPolicy.INVALID_COMMIT_POLICY);
+    }
+}
@@ -0,0 +1,62 @@
+package bsas.org.openchat;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/* Benchmark de FileEventLog con cada CommitPolicy.
+ * Se corre como main: FileEventLogBenchmark [threads] [eventos por thread] [directorio]
+ * Cada thread hace lo mismo que un request: agrega un evento y hace commit.
+ */
+public class FileEventLogBenchmark {
+    public static void main(String[] arguments) throws IOException, InterruptedException {
+        final int threads = arguments.length>0 ? Integer.parseInt(arguments[0]) : 16;
+        final int eventsPerThread = arguments.length>1 ? Integer.parseInt(arguments[1]) : 2_000;
+        final Path directory = arguments.length>2 ? Path.of(arguments[2]) : Path.of(System.getProperty("java.io.tmpdir"));
+
+        for(String commitPolicyDescription : Arrays.asList("request", "interval:10", "interval:100", "batch:64", "batch:1024"))
+            System.out.println(commitPolicyDescription + ": " +
+                    run(CommitPolicy.described(commitPolicyDescription), threads, eventsPerThread, directory));
+    }
+
+    private static String run(CommitPolicy commitPolicy, int threads, int eventsPerThread, Path directory) throws IOException, InterruptedException {
+        final Path eventLogFile = Files.createTempFile(directory, "openchat-benchmark", ".log");
+        Files.delete(eventLogFile);
+        final FileEventLog eventLog = FileEventLog.at(eventLogFile, commitPolicy);
+        eventLog.replayOn(event -> {});
+
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        final CountDownLatch start = new CountDownLatch(1);
+        IntStream.range(0, threads).forEach(thread -> executor.execute(() -> {
+            try {
+                start.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            for(int eventNumber = 0; eventNumber<eventsPerThread; eventNumber++) {
+                eventLog.append(OpenChatEvent.liked("publication-" + thread + "-" + eventNumber, "liker-" + thread));
+                eventLog.commit();
+            }
+        }));
+
+        final long startTime = System.nanoTime();
+        start.countDown();
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.MINUTES);
+        eventLog.close();
+        final long elapsed = System.nanoTime() - startTime;
+        Files.delete(eventLogFile);
+
+        final long events = (long) threads * eventsPerThread;
+        return String.format("%d threads, %d events in %d ms, %.0f events/s",
+                threads, events, TimeUnit.NANOSECONDS.toMillis(elapsed), events * 1e9 / elapsed);
+    }
+}
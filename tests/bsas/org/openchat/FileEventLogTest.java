@@ -0,0 +1,283 @@
+package bsas.org.openchat;
+
+import com.eclipsesource.json.JsonArray;
+import com.eclipsesource.json.JsonObject;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FileEventLogTest {
+    private final TestObjectsBucket testObjects = new TestObjectsBucket();
+
+    @Test
+    public void newLogHasNoEventsToReplay() throws IOException {
+        withEventLogFileDo(eventLogFile -> {
+            FileEventLog eventLog = FileEventLog.at(eventLogFile, CommitPolicy.everyRequest());
+
+            assertEquals(0,eventLog.replayOn(event -> fail("No events expected")));
+            eventLog.close();
+        });
+    }
+    @Test
+    public void restoresEverythingDoneThroughTheReceptionist() throws IOException {
+        withEventLogFileDo(eventLogFile -> {
+            FileEventLog eventLog = FileEventLog.at(eventLogFile, CommitPolicy.everyRequest());
+            RestReceptionist receptionist = new RestReceptionist(createSystem(), eventLog);
+            eventLog.replayOn(event -> fail("No events expected"));
+
+            String pepeId = registerPepeSanchezOn(receptionist);
+            String juanId = registerJuanPerezOn(receptionist);
+            receptionist.followings(new JsonObject()
+                    .add(RestReceptionist.FOLLOWED_ID_KEY, pepeId)
+                    .add(RestReceptionist.FOLLOWER_ID_KEY, juanId));
+            String publicationId = receptionist.addPublication(pepeId, new JsonObject().add(RestReceptionist.TEXT_KEY, "hello"))
+                    .responseBodyAsJson().getString(RestReceptionist.POST_ID_KEY, "");
+            receptionist.addPublication(juanId, new JsonObject().add(RestReceptionist.TEXT_KEY, "bye"));
+            receptionist.likePublicationIdentifiedAs(publicationId, new JsonObject().add(RestReceptionist.USER_ID_KEY, juanId));
+            eventLog.close();
+
+            RestReceptionist restoredReceptionist = restoredReceptionistFrom(eventLogFile, 6);
+
+            assertEquals(receptionist.users().responseBody(),restoredReceptionist.users().responseBody());
+            assertEquals(receptionist.wallOf(pepeId).responseBody(),restoredReceptionist.wallOf(pepeId).responseBody());
+            assertEquals(receptionist.followersOf(pepeId).responseBody(),restoredReceptionist.followersOf(pepeId).responseBody());
+            assertTrue(restoredReceptionist.login(new JsonObject()
+                    .add(RestReceptionist.USERNAME_KEY, TestObjectsBucket.PEPE_SANCHEZ_NAME)
+                    .add(RestReceptionist.PASSWORD_KEY, TestObjectsBucket.PEPE_SANCHEZ_PASSWORD))
+                    .isStatus(200));
+        });
+    }
+    @Test
+    public void restoresUsersRegisteredAtOnce() throws IOException {
+        withEventLogFileDo(eventLogFile -> {
+            FileEventLog eventLog = FileEventLog.at(eventLogFile, CommitPolicy.everyRequest());
+            RestReceptionist receptionist = new RestReceptionist(createSystem(), eventLog);
+            eventLog.replayOn(event -> fail("No events expected"));
+
+            receptionist.registerUsers(new JsonArray()
+                    .add(new JsonObject()
+                            .add(RestReceptionist.USERNAME_KEY, TestObjectsBucket.PEPE_SANCHEZ_NAME)
+                            .add(RestReceptionist.PASSWORD_KEY, TestObjectsBucket.PEPE_SANCHEZ_PASSWORD))
+                    .add(new JsonObject()
+                            .add(RestReceptionist.USERNAME_KEY, TestObjectsBucket.PEPE_SANCHEZ_NAME)
+                            .add(RestReceptionist.PASSWORD_KEY, TestObjectsBucket.PEPE_SANCHEZ_PASSWORD))
+                    .add(new JsonObject()
+                            .add(RestReceptionist.USERNAME_KEY, TestObjectsBucket.JUAN_PEREZ_NAME)
+                            .add(RestReceptionist.PASSWORD_KEY, TestObjectsBucket.JUAN_PEREZ_PASSWORD)));
+            eventLog.close();
+
+            RestReceptionist restoredReceptionist = restoredReceptionistFrom(eventLogFile, 2);
+
+            assertEquals(receptionist.users().responseBody(),restoredReceptionist.users().responseBody());
+        });
+    }
+    @Test
+    public void restoresUsersAndPublicationsWithTimeOrderedIds() throws IOException {
+        withEventLogFileDo(eventLogFile -> {
+            FileEventLog eventLog = FileEventLog.at(eventLogFile, CommitPolicy.everyRequest());
+            RestReceptionist receptionist = new RestReceptionist(createSystem(), eventLog, IdGenerator.timeOrdered(1));
+            eventLog.replayOn(event -> fail("No events expected"));
+
+            String pepeId = registerPepeSanchezOn(receptionist);
+            String publicationId = receptionist.addPublication(pepeId, new JsonObject().add(RestReceptionist.TEXT_KEY, "hello"))
+                    .responseBodyAsJson().getString(RestReceptionist.POST_ID_KEY, "");
+            eventLog.close();
+
+            RestReceptionist restoredReceptionist = restoredReceptionistFrom(eventLogFile, 2);
+
+            assertTrue(pepeId.compareTo(publicationId)<0);
+            assertEquals(receptionist.wallOf(pepeId).responseBody(),restoredReceptionist.wallOf(pepeId).responseBody());
+        });
+    }
+    @Test
+    public void timeOrderedIdsAreNotRepeatedAfterRestoring() throws IOException {
+        withEventLogFileDo(eventLogFile -> {
+            FileEventLog eventLog = FileEventLog.at(eventLogFile, CommitPolicy.everyRequest());
+            RestReceptionist receptionist = new RestReceptionist(createSystem(), eventLog, IdGenerator.timeOrdered(1, () -> 0));
+            eventLog.replayOn(event -> fail("No events expected"));
+            String pepeId = registerPepeSanchezOn(receptionist);
+            eventLog.close();
+
+            FileEventLog restoredEventLog = FileEventLog.at(eventLogFile, CommitPolicy.everyRequest());
+            RestReceptionist restoredReceptionist = new RestReceptionist(createSystem(), restoredEventLog, IdGenerator.timeOrdered(1, () -> 0));
+            restoredEventLog.replayOn(event -> assertTrue(restoredReceptionist.restore(event)));
+            String juanId = registerJuanPerezOn(restoredReceptionist);
+            restoredEventLog.close();
+
+            assertTrue(pepeId.compareTo(juanId)<0);
+            assertEquals(2,restoredReceptionist.users().responseBodyAsJsonArray().size());
+        });
+    }
+    @Test
+    public void rejectedOperationsAreNotLogged() throws IOException {
+        withEventLogFileDo(eventLogFile -> {
+            FileEventLog eventLog = FileEventLog.at(eventLogFile, CommitPolicy.everyRequest());
+            RestReceptionist receptionist = new RestReceptionist(createSystem(), eventLog);
+            eventLog.replayOn(event -> fail("No events expected"));
+
+            String pepeId = registerPepeSanchezOn(receptionist);
+            receptionist.registerUser(new JsonObject().add(RestReceptionist.USERNAME_KEY, TestObjectsBucket.PEPE_SANCHEZ_NAME));
+            receptionist.addPublication(pepeId, new JsonObject().add(RestReceptionist.TEXT_KEY, "elephant"));
+            eventLog.close();
+
+            restoredReceptionistFrom(eventLogFile, 1);
+        });
+    }
+    @Test
+    public void restoredPublicationsAreNotCheckedAgainstCurrentInappropriateWords() throws IOException {
+        withEventLogFileDo(eventLogFile -> {
+            FileEventLog eventLog = FileEventLog.at(eventLogFile, CommitPolicy.everyRequest());
+            RestReceptionist receptionist = new RestReceptionist(createSystem(), eventLog);
+            eventLog.replayOn(event -> fail("No events expected"));
+            String pepeId = registerPepeSanchezOn(receptionist);
+            receptionist.addPublication(pepeId, new JsonObject().add(RestReceptionist.TEXT_KEY, "banana"));
+            eventLog.close();
+
+            InappropriateWords previousInappropriateWords = Publication.inappropriateWordsInUse();
+            try {
+                Publication.useInappropriateWords(InappropriateWords.from(Arrays.asList("banana")));
+
+                RestReceptionist restoredReceptionist = restoredReceptionistFrom(eventLogFile, 2);
+                assertEquals(1,restoredReceptionist.timelineOf(pepeId).responseBodyAsJsonArray().size());
+            } finally {
+                Publication.useInappropriateWords(previousInappropriateWords);
+            }
+        });
+    }
+    @Test
+    public void partiallyWrittenLastEventIsDiscarded() throws IOException {
+        withEventLogFileDo(eventLogFile -> {
+            appendAndClose(eventLogFile, CommitPolicy.everyRequest(), 3);
+            try(FileChannel channel = FileChannel.open(eventLogFile, StandardOpenOption.WRITE)) {
+                channel.truncate(channel.size() - 1);
+            }
+
+            FileEventLog eventLog = FileEventLog.at(eventLogFile, CommitPolicy.everyRequest());
+            assertEquals(2,eventLog.replayOn(event -> {}));
+            eventLog.append(OpenChatEvent.followed("followed", "follower"));
+            eventLog.commit();
+            eventLog.close();
+
+            assertEquals(3,replayedEventsOf(eventLogFile).size());
+        });
+    }
+    @Test
+    public void corruptedEventBeforeTheLastOneCanNotBeReplayed() throws IOException {
+        withEventLogFileDo(eventLogFile -> {
+            FileEventLog eventLog = FileEventLog.at(eventLogFile, CommitPolicy.everyRequest());
+            eventLog.replayOn(event -> {});
+            eventLog.append(OpenChatEvent.liked("publication0", "liker"));
+            long secondEventPosition = eventLog.position();
+            eventLog.append(OpenChatEvent.liked("publication1", "liker"));
+            eventLog.append(OpenChatEvent.liked("publication2", "liker"));
+            eventLog.commit();
+            eventLog.close();
+            long logSize = Files.size(eventLogFile);
+            try(FileChannel channel = FileChannel.open(eventLogFile, StandardOpenOption.WRITE)) {
+                channel.write(ByteBuffer.wrap(new byte[]{ 'X' }), secondEventPosition + 2 * Integer.BYTES + 1);
+            }
+
+            FileEventLog corruptedEventLog = FileEventLog.at(eventLogFile, CommitPolicy.everyRequest());
+            IOException error = assertThrows(IOException.class, () -> corruptedEventLog.replayOn(event -> {}));
+            assertTrue(error.getMessage().startsWith(FileEventLog.CORRUPTED + " at offset " + secondEventPosition));
+            assertEquals(logSize,Files.size(eventLogFile));
+        });
+    }
+    @Test
+    public void everyCommitPolicyKeepsEventsAppendedBeforeClosing() throws IOException {
+        for(CommitPolicy commitPolicy : Arrays.asList(
+                CommitPolicy.everyRequest(), CommitPolicy.every(Duration.ofMinutes(1)), CommitPolicy.everyBatchOf(1000))) {
+            withEventLogFileDo(eventLogFile -> {
+                appendAndClose(eventLogFile, commitPolicy, 10);
+
+                assertEquals(10,replayedEventsOf(eventLogFile).size());
+            });
+        }
+    }
+    @Test
+    public void canNotAppendBeforeReplaying() throws IOException {
+        withEventLogFileDo(eventLogFile -> {
+            FileEventLog eventLog = FileEventLog.at(eventLogFile, CommitPolicy.everyRequest());
+
+            IllegalStateException error = assertThrows(
+                    IllegalStateException.class,
+                    () -> eventLog.append(OpenChatEvent.followed("followed", "follower")));
+            assertEquals(FileEventLog.NOT_REPLAYED,error.getMessage());
+        });
+    }
+
+    private void appendAndClose(Path eventLogFile, CommitPolicy commitPolicy, int numberOfEvents) throws IOException {
+        FileEventLog eventLog = FileEventLog.at(eventLogFile, commitPolicy);
+        eventLog.replayOn(event -> {});
+        for(int eventNumber = 0; eventNumber<numberOfEvents; eventNumber++) {
+            eventLog.append(OpenChatEvent.liked("publication" + eventNumber, "liker"));
+            eventLog.commit();
+        }
+        eventLog.close();
+    }
+
+    private List<OpenChatEvent> replayedEventsOf(Path eventLogFile) throws IOException {
+        final List<OpenChatEvent> replayedEvents = new ArrayList<>();
+        FileEventLog eventLog = FileEventLog.at(eventLogFile, CommitPolicy.everyRequest());
+        eventLog.replayOn(event -> replayedEvents.add(event));
+        eventLog.close();
+
+        return replayedEvents;
+    }
+
+    private RestReceptionist restoredReceptionistFrom(Path eventLogFile, int expectedEvents) throws IOException {
+        FileEventLog eventLog = FileEventLog.at(eventLogFile, CommitPolicy.everyRequest());
+        RestReceptionist restoredReceptionist = new RestReceptionist(createSystem(), eventLog);
+        assertEquals(expectedEvents,eventLog.replayOn(event -> assertTrue(restoredReceptionist.restore(event))));
+        eventLog.close();
+
+        return restoredReceptionist;
+    }
+
+    private String registerPepeSanchezOn(RestReceptionist receptionist) {
+        return receptionist.registerUser(new JsonObject()
+                .add(RestReceptionist.USERNAME_KEY, TestObjectsBucket.PEPE_SANCHEZ_NAME)
+                .add(RestReceptionist.PASSWORD_KEY, TestObjectsBucket.PEPE_SANCHEZ_PASSWORD)
+                .add(RestReceptionist.ABOUT_KEY, TestObjectsBucket.PEPE_SANCHEZ_ABOUT)
+                .add(RestReceptionist.HOME_PAGE_KEY, TestObjectsBucket.PEPE_SANCHEZ_HOME_PAGE))
+                .responseBodyAsJson().getString(RestReceptionist.ID_KEY, "");
+    }
+
+    private String registerJuanPerezOn(RestReceptionist receptionist) {
+        return receptionist.registerUser(new JsonObject()
+                .add(RestReceptionist.USERNAME_KEY, TestObjectsBucket.JUAN_PEREZ_NAME)
+                .add(RestReceptionist.PASSWORD_KEY, TestObjectsBucket.JUAN_PEREZ_PASSWORD)
+                .add(RestReceptionist.ABOUT_KEY, TestObjectsBucket.JUAN_PEREZ_ABOUT)
+                .add(RestReceptionist.HOME_PAGE_KEY, TestObjectsBucket.JUAN_PEREZ_HOME_PAGE))
+                .responseBodyAsJson().getString(RestReceptionist.ID_KEY, "");
+    }
+
+    private OpenChatSystem createSystem() {
+        return new OpenChatSystem(testObjects.fixedNowClock());
+    }
+
+    private void withEventLogFileDo(EventLogFileClosure closure) throws IOException {
+        final Path eventLogFile = Files.createTempFile("openchat", ".log");
+        Files.delete(eventLogFile);
+        try {
+            closure.value(eventLogFile);
+        } finally {
+            Files.deleteIfExists(eventLogFile);
+        }
+    }
+
+    private interface EventLogFileClosure {
+        void value(Path eventLogFile) throws IOException;
+    }
+}
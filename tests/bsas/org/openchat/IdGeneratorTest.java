@@ -0,0 +1,100 @@
+package bsas.org.openchat;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static bsas.org.openchat.TestObjectsBucket.assertThrowsModelExceptionWithErrorMessage;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class IdGeneratorTest {
+    private static final String UUID_PATTERN = "[0-9a-f]{8}-[0-9a-f]{4}-4[0-9a-f]{3}-[89ab][0-9a-f]{3}-[0-9a-f]{12}";
+    private static final long NOW_MILLIS = 1700000000000L;
+
+    @Test
+    public void randomUuidsAreVersion4Uuids() {
+        IdGenerator idGenerator = IdGenerator.randomUuids();
+
+        assertTrue(idGenerator.nextId().matches(UUID_PATTERN));
+        idGenerator.nextIds(3).forEach(id -> assertTrue(id.matches(UUID_PATTERN)));
+    }
+    @Test
+    public void timeOrderedIdsAreCompactAndSortInGenerationOrder() {
+        AtomicLong currentTimeMillis = new AtomicLong(NOW_MILLIS);
+        IdGenerator idGenerator = IdGenerator.timeOrdered(1, () -> currentTimeMillis.get());
+
+        List<String> ids = new ArrayList<>(idGenerator.nextIds(3));
+        currentTimeMillis.addAndGet(1);
+        ids.add(idGenerator.nextId());
+
+        ids.forEach(id -> assertEquals(11,id.length()));
+        assertIncreasing(ids);
+    }
+    @Test
+    public void timeOrderedIdsKeepIncreasingWhenTheClockGoesBack() {
+        AtomicLong currentTimeMillis = new AtomicLong(NOW_MILLIS);
+        IdGenerator idGenerator = IdGenerator.timeOrdered(1, () -> currentTimeMillis.get());
+
+        List<String> ids = new ArrayList<>();
+        ids.add(idGenerator.nextId());
+        currentTimeMillis.addAndGet(-1000);
+        ids.add(idGenerator.nextId());
+
+        assertIncreasing(ids);
+    }
+    @Test
+    public void timeOrderedIdsDoNotRepeatWhenTheSequenceRunsOut() {
+        IdGenerator idGenerator = IdGenerator.timeOrdered(1, () -> NOW_MILLIS);
+
+        List<String> ids = idGenerator.nextIds(10000);
+
+        assertEquals(ids.size(),new HashSet<>(ids).size());
+        assertIncreasing(ids);
+    }
+    @Test
+    public void timeOrderedIdsAfterRestartingFollowTheRestoredOnes() {
+        IdGenerator beforeRestart = IdGenerator.timeOrdered(1, () -> NOW_MILLIS);
+        List<String> restoredIds = beforeRestart.nextIds(3);
+        IdGenerator afterRestart = IdGenerator.timeOrdered(1, () -> NOW_MILLIS - 1000);
+
+        restoredIds.forEach(id -> afterRestart.restored(id));
+        afterRestart.restored("not a time ordered id");
+        afterRestart.restored(IdGenerator.randomUuids().nextId());
+
+        List<String> ids = new ArrayList<>(restoredIds);
+        ids.add(afterRestart.nextId());
+        assertIncreasing(ids);
+    }
+    @Test
+    public void timeOrderedIdsOfDifferentNodesAreDifferent() {
+        IdGenerator aNode = IdGenerator.timeOrdered(1, () -> NOW_MILLIS);
+        IdGenerator anotherNode = IdGenerator.timeOrdered(2, () -> NOW_MILLIS);
+
+        assertNotEquals(aNode.nextId(),anotherNode.nextId());
+    }
+    @Test
+    public void timeOrderedNodeMustBeInRange() {
+        assertThrowsModelExceptionWithErrorMessage(
+                ()->IdGenerator.timeOrdered(IdGenerator.MAXIMUM_NODE + 1),
+                IdGenerator.INVALID_ID_GENERATOR);
+        assertThrowsModelExceptionWithErrorMessage(
+                ()->IdGenerator.timeOrdered(-1),
+                IdGenerator.INVALID_ID_GENERATOR);
+    }
+    @Test
+    public void idGeneratorCanBeDescribed() {
+        assertTrue(IdGenerator.described(IdGenerator.UUID_DESCRIPTION, 0).nextId().matches(UUID_PATTERN));
+        assertEquals(11,IdGenerator.described(IdGenerator.TIME_ORDERED_DESCRIPTION, 0).nextId().length());
+        assertThrowsModelExceptionWithErrorMessage(
+                ()->IdGenerator.described("sequential", 0),
+                IdGenerator.INVALID_ID_GENERATOR);
+    }
+
+    private void assertIncreasing(List<String> ids) {
+        for(int index = 1; index<ids.size(); index++)
+            assertTrue(ids.get(index - 1).compareTo(ids.get(index))<0);
+    }
+}
@@ -0,0 +1,83 @@
+package bsas.org.openchat;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class InappropriateWordsTest {
+    @Test
+    public void findsWordsAnywhereInTheMessage() {
+        InappropriateWords inappropriateWords = InappropriateWords.from(Arrays.asList("elephant","ice cream"));
+
+        assertTrue(inappropriateWords.areContainedIn("elephant"));
+        assertTrue(inappropriateWords.areContainedIn("I want an ice cream now"));
+        assertFalse(inappropriateWords.areContainedIn("ice and cream"));
+        assertFalse(inappropriateWords.areContainedIn(""));
+    }
+    @Test
+    public void ignoresCaseOfMessageAndWords() {
+        InappropriateWords inappropriateWords = InappropriateWords.from(Arrays.asList("Orange"));
+
+        assertTrue(inappropriateWords.areContainedIn("abc ORANGE xx"));
+        assertTrue(inappropriateWords.areContainedIn("oRaNgE"));
+    }
+    @Test
+    public void findsWordsThatStartInsideAPartialMatch() {
+        InappropriateWords inappropriateWords = InappropriateWords.from(Arrays.asList("hers","she","hex"));
+
+        assertTrue(inappropriateWords.areContainedIn("ushe"));
+        assertTrue(inappropriateWords.areContainedIn("shex"));
+        assertFalse(inappropriateWords.areContainedIn("sh he her"));
+    }
+    @Test
+    public void findsWordsContainedInOtherWords() {
+        InappropriateWords inappropriateWords = InappropriateWords.from(Arrays.asList("abcd","bc"));
+
+        assertTrue(inappropriateWords.areContainedIn("xabcx"));
+    }
+    @Test
+    public void blankWordsAreIgnored() {
+        InappropriateWords inappropriateWords = InappropriateWords.from(Arrays.asList(""," ","orange"));
+
+        assertEquals(1,inappropriateWords.size());
+        assertFalse(inappropriateWords.areContainedIn("hello"));
+    }
+    @Test
+    public void noWordsAcceptsEveryMessage() {
+        InappropriateWords inappropriateWords = InappropriateWords.from(Collections.emptyList());
+
+        assertFalse(inappropriateWords.areContainedIn("elephant"));
+    }
+    @Test
+    public void findsAnyOfThousandsOfWords() {
+        List<String> words = IntStream.range(0, 5000).mapToObj(index -> "word" + index + "x").collect(Collectors.toList());
+        InappropriateWords inappropriateWords = InappropriateWords.from(words);
+
+        assertTrue(inappropriateWords.areContainedIn("this has WORD4999X inside"));
+        assertFalse(inappropriateWords.areContainedIn("word5000x word49 wordx"));
+    }
+    @Test
+    public void canBeLoadedFromFileSkippingComments() throws IOException {
+        Path wordsFile = Files.createTempFile("inappropriate", ".txt");
+        try {
+            Files.write(wordsFile, Arrays.asList("# moderation list","elephant","","ice cream"), StandardCharsets.UTF_8);
+
+            InappropriateWords inappropriateWords = InappropriateWords.loadedFrom(wordsFile);
+
+            assertEquals(Arrays.asList("elephant","ice cream"),inappropriateWords.words());
+            assertFalse(inappropriateWords.areContainedIn("moderation list"));
+        } finally {
+            Files.delete(wordsFile);
+        }
+    }
+}
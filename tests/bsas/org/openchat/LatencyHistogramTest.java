@@ -0,0 +1,69 @@
+package bsas.org.openchat;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LatencyHistogramTest {
+    @Test
+    public void emptyHistogramHasNoValues() {
+        LatencyHistogram histogram = LatencyHistogram.empty();
+
+        assertEquals(0,histogram.count());
+        assertEquals(0,histogram.valueAtPercentile(99));
+        assertEquals(0,histogram.countAtOrBelow(Long.MAX_VALUE));
+    }
+    @Test
+    public void smallValuesAreExact() {
+        LatencyHistogram histogram = LatencyHistogram.empty();
+        for(long value = 1; value<=10; value++) histogram.record(value);
+
+        assertEquals(10,histogram.count());
+        assertEquals(55,histogram.totalNanos());
+        assertEquals(5,histogram.valueAtPercentile(50));
+        assertEquals(10,histogram.valueAtPercentile(100));
+        assertEquals(3,histogram.countAtOrBelow(3));
+    }
+    @Test
+    public void percentilesOfLargeValuesHaveBoundedRelativeError() {
+        LatencyHistogram histogram = LatencyHistogram.empty();
+        for(long millis = 1; millis<=1000; millis++) histogram.record(TimeUnit.MILLISECONDS.toNanos(millis));
+
+        assertEquals(1000,histogram.count());
+        assertEquals(TimeUnit.SECONDS.toNanos(1),histogram.max());
+        assertWithinOnePercentOf(TimeUnit.MILLISECONDS.toNanos(500),histogram.valueAtPercentile(50));
+        assertWithinOnePercentOf(TimeUnit.MILLISECONDS.toNanos(990),histogram.valueAtPercentile(99));
+        assertEquals(TimeUnit.SECONDS.toNanos(1),histogram.valueAtPercentile(100));
+        assertTrue(Math.abs(100 - histogram.countAtOrBelow(TimeUnit.MILLISECONDS.toNanos(100)))<=4);
+    }
+    @Test
+    public void copyIsNotAffectedByLaterRecords() {
+        LatencyHistogram histogram = LatencyHistogram.empty();
+        histogram.record(100);
+        LatencyHistogram copy = histogram.copy();
+        histogram.record(200);
+
+        assertEquals(1,copy.count());
+        assertEquals(100,copy.max());
+        assertEquals(2,histogram.count());
+    }
+    @Test
+    public void addedHistogramIncludesValuesOfBoth() {
+        LatencyHistogram histogram = LatencyHistogram.empty();
+        LatencyHistogram anotherHistogram = LatencyHistogram.empty();
+        histogram.record(10);
+        anotherHistogram.record(20);
+
+        histogram.add(anotherHistogram);
+
+        assertEquals(2,histogram.count());
+        assertEquals(20,histogram.max());
+        assertEquals(30,histogram.totalNanos());
+    }
+
+    private void assertWithinOnePercentOf(long expected, long actual) {
+        assertTrue(Math.abs(expected - actual)<=expected / 32 + 1, "expected about " + expected + " but was " + actual);
+    }
+}
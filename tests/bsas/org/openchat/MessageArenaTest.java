@@ -0,0 +1,84 @@
+package bsas.org.openchat;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MessageArenaTest {
+    @Test
+    public void messagesAreReadAsTheyWereAdded() {
+        MessageArena arena = MessageArena.withChunkSize(64);
+
+        long address = arena.add(encoded("hello ñandú"));
+
+        assertEquals("hello ñandú",arena.messageAt(address, encoded("hello ñandú").length));
+    }
+    @Test
+    public void emptyFirstMessageIsKept() {
+        MessageArena arena = MessageArena.withChunkSize(64);
+
+        long address = arena.add(new byte[0]);
+        long nextAddress = arena.add(encoded("hello"));
+
+        assertEquals("",arena.messageAt(address, 0));
+        assertEquals("hello",arena.messageAt(nextAddress, 5));
+    }
+    @Test
+    public void messagesThatDoNotFitInTheChunkGoToANewOne() {
+        MessageArena arena = MessageArena.withChunkSize(16);
+        List<Long> addresses = new ArrayList<>();
+
+        for(int index = 0; index<100; index++) addresses.add(arena.add(encoded("message " + index)));
+
+        for(int index = 0; index<100; index++)
+            assertEquals("message " + index,arena.messageAt(addresses.get(index), encoded("message " + index).length));
+    }
+    @Test
+    public void messagesLargerThanAChunkAreKept() {
+        MessageArena arena = MessageArena.withChunkSize(16);
+        String largeMessage = "a long message".repeat(10);
+
+        arena.add(encoded("short"));
+        long address = arena.add(encoded(largeMessage));
+        long nextAddress = arena.add(encoded("next"));
+
+        assertEquals(largeMessage,arena.messageAt(address, largeMessage.length()));
+        assertEquals("next",arena.messageAt(nextAddress, 4));
+    }
+    @Test
+    public void placeOfAMessageThatFailedIsReusedByTheNextOne() {
+        MessageArena arena = MessageArena.withChunkSize(64);
+        long firstAddress = arena.add(encoded("first"));
+
+        assertThrows(ModelException.class, () -> arena.add(encoded("failed"), address -> {
+            throw new ModelException("Can not be added");
+        }));
+        long nextAddress = arena.add(encoded("next"));
+
+        assertEquals(firstAddress + 5,nextAddress);
+        assertEquals("first",arena.messageAt(firstAddress, 5));
+        assertEquals("next",arena.messageAt(nextAddress, 4));
+    }
+    @Test
+    public void messagesAreWrittenAsJsonStrings() throws IOException {
+        MessageArena arena = MessageArena.withChunkSize(64);
+        long address = arena.add(encoded("say \"hi\""));
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        Utf8JsonWriter writer = Utf8JsonWriter.on(output);
+
+        arena.writeMessageTo(writer, address, encoded("say \"hi\"").length);
+        writer.flush();
+
+        assertEquals("\"say \\\"hi\\\"\"",output.toString(StandardCharsets.UTF_8));
+    }
+
+    private byte[] encoded(String message) {
+        return message.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,236 @@
+package bsas.org.openchat;
+
+import com.eclipsesource.json.JsonArray;
+import com.eclipsesource.json.JsonObject;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.eclipse.jetty.http.HttpStatus.OK_200;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class OpenChatSystemConcurrencyTest {
+    private static final int THREADS = 8;
+    private static final int USERS = 64;
+    private static final int PUBLICATIONS_PER_USER = 50;
+
+    private OpenChatSystem system;
+
+    @Test
+    public void sameUserNameIsRegisteredOnlyOnceWhenRegisteredInParallel() {
+        system = createSystem();
+        final AtomicInteger duplicatedRegistrations = new AtomicInteger();
+
+        runInParallel(USERS * THREADS, index -> {
+            try {
+                register(userNameFor(index % USERS));
+            } catch (ModelException error) {
+                assertEquals(OpenChatSystem.CANNOT_REGISTER_SAME_USER_TWICE, error.getMessage());
+                duplicatedRegistrations.incrementAndGet();
+            }
+        });
+
+        assertEquals(USERS, system.numberOfUsers());
+        assertEquals(USERS, system.users().size());
+        assertEquals(USERS * (THREADS - 1), duplicatedRegistrations.get());
+        IntStream.range(0, USERS).forEach(index ->
+                assertTrue(system.users(index, 1).get(0).isNamed(system.users().get(index).name())));
+    }
+
+    @Test
+    public void listedAndLoggedInUsersHaveIdsWhileRegisteringInParallel() {
+        system = createSystem();
+        final RestReceptionist receptionist = new RestReceptionist(system);
+
+        runInParallel(USERS * THREADS, index -> {
+            final String userName = userNameFor(index / 3);
+            switch (index % 3) {
+                case 0: receptionist.registerUser(registrationAsJson(userName)); break;
+                case 1: receptionist.registerUsers(new JsonArray().add(registrationAsJson(userName))); break;
+                default:
+                    receptionist.users().responseBodyAsJsonArray().forEach(user -> assertHasId(user.asObject()));
+                    final ReceptionistResponse loginResponse = receptionist.login(registrationAsJson(userNameFor(index / 3 - 1)));
+                    if(loginResponse.isStatus(OK_200)) assertHasId(loginResponse.responseBodyAsJson());
+            }
+        });
+
+        assertEquals(system.numberOfUsers(), receptionist.users().responseBodyAsJsonArray().size());
+    }
+
+    @Test
+    public void everyPublicationIsInTimeLineWhenPublishedInParallel() {
+        system = createSystem();
+        registerUsers();
+
+        runInParallel(USERS * PUBLICATIONS_PER_USER, index ->
+                system.publishForUserNamed(userNameFor(index % USERS), "message " + index));
+
+        IntStream.range(0, USERS).forEach(index -> {
+            final List<Publication> timeLine = system.timeLineForUserNamed(userNameFor(index));
+            assertEquals(PUBLICATIONS_PER_USER, timeLine.size());
+            assertIsNewestFirst(timeLine);
+        });
+    }
+
+    @Test
+    public void followsInBothDirectionsDoNotDeadlockAndCountOnlyOnce() {
+        system = createSystem();
+        registerUsers();
+        final AtomicInteger rejectedFollows = new AtomicInteger();
+
+        runInParallel(USERS * USERS * 2, index -> {
+            final int followed = (index / USERS) % USERS;
+            final int follower = index % USERS;
+            try {
+                system.followForUserNamed(userNameFor(followed), userNameFor(follower));
+            } catch (ModelException error) {
+                rejectedFollows.incrementAndGet();
+            }
+        });
+
+        IntStream.range(0, USERS).forEach(index ->
+                assertEquals(USERS - 1, system.followersOfUserNamed(userNameFor(index)).size()));
+        assertEquals(USERS * USERS * 2 - USERS * (USERS - 1), rejectedFollows.get());
+    }
+
+    @Test
+    public void everyLikeCountsOnceWhenLikedInParallel() {
+        system = createSystem();
+        registerUsers();
+        final Publication publication = system.publishForUserNamed(userNameFor(0), "hello");
+
+        runInParallel(USERS * THREADS, index -> system.likePublication(publication, userNameFor(index % USERS)));
+
+        assertEquals(USERS, system.likesOf(publication));
+    }
+
+    @Test
+    public void wallsCanBeReadWhilePublishingAndFollowing() {
+        assertWallsAreCompleteAfterEveryOperationInParallel(createSystem());
+    }
+
+    @Test
+    public void materializedWallsCanBeReadWhilePublishingAndFollowing() {
+        assertWallsAreCompleteAfterEveryOperationInParallel(
+                OpenChatSystem.withMaterializedWalls(new IncreasingClock(), PUBLICATIONS_PER_USER * USERS));
+    }
+
+    private void assertWallsAreCompleteAfterEveryOperationInParallel(OpenChatSystem systemToTest) {
+        system = systemToTest;
+        registerUsers();
+
+        runInParallel(USERS * PUBLICATIONS_PER_USER, index -> {
+            final String userName = userNameFor(index % USERS);
+            switch (index % 5) {
+                case 0: followIgnoringDuplicates(userNameFor((index / USERS) % USERS), userName); break;
+                case 1: assertIsNewestFirst(system.wallForUserNamed(userName)); break;
+                case 2: assertIsNewestFirst(system.wallForUserNamed(userName, PublicationsPage.latest(10))); break;
+                case 3: system.users(0, USERS).forEach(user -> system.timeLineForUserNamed(user.name())); break;
+                default: likeNewestOf(userName, system.publishForUserNamed(userName, "message " + index));
+            }
+        });
+
+        IntStream.range(0, USERS).forEach(index -> {
+            final String userName = userNameFor(index);
+            final List<Publication> wall = system.wallForUserNamed(userName);
+            final int expectedWallSize = system.timeLineForUserNamed(userName).size() +
+                    system.followersOfUserNamed(userName).stream()
+                            .mapToInt(follower -> system.timeLineForUserNamed(follower.name()).size())
+                            .sum();
+            assertEquals(expectedWallSize, wall.size());
+            assertIsNewestFirst(wall);
+        });
+    }
+
+    private JsonObject registrationAsJson(String userName) {
+        return new JsonObject()
+                .add(RestReceptionist.USERNAME_KEY, userName)
+                .add(RestReceptionist.PASSWORD_KEY, "password")
+                .add(RestReceptionist.ABOUT_KEY, "about")
+                .add(RestReceptionist.HOME_PAGE_KEY, "www.10pines.com");
+    }
+
+    private void assertHasId(JsonObject userAsJson) {
+        assertTrue(userAsJson.get(RestReceptionist.ID_KEY).isString());
+    }
+
+    private void likeNewestOf(String userName, Publication publication) {
+        system.likePublication(publication, userName);
+        system.likesOf(publication);
+    }
+
+    private void followIgnoringDuplicates(String followedUserName, String followerUserName) {
+        try {
+            system.followForUserNamed(followedUserName, followerUserName);
+        } catch (ModelException error) {
+            assertTrue(Publisher.CANNOT_FOLLOW_SELF.equals(error.getMessage())
+                    || Publisher.CANNOT_FOLLOW_TWICE.equals(error.getMessage()));
+        }
+    }
+
+    private void assertIsNewestFirst(List<Publication> publications) {
+        for(int index = 1; index<publications.size(); index++)
+            assertTrue(publications.get(index - 1).comparePublicationTimeWith(publications.get(index))>=0);
+    }
+
+    private void runInParallel(int numberOfTasks, IntConsumer task) {
+        final ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        final CountDownLatch start = new CountDownLatch(1);
+        final List<Throwable> errors = Collections.synchronizedList(new ArrayList<>());
+        try {
+            final List<Future<?>> futures = IntStream.range(0, numberOfTasks)
+                    .mapToObj(index -> executor.submit(() -> {
+                        try {
+                            start.await();
+                            task.accept(index);
+                        } catch (Throwable error) {
+                            errors.add(error);
+                        }
+                    }))
+                    .collect(Collectors.toList());
+            start.countDown();
+            for(Future<?> future : futures) future.get(30, TimeUnit.SECONDS);
+        } catch (InterruptedException | ExecutionException | TimeoutException error) {
+            fail("Parallel tasks did not finish: " + error);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(Collections.emptyList(), errors);
+    }
+
+    private void registerUsers() {
+        IntStream.range(0, USERS).forEach(index -> register(userNameFor(index)));
+    }
+
+    private User register(String userName) {
+        return system.register(userName, "password", "about", "www.10pines.com");
+    }
+
+    private String userNameFor(int index) {
+        return "user" + index;
+    }
+
+    private OpenChatSystem createSystem() {
+        return new OpenChatSystem(new IncreasingClock());
+    }
+
+    private static class IncreasingClock implements Clock {
+        private final LocalDateTime start = LocalDateTime.now();
+        private final AtomicInteger ticks = new AtomicInteger();
+
+        @Override
+        public LocalDateTime now() {
+            //Uno de cada tres ticks repite el tiempo para que haya publicaciones simultaneas
+            return start.plusNanos(ticks.getAndIncrement() / 3);
+        }
+    }
+}
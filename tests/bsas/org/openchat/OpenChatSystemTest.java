@@ -4,6 +4,7 @@ import org.junit.jupiter.api.Test;
 
 import static org.junit.jupiter.api.Assertions.*;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
@@ -62,6 +63,33 @@ public class OpenChatSystemTest {
         assertEquals(1,system.numberOfUsers());
     }
     @Test
+    public void registerAllRejectsDuplicatedAndInvalidUsersAndRegistersTheRest() {
+        system = createSystem();
+        registerPepeSanchez();
+        final List<String> results = new ArrayList<>();
+
+        system.registerAll(Arrays.asList(
+                    Registration.of(TestObjectsBucket.JUAN_PEREZ_NAME, TestObjectsBucket.JUAN_PEREZ_PASSWORD,
+                            TestObjectsBucket.JUAN_PEREZ_ABOUT, TestObjectsBucket.JUAN_PEREZ_HOME_PAGE),
+                    Registration.of(TestObjectsBucket.PEPE_SANCHEZ_NAME, TestObjectsBucket.PEPE_SANCHEZ_PASSWORD,
+                            TestObjectsBucket.PEPE_SANCHEZ_ABOUT, TestObjectsBucket.PEPE_SANCHEZ_HOME_PAGE),
+                    Registration.of(TestObjectsBucket.JUAN_PEREZ_NAME, TestObjectsBucket.JUAN_PEREZ_PASSWORD,
+                            TestObjectsBucket.JUAN_PEREZ_ABOUT, TestObjectsBucket.JUAN_PEREZ_HOME_PAGE),
+                    Registration.of(" ", TestObjectsBucket.JUAN_PEREZ_PASSWORD,
+                            TestObjectsBucket.JUAN_PEREZ_ABOUT, TestObjectsBucket.JUAN_PEREZ_HOME_PAGE)),
+                (registration, newUser) -> results.add(newUser.name()),
+                (registration, error) -> results.add(error.getMessage()));
+
+        assertEquals(Arrays.asList(
+                    TestObjectsBucket.JUAN_PEREZ_NAME,
+                    OpenChatSystem.CANNOT_REGISTER_SAME_USER_TWICE,
+                    OpenChatSystem.CANNOT_REGISTER_SAME_USER_TWICE,
+                    User.NAME_CANNOT_BE_BLANK),
+                results);
+        assertEquals(2,system.numberOfUsers());
+        assertTrue(system.hasUserNamed(TestObjectsBucket.JUAN_PEREZ_NAME));
+    }
+    @Test
     public void canWorkWithAuthenticatedUser() {
         system = createSystem();
         registerPepeSanchez();
@@ -137,6 +165,56 @@ public class OpenChatSystemTest {
         List<Publication> wall = system.wallForUserNamed(TestObjectsBucket.PEPE_SANCHEZ_NAME);
         assertEquals(Arrays.asList(followerPublication,followedPublication),wall);
     }
+    @Test
+    public void canGetMaterializedWallOfRegisteredUser() {
+        system = OpenChatSystem.withMaterializedWalls(testObjects.fixedNowClock(), 10);
+        registerPepeSanchez();
+        registerJuanPerez();
+
+        Publication followerPublication = system.publishForUserNamed(TestObjectsBucket.JUAN_PEREZ_NAME,"bye");
+        system.followForUserNamed(TestObjectsBucket.PEPE_SANCHEZ_NAME, TestObjectsBucket.JUAN_PEREZ_NAME);
+        testObjects.changeNowTo(testObjects.now().plusSeconds(1));
+        Publication followedPublication = system.publishForUserNamed(TestObjectsBucket.PEPE_SANCHEZ_NAME,"hello");
+
+        List<Publication> wall = system.wallForUserNamed(TestObjectsBucket.PEPE_SANCHEZ_NAME);
+        assertEquals(Arrays.asList(followedPublication,followerPublication),wall);
+    }
+    @Test
+    public void canGetTimeLinePageOfRegisteredUser() {
+        system = createSystem();
+        registerPepeSanchez();
+
+        Publication firstPublication = system.publishForUserNamed(TestObjectsBucket.PEPE_SANCHEZ_NAME,"hello");
+        testObjects.changeNowTo(testObjects.now().plusSeconds(1));
+        Publication secondPublication = system.publishForUserNamed(TestObjectsBucket.PEPE_SANCHEZ_NAME,"bye");
+
+        assertEquals(
+                Arrays.asList(secondPublication),
+                system.timeLineForUserNamed(TestObjectsBucket.PEPE_SANCHEZ_NAME, PublicationsPage.latest(1)));
+        assertEquals(
+                Arrays.asList(firstPublication),
+                system.timeLineForUserNamed(TestObjectsBucket.PEPE_SANCHEZ_NAME, PublicationsPage.olderThan(secondPublication,1)));
+    }
+    @Test
+    public void usersArePagedInRegistrationOrder() {
+        system = createSystem();
+        User pepeSanchez = registerPepeSanchez();
+        User juanPerez = registerJuanPerez();
+
+        assertEquals(Arrays.asList(pepeSanchez,juanPerez),system.users());
+        assertEquals(Arrays.asList(pepeSanchez),system.users(0,1));
+        assertEquals(Arrays.asList(juanPerez),system.users(1,10));
+        assertEquals(Arrays.asList(),system.users(2,10));
+        assertEquals(Arrays.asList(juanPerez),system.usersRegisteredAfter(pepeSanchez,10));
+    }
+    @Test
+    public void canNotPageUsersWithInvalidLimit() {
+        system = createSystem();
+
+        TestObjectsBucket.assertThrowsModelExceptionWithErrorMessage(
+                ()->system.users(0,0),
+                OpenChatSystem.INVALID_USERS_PAGE);
+    }
 
     @Test
     public void publicationsHaveNoLikesWhenCreated() {
@@ -191,6 +269,25 @@ public class OpenChatSystemTest {
                 ()->system.likePublication(publication,TestObjectsBucket.JUAN_PEREZ_NAME),
                 OpenChatSystem.USER_NOT_REGISTERED);
     }
+    @Test
+    public void publisherRelatedToRegisteredUserActsOnItsBehalf() {
+        system = createSystem();
+        User registeredUser = registerPepeSanchez();
+
+        Publisher publisher = system.publisherRelatedTo(registeredUser);
+        Publication publication = system.publishFor(publisher,"hello");
+
+        assertEquals(registeredUser,publisher.relatedUser());
+        assertEquals(Arrays.asList(publication),system.timeLineForUserNamed(TestObjectsBucket.PEPE_SANCHEZ_NAME));
+    }
+    @Test
+    public void notRegisteredUserHasNoRelatedPublisher() {
+        system = createSystem();
+
+        TestObjectsBucket.assertThrowsModelExceptionWithErrorMessage(
+                ()->system.publisherRelatedTo(testObjects.createPepeSanchez()),
+                OpenChatSystem.USER_NOT_REGISTERED);
+    }
 
     private void assertCanNotAuthenticatePepeSanchezWith(String password) {
         final Object token = new Object();
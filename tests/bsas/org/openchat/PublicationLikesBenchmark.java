@@ -0,0 +1,86 @@
+package bsas.org.openchat;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+/* Benchmark de likes sobre una sola publicacion muy likeada.
+ * Se corre como main: PublicationLikesBenchmark [threads] [usuarios] [rondas]
+ * Cada thread likea la misma publicacion con todos los usuarios, asi la mayoria
+ * de los likes son repetidos, como pasa con un post viral.
+ * Despues de cada ronda hay otra igual sobre los likes solos, con usuarios repartidos
+ * entre los indices de registro hasta SPARSE_LIKERS_STRIDE veces la cantidad de usuarios,
+ * como cuando likean usuarios registrados en cualquier momento de un sistema grande.
+ */
+public class PublicationLikesBenchmark {
+    private static final int SPARSE_LIKERS_STRIDE = 100;
+
+    public static void main(String[] arguments) throws InterruptedException {
+        final int threads = arguments.length>0 ? Integer.parseInt(arguments[0]) : Runtime.getRuntime().availableProcessors();
+        final int users = arguments.length>1 ? Integer.parseInt(arguments[1]) : 100_000;
+        final int rounds = arguments.length>2 ? Integer.parseInt(arguments[2]) : 5;
+
+        for(int round = 1; round<=rounds; round++) {
+            System.out.println("round " + round + ": " + runRound(threads, users));
+            System.out.println("sparse round " + round + ": " + runSparseRound(threads, users));
+        }
+    }
+
+    private static String runSparseRound(int threads, int users) throws InterruptedException {
+        final PublicationLikes likes = PublicationLikes.empty();
+
+        final long elapsed = timeInParallel(threads, thread -> {
+            for(int offset = 0; offset<users; offset++)
+                likes.likedBy(((offset + thread * (users / threads)) % users) * SPARSE_LIKERS_STRIDE);
+        });
+
+        final long likeOperations = (long) threads * users;
+        return String.format("%d threads, %d likes up to index %d in %d ms, %.0f likes/s, count=%d",
+                threads, likeOperations, (long) users * SPARSE_LIKERS_STRIDE, TimeUnit.NANOSECONDS.toMillis(elapsed),
+                likeOperations * 1e9 / elapsed, likes.count());
+    }
+
+    private static long timeInParallel(int threads, IntConsumer threadTask) throws InterruptedException {
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        final CountDownLatch start = new CountDownLatch(1);
+        IntStream.range(0, threads).forEach(thread -> executor.execute(() -> {
+            try {
+                start.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            threadTask.accept(thread);
+        }));
+
+        final long startTime = System.nanoTime();
+        start.countDown();
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.MINUTES);
+
+        return System.nanoTime() - startTime;
+    }
+
+    private static String runRound(int threads, int users) throws InterruptedException {
+        final OpenChatSystem system = new OpenChatSystem(() -> LocalDateTime.now());
+        final Publisher[] likers = IntStream.range(0, users)
+                .mapToObj(index -> system.publisherRelatedTo(system.register("user" + index, "password", "about", "www.10pines.com")))
+                .toArray(Publisher[]::new);
+        final Publication hotPublication = system.publishFor(likers[0], "viral");
+
+        //Cada thread arranca en otro usuario para que compitan por likes distintos y repetidos
+        final long elapsed = timeInParallel(threads, thread -> {
+            for(int offset = 0; offset<users; offset++)
+                system.likePublication(hotPublication, likers[(offset + thread * (users / threads)) % users]);
+        });
+
+        final long likeOperations = (long) threads * users;
+        return String.format("%d threads, %d likes in %d ms, %.0f likes/s, likesOf=%d",
+                threads, likeOperations, TimeUnit.NANOSECONDS.toMillis(elapsed),
+                likeOperations * 1e9 / elapsed, system.likesOf(hotPublication));
+    }
+}
@@ -0,0 +1,73 @@
+package bsas.org.openchat;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PublicationLikesTest {
+    @Test
+    public void hasNoLikesWhenCreated() {
+        PublicationLikes likes = PublicationLikes.empty();
+
+        assertEquals(0,likes.count());
+        assertFalse(likes.isLikedBy(0));
+    }
+    @Test
+    public void likeFromSameLikerCountsOnlyOnce() {
+        PublicationLikes likes = PublicationLikes.empty();
+
+        assertTrue(likes.likedBy(3));
+        assertFalse(likes.likedBy(3));
+
+        assertEquals(1,likes.count());
+        assertTrue(likes.isLikedBy(3));
+        assertFalse(likes.isLikedBy(2));
+    }
+    @Test
+    public void likersWithHighIndexesAreKept() {
+        PublicationLikes likes = PublicationLikes.empty();
+
+        likes.likedBy(0);
+        likes.likedBy(100_000);
+
+        assertEquals(2,likes.count());
+        assertTrue(likes.isLikedBy(100_000));
+        assertFalse(likes.isLikedBy(99_999));
+    }
+    @Test
+    public void likersSpreadOverHighIndexesAreListedInRegistrationOrder() {
+        PublicationLikes likes = PublicationLikes.empty();
+        List<Integer> likerIndexes = new ArrayList<>();
+
+        likes.likedBy(10_000_000);
+        likes.likedBy(5);
+        likes.likedBy(2_000_000);
+        likes.likedBy(2_000_001);
+        likes.likerIndexesDo(likerIndex -> likerIndexes.add(likerIndex));
+
+        assertEquals(Arrays.asList(5, 2_000_000, 2_000_001, 10_000_000),likerIndexes);
+        assertEquals(4,likes.count());
+        assertFalse(likes.isLikedBy(9_999_999));
+    }
+    @Test
+    public void likesFromManyThreadsAreNotLost() throws InterruptedException {
+        PublicationLikes likes = PublicationLikes.empty();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+
+        IntStream.range(0, 8).forEach(thread -> executor.execute(() ->
+                IntStream.range(0, 20_000).forEach(likerIndex -> likes.likedBy(likerIndex))));
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+
+        assertEquals(20_000,likes.count());
+        IntStream.range(0, 20_000).forEach(likerIndex -> assertTrue(likes.isLikedBy(likerIndex)));
+    }
+}
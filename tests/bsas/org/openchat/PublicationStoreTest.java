@@ -0,0 +1,82 @@
+package bsas.org.openchat;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PublicationStoreTest {
+    private static final LocalDateTime PUBLICATION_TIME = LocalDateTime.of(2021, 3, 4, 5, 6, 7, 123456789);
+
+    @Test
+    public void storedPublicationKeepsMessageAndTime() {
+        PublicationStore store = PublicationStore.in(MessageArena.withChunkSize(64));
+
+        int index = store.add("hello", PUBLICATION_TIME);
+
+        assertEquals(0,index);
+        assertEquals(1,store.size());
+        assertEquals("hello",store.messageAt(index));
+        assertEquals(PUBLICATION_TIME,store.publicationTimeAt(index));
+    }
+    @Test
+    public void storeKeepsEveryPublicationWhenItGrows() {
+        PublicationStore store = PublicationStore.in(MessageArena.withChunkSize(64));
+
+        for(int index = 0; index<1000; index++)
+            store.add("mensaje n\u00famero " + index + " \u00f1 \ud83d\ude00", PUBLICATION_TIME.plusNanos(index));
+
+        assertEquals(1000,store.size());
+        for(int index = 0; index<1000; index++) {
+            assertEquals("mensaje n\u00famero " + index + " \u00f1 \ud83d\ude00",store.messageAt(index));
+            assertEquals(PUBLICATION_TIME.plusNanos(index),store.publicationTimeAt(index));
+        }
+    }
+    @Test
+    public void storeKeepsEmptyMessages() {
+        PublicationStore store = PublicationStore.in(MessageArena.withChunkSize(64));
+
+        store.add("", PUBLICATION_TIME);
+        store.add("hello", PUBLICATION_TIME);
+        store.add("", PUBLICATION_TIME);
+
+        assertEquals("",store.messageAt(0));
+        assertEquals("hello",store.messageAt(1));
+        assertEquals("",store.messageAt(2));
+    }
+    @Test
+    public void storeKeepsTimesBeforeEpoch() {
+        PublicationStore store = PublicationStore.in(MessageArena.withChunkSize(64));
+        LocalDateTime timeBeforeEpoch = LocalDateTime.of(1969, 12, 31, 23, 59, 59, 1);
+
+        store.add("hello", timeBeforeEpoch);
+
+        assertEquals(timeBeforeEpoch,store.publicationTimeAt(0));
+    }
+    @Test
+    public void publicationThatFailedBeforeBeingVisibleIsNotKept() {
+        PublicationStore store = PublicationStore.in(MessageArena.withChunkSize(64));
+        store.add("first", PUBLICATION_TIME);
+
+        assertThrows(ModelException.class, () -> store.add("failed", PUBLICATION_TIME, index -> {
+            throw new ModelException("Can not be added");
+        }));
+        int index = store.add("next", PUBLICATION_TIME.plusNanos(1));
+
+        assertEquals(1,index);
+        assertEquals(2,store.size());
+        assertEquals("next",store.messageAt(index));
+        assertEquals(PUBLICATION_TIME.plusNanos(1),store.publicationTimeAt(index));
+    }
+    @Test
+    public void publicationsAreComparedByTime() {
+        Publisher publisher = Publisher.relatedTo(new TestObjectsBucket().createPepeSanchez());
+        Publication first = publisher.publish("first", PUBLICATION_TIME);
+        Publication second = publisher.publish("second", PUBLICATION_TIME.plusNanos(1));
+
+        assertTrue(first.comparePublicationTimeWith(second)<0);
+        assertTrue(second.comparePublicationTimeWith(first)>0);
+        assertEquals(0,first.comparePublicationTimeWith(first));
+    }
+}
@@ -4,6 +4,7 @@ import org.junit.jupiter.api.Test;
 import static org.junit.jupiter.api.Assertions.*;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
@@ -70,6 +71,19 @@ public class PublisherTest {
         assertFalse(publication.wasPublishedAt(publicationTime.plusSeconds(1)));
     }
     @Test
+    public void publicationThatFailsBeforeBeingVisibleIsNotStored() {
+        Publisher createdPublisher = createPepeSanchez();
+
+        assertThrowsModelExceptionWithErrorMessage(
+                ()->createdPublisher.publish("a message", LocalDateTime.now(), newPublication -> {
+                    throw new ModelException("Can not be saved");
+                }),
+                "Can not be saved");
+
+        assertFalse(createdPublisher.hasPublications());
+        assertEquals(0,createdPublisher.publicationStore().size());
+    }
+    @Test
     public void timelineHasPublisherPublicationsSortedWithLatestPublicationsFirst() {
         Publisher createdPublisher = createPepeSanchez();
 
@@ -126,6 +140,104 @@ public class PublisherTest {
         assertEquals(Arrays.asList(thirdPublication, secondPublication, firstPublication),wall);
     }
     @Test
+    public void limitedWallContainsOnlyLatestPublications() {
+        Publisher followed = createPepeSanchez();
+        Publisher follower = createJuanPerez();
+
+        followed.followedBy(follower);
+        final LocalDateTime publicationTime = LocalDateTime.now();
+        final String message = "a message";
+        followed.publish(message, publicationTime);
+        Publication secondPublication = follower.publish(message, publicationTime.plusSeconds(1));
+        Publication thirdPublication = followed.publish(message, publicationTime.plusSeconds(2));
+
+        assertEquals(Arrays.asList(thirdPublication, secondPublication),followed.wall(2));
+        assertEquals(Arrays.asList(thirdPublication),followed.timeLine(1));
+    }
+    @Test
+    public void wallListsPublisherPublicationsFirstWhenPublishedAtSameTime() {
+        Publisher followed = createPepeSanchez();
+        Publisher follower = createJuanPerez();
+
+        followed.followedBy(follower);
+        final LocalDateTime publicationTime = LocalDateTime.now();
+        final String message = "a message";
+        Publication followerPublication = follower.publish(message, publicationTime);
+        Publication firstPublication = followed.publish(message, publicationTime);
+        Publication secondPublication = followed.publish(message, publicationTime);
+
+        assertEquals(Arrays.asList(firstPublication, secondPublication, followerPublication),followed.wall());
+    }
+    @Test
+    public void limitedMaterializedWallOverCapacityIsAssembledWhenNeeded() {
+        Publisher followed = createPepeSanchezWithMaterializedWallOf(1);
+        Publisher follower = createJuanPerez();
+
+        followed.followedBy(follower);
+        final LocalDateTime publicationTime = LocalDateTime.now();
+        followed.publish("a message", publicationTime);
+        Publication secondPublication = follower.publish("a message", publicationTime.plusSeconds(1));
+        Publication thirdPublication = followed.publish("a message", publicationTime.plusSeconds(2));
+
+        assertEquals(Arrays.asList(thirdPublication),followed.wall(1));
+        assertEquals(Arrays.asList(thirdPublication, secondPublication),followed.wall(2));
+    }
+    @Test
+    public void wallPageOlderThanPublicationStartsAfterIt() {
+        Publisher followed = createPepeSanchez();
+        Publisher follower = createJuanPerez();
+
+        followed.followedBy(follower);
+        final LocalDateTime publicationTime = LocalDateTime.now();
+        final String message = "a message";
+        Publication firstPublication = followed.publish(message, publicationTime);
+        Publication secondPublication = follower.publish(message, publicationTime.plusSeconds(1));
+        Publication thirdPublication = followed.publish(message, publicationTime.plusSeconds(1));
+        Publication fourthPublication = follower.publish(message, publicationTime.plusSeconds(2));
+
+        assertEquals(
+                Arrays.asList(thirdPublication, secondPublication),
+                followed.wall(PublicationsPage.olderThan(fourthPublication, 2)));
+        assertEquals(
+                Arrays.asList(secondPublication, firstPublication),
+                followed.wall(PublicationsPage.olderThan(thirdPublication, 10)));
+    }
+    @Test
+    public void wallPageNewerThanPublicationEndsBeforeIt() {
+        Publisher followed = createPepeSanchez();
+        Publisher follower = createJuanPerez();
+
+        followed.followedBy(follower);
+        final LocalDateTime publicationTime = LocalDateTime.now();
+        final String message = "a message";
+        Publication firstPublication = followed.publish(message, publicationTime);
+        Publication secondPublication = follower.publish(message, publicationTime.plusSeconds(1));
+        Publication thirdPublication = followed.publish(message, publicationTime.plusSeconds(1));
+        Publication fourthPublication = follower.publish(message, publicationTime.plusSeconds(2));
+
+        assertEquals(
+                Arrays.asList(thirdPublication, secondPublication),
+                followed.wall(PublicationsPage.newerThan(firstPublication, 2)));
+        assertEquals(
+                Arrays.asList(fourthPublication, thirdPublication),
+                followed.wall(PublicationsPage.newerThan(secondPublication, 10)));
+    }
+    @Test
+    public void canNotPageFromPublicationNotInTimeLine() {
+        Publisher publisher = createPepeSanchez();
+        Publication otherPublication = createJuanPerez().publish("a message", LocalDateTime.now());
+
+        assertThrowsModelExceptionWithErrorMessage(
+                ()->publisher.timeLine(PublicationsPage.olderThan(otherPublication, 10)),
+                OpenChatSystem.INVALID_PUBLICATION);
+    }
+    @Test
+    public void pageLimitMustBePositive() {
+        assertThrowsModelExceptionWithErrorMessage(
+                ()->PublicationsPage.latest(0),
+                PublicationsPage.INVALID_LIMIT);
+    }
+    @Test
     public void canNotPublishWithInappropriateWord() {
         Publisher createdPublisher = createPepeSanchez();
 
@@ -174,6 +286,122 @@ public class PublisherTest {
                     assertFalse(createdPublisher.hasPublications());
                 });
     }
+    @Test
+    public void inappropriateWordsCanBeReplaced() {
+        Publisher createdPublisher = createPepeSanchez();
+        InappropriateWords previousInappropriateWords = Publication.inappropriateWordsInUse();
+
+        final LocalDateTime publicationTime = LocalDateTime.now();
+        try {
+            Publication.useInappropriateWords(InappropriateWords.from(Arrays.asList("banana")));
+
+            assertThrowsModelExceptionWithErrorMessage(
+                    ()->createdPublisher.publish("BANANA split", publicationTime),
+                    Publication.INAPPROPRIATE_WORD);
+            createdPublisher.publish("elephant", publicationTime);
+        } finally {
+            Publication.useInappropriateWords(previousInappropriateWords);
+        }
+
+        assertEquals(1,createdPublisher.numberOfPublications());
+    }
+    @Test
+    public void versionChangesWhenTimelineOrWallChange() {
+        Publisher followed = createPepeSanchez();
+        Publisher follower = createJuanPerez();
+
+        followed.followedBy(follower);
+        assertEquals(1,followed.version());
+        assertEquals(0,follower.version());
+
+        follower.publish("a message", LocalDateTime.now());
+        assertEquals(2,followed.version());
+        assertEquals(1,follower.version());
+
+        followed.publish("a message", LocalDateTime.now());
+        assertEquals(3,followed.version());
+        assertEquals(1,follower.version());
+    }
+    @Test
+    public void materializedWallContainsPublicationsOfFollowersPublishedAfterFollowing() {
+        Publisher followed = createPepeSanchezWithMaterializedWallOf(10);
+        Publisher follower = createJuanPerez();
+
+        followed.followedBy(follower);
+        final LocalDateTime publicationTime = LocalDateTime.now();
+        Publication firstPublication = followed.publish("a message", publicationTime);
+        Publication secondPublication = follower.publish("a message", publicationTime.plusSeconds(1));
+
+        assertEquals(Arrays.asList(secondPublication, firstPublication),followed.wall());
+    }
+    @Test
+    public void materializedWallIsBackfilledWithFollowerPublicationsWhenFollowed() {
+        Publisher followed = createPepeSanchezWithMaterializedWallOf(10);
+        Publisher follower = createJuanPerez();
+
+        final LocalDateTime publicationTime = LocalDateTime.now();
+        Publication firstPublication = follower.publish("a message", publicationTime);
+        Publication secondPublication = followed.publish("a message", publicationTime.plusSeconds(1));
+        followed.followedBy(follower);
+
+        assertEquals(Arrays.asList(secondPublication, firstPublication),followed.wall());
+    }
+    @Test
+    public void materializedWallBackfillKeepsTheNewestPublicationsUpToCapacity() {
+        Publisher followed = createPepeSanchezWithMaterializedWallOf(4);
+        Publisher follower = createJuanPerez();
+
+        final LocalDateTime publicationTime = LocalDateTime.now();
+        List<Publication> followedPublications = new ArrayList<>();
+        List<Publication> followerPublications = new ArrayList<>();
+        for(int index = 0; index<4; index++) {
+            followedPublications.add(followed.publish("a message", publicationTime.plusSeconds(index * 2)));
+            followerPublications.add(follower.publish("a message", publicationTime.plusSeconds(index * 2 + 1)));
+        }
+        Publication newestPublication = follower.publish("a message", publicationTime.plusSeconds(8));
+        followed.followedBy(follower);
+
+        assertEquals(Arrays.asList(newestPublication, followerPublications.get(3), followedPublications.get(3), followerPublications.get(2)),
+                followed.wall(4));
+        assertEquals(9,followed.wall().size());
+        assertEquals(followedPublications.get(0),followed.wall().get(8));
+    }
+    @Test
+    public void materializedWallBackfillLeavesFollowerPublicationsOlderWhenPublishedAtTheSameTime() {
+        Publisher followed = createPepeSanchezWithMaterializedWallOf(10);
+        Publisher follower = createJuanPerez();
+
+        final LocalDateTime publicationTime = LocalDateTime.now();
+        Publication followedPublication = followed.publish("a message", publicationTime);
+        Publication firstFollowerPublication = follower.publish("a message", publicationTime);
+        Publication secondFollowerPublication = follower.publish("a message", publicationTime);
+        followed.followedBy(follower);
+
+        assertEquals(Arrays.asList(followedPublication, firstFollowerPublication, secondFollowerPublication),followed.wall(3));
+    }
+    @Test
+    public void materializedWallOverCapacityIsStillComplete() {
+        Publisher followed = createPepeSanchezWithMaterializedWallOf(1);
+        Publisher follower = createJuanPerez();
+
+        followed.followedBy(follower);
+        final LocalDateTime publicationTime = LocalDateTime.now();
+        Publication firstPublication = followed.publish("a message", publicationTime);
+        Publication secondPublication = follower.publish("a message", publicationTime.plusSeconds(1));
+        Publication thirdPublication = followed.publish("a message", publicationTime.plusSeconds(2));
+
+        assertEquals(Arrays.asList(thirdPublication, secondPublication, firstPublication),followed.wall());
+    }
+    @Test
+    public void materializedWallCapacityMustBePositive() {
+        assertThrowsModelExceptionWithErrorMessage(
+                ()->createPepeSanchezWithMaterializedWallOf(0),
+                MaterializedWall.INVALID_CAPACITY);
+    }
+
+    private Publisher createPepeSanchezWithMaterializedWallOf(int wallCapacity) {
+        return Publisher.withMaterializedWallRelatedTo(testObjects.createPepeSanchez(), wallCapacity);
+    }
 
     private Publisher createJuanPerez() {
         return Publisher.relatedTo(testObjects.createUserJuanPerez());
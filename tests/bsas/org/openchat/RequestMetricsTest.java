@@ -0,0 +1,49 @@
+package bsas.org.openchat;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RequestMetricsTest {
+    @Test
+    public void countsRequestsByRouteAndStatus() {
+        RequestMetrics metrics = RequestMetrics.empty();
+
+        metrics.record("POST /users", 201, 1000);
+        metrics.record("POST /users", 201, 1000);
+        metrics.record("POST /users", 400, 1000);
+
+        assertEquals(2,metrics.requestsTo("POST /users", 201));
+        assertEquals(1,metrics.requestsTo("POST /users", 400));
+        assertEquals(0,metrics.requestsTo("POST /login", 200));
+    }
+    @Test
+    public void prometheusTextHasCountersAndCumulativeBuckets() {
+        RequestMetrics metrics = RequestMetrics.empty();
+        metrics.record("GET /users/:userId/wall", 200, TimeUnit.MICROSECONDS.toNanos(50));
+        metrics.record("GET /users/:userId/wall", 200, TimeUnit.MILLISECONDS.toNanos(3));
+        metrics.record("GET /users/:userId/wall", 404, TimeUnit.SECONDS.toNanos(20));
+
+        String text = metrics.asPrometheusText();
+
+        assertTrue(text.contains("# TYPE openchat_requests_total counter\n"));
+        assertTrue(text.contains("openchat_requests_total{route=\"GET /users/:userId/wall\",status=\"200\"} 2\n"));
+        assertTrue(text.contains("openchat_requests_total{route=\"GET /users/:userId/wall\",status=\"404\"} 1\n"));
+        assertTrue(text.contains("# TYPE openchat_request_duration_seconds histogram\n"));
+        assertTrue(text.contains("openchat_request_duration_seconds_bucket{route=\"GET /users/:userId/wall\",le=\"0.0001\"} 1\n"));
+        assertTrue(text.contains("openchat_request_duration_seconds_bucket{route=\"GET /users/:userId/wall\",le=\"0.005\"} 2\n"));
+        assertTrue(text.contains("openchat_request_duration_seconds_bucket{route=\"GET /users/:userId/wall\",le=\"10\"} 2\n"));
+        assertTrue(text.contains("openchat_request_duration_seconds_bucket{route=\"GET /users/:userId/wall\",le=\"+Inf\"} 3\n"));
+        assertTrue(text.contains("openchat_request_duration_seconds_count{route=\"GET /users/:userId/wall\"} 3\n"));
+        assertTrue(text.contains("openchat_request_duration_quantile_seconds{route=\"GET /users/:userId/wall\",quantile=\"0.5\"}"));
+    }
+    @Test
+    public void escapesQuotesInRouteNames() {
+        RequestMetrics metrics = RequestMetrics.empty();
+        metrics.record("GET /\"quoted\"", 200, 1000);
+
+        assertTrue(metrics.asPrometheusText().contains("{route=\"GET /\\\"quoted\\\"\",status=\"200\"} 1\n"));
+    }
+}
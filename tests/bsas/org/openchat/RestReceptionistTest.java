@@ -1,9 +1,16 @@
 package bsas.org.openchat;
 
+import com.eclipsesource.json.Json;
 import com.eclipsesource.json.JsonArray;
 import com.eclipsesource.json.JsonObject;
 import org.junit.jupiter.api.Test;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static bsas.org.openchat.TestObjectsBucket.assertThrowsModelExceptionWithErrorMessage;
 import static java.time.format.DateTimeFormatter.ofPattern;
 import static org.eclipse.jetty.http.HttpStatus.*;
 import static org.junit.jupiter.api.Assertions.*;
@@ -34,6 +41,36 @@ public class RestReceptionistTest {
         assertEquals(OpenChatSystem.CANNOT_REGISTER_SAME_USER_TWICE,response.responseBody());
     }
     @Test
+    public void canRegisterManyUsersAtOnce() {
+        receptionist = createReceptionist();
+
+        ReceptionistResponse response = receptionist.registerUsers(new JsonArray()
+                .add(juanPerezRegistrationBodyAsJson())
+                .add(juanPerezRegistrationBodyAsJson())
+                .add(pepeSanchezRegistrationBodyAsJson()));
+
+        assertTrue(response.isStatus(OK_200));
+        JsonArray results = response.responseBodyAsJsonArray();
+        assertEquals(3,results.size());
+        assertEquals(CREATED_201,results.get(0).asObject().getInt(RestReceptionist.STATUS_KEY,0));
+        assertJuanPerezJson(results.get(0).asObject().get(RestReceptionist.USER_KEY).asObject());
+        assertEquals(BAD_REQUEST_400,results.get(1).asObject().getInt(RestReceptionist.STATUS_KEY,0));
+        assertEquals(OpenChatSystem.CANNOT_REGISTER_SAME_USER_TWICE,results.get(1).asObject().getString(RestReceptionist.ERROR_KEY,""));
+        assertEquals(CREATED_201,results.get(2).asObject().getInt(RestReceptionist.STATUS_KEY,0));
+        assertEquals(2,receptionist.users().responseBodyAsJsonArray().size());
+        assertJuanPerezOk(receptionist.login(juanPerezLoginBodyAsJson()), OK_200);
+    }
+    @Test
+    public void canNotRegisterManyUsersFromAnythingButAnArrayOfUsers() {
+        receptionist = createReceptionist();
+
+        ReceptionistResponse response = receptionist.registerUsers(new JsonArray().add(juanPerezRegistrationBodyAsJson()).add(1));
+
+        assertTrue(response.isStatus(BAD_REQUEST_400));
+        assertEquals(RestReceptionist.INVALID_REGISTRATIONS,response.responseBody());
+        assertEquals(0,receptionist.users().responseBodyAsJsonArray().size());
+    }
+    @Test
     public void canLoginRegisteredUserWithValidCredentials() {
         receptionist = createReceptionist();
         registerJuanPerez();
@@ -66,6 +103,28 @@ public class RestReceptionistTest {
 
         assertIsArrayWithJuanPerezOnly(response);
     }
+    @Test
+    public void usersCanBePagedByOffsetAndAfterUser() {
+        receptionist = createReceptionist();
+        ReceptionistResponse pepeSanchezResponse = registerPepeSanchez();
+        registerJuanPerez();
+
+        assertIsArrayWithJuanPerezOnly(receptionist.users(new JsonObject()
+                .add(RestReceptionist.OFFSET_KEY, "1")
+                .add(RestReceptionist.LIMIT_KEY, "1")));
+        assertIsArrayWithJuanPerezOnly(receptionist.users(new JsonObject()
+                .add(RestReceptionist.AFTER_KEY, idOfRegisteredUser(pepeSanchezResponse))));
+    }
+    @Test
+    public void canNotPageUsersWithInvalidOffset() {
+        receptionist = createReceptionist();
+
+        ReceptionistResponse response = receptionist.users(new JsonObject()
+                .add(RestReceptionist.OFFSET_KEY, -1));
+
+        assertTrue(response.isStatus(BAD_REQUEST_400));
+        assertEquals(OpenChatSystem.INVALID_USERS_PAGE,response.responseBody());
+    }
 
     @Test
     public void registeredUserCanFollowAnotherRegisteredUser() {
@@ -190,6 +249,36 @@ public class RestReceptionistTest {
         assertEquals(1,likesAsJson.getInt(RestReceptionist.LIKES_KEY,-1));
     }
 
+    @Test
+    public void nothingChangesWhenTheEventLogCanNotAppend() {
+        final SwitchableEventLog eventLog = new SwitchableEventLog();
+        receptionist = new RestReceptionist(new OpenChatSystem(testObjects.fixedNowClock()), eventLog);
+        ReceptionistResponse publisherUserResponse = registerJuanPerez();
+        ReceptionistResponse otherUserResponse = registerPepeSanchez();
+        ReceptionistResponse publicationResponse = publishMessageOf(publisherUserResponse, "Hello");
+        JsonObject newUserRegistrationAsJson = juanPerezRegistrationBodyAsJson()
+                .set(RestReceptionist.USERNAME_KEY, "newUser");
+        eventLog.failing = true;
+
+        assertThrows(UncheckedIOException.class, () -> receptionist.registerUser(newUserRegistrationAsJson));
+        assertThrows(UncheckedIOException.class, () -> receptionist.registerUsers(new JsonArray().add(newUserRegistrationAsJson)));
+        assertThrows(UncheckedIOException.class, () -> receptionist.followings(new JsonObject()
+                .add(RestReceptionist.FOLLOWED_ID_KEY, idOfRegisteredUser(publisherUserResponse))
+                .add(RestReceptionist.FOLLOWER_ID_KEY, idOfRegisteredUser(otherUserResponse))));
+        assertThrows(UncheckedIOException.class, () -> receptionist.likePublicationIdentifiedAs(
+                publicationIdFrom(publicationResponse), likerAsJsonFrom(otherUserResponse)));
+        assertThrows(UncheckedIOException.class, () -> publishMessageOf(publisherUserResponse, "Bye"));
+
+        assertEquals(2,receptionist.users().responseBodyAsJsonArray().size());
+        assertEquals(0,receptionist.followersOf(idOfRegisteredUser(publisherUserResponse)).responseBodyAsJsonArray().size());
+        JsonArray timelineBody = receptionist.timelineOf(idOfRegisteredUser(publisherUserResponse)).responseBodyAsJsonArray();
+        assertEquals(1,timelineBody.size());
+        assertEquals(0,timelineBody.get(0).asObject().getInt(RestReceptionist.LIKES_KEY,-1));
+
+        eventLog.failing = false;
+        assertTrue(receptionist.registerUser(newUserRegistrationAsJson).isStatus(CREATED_201));
+    }
+
     @Test
     public void notRegisteredUserCanNotLikePublication() {
         receptionist = createReceptionist();
@@ -238,6 +327,166 @@ public class RestReceptionistTest {
         JsonObject timelinePublicationAsJson = timelineBody.get(0).asObject();
         assertEquals(1,timelinePublicationAsJson.getInt(RestReceptionist.LIKES_KEY,-1));
     }
+    @Test
+    public void wallShowsPublicationAsPublishedWithCurrentLikes() {
+        receptionist = createReceptionist();
+        ReceptionistResponse publisherUserResponse = registerJuanPerez();
+        ReceptionistResponse likerUserResponse = registerPepeSanchez();
+
+        ReceptionistResponse publicationResponse = publishMessageOf(publisherUserResponse, "\"Hola\" señor\n");
+        receptionist.wallOf(idOfRegisteredUser(publisherUserResponse)).responseBody();
+        receptionist.likePublicationIdentifiedAs(
+                publicationIdFrom(publicationResponse),
+                likerAsJsonFrom(likerUserResponse));
+
+        JsonObject wallPublicationAsJson = receptionist.wallOf(idOfRegisteredUser(publisherUserResponse))
+                .responseBodyAsJsonArray().get(0).asObject();
+        JsonObject expectedPublicationAsJson = publicationResponse.responseBodyAsJson()
+                .set(RestReceptionist.LIKES_KEY,1);
+        assertEquals(expectedPublicationAsJson,wallPublicationAsJson);
+    }
+    @Test
+    public void wallIsNotModifiedUntilAVisiblePublicationChanges() {
+        makePepeSanchezFollowJuanPerezAndAssert(
+            (receptionist,firstResponse,followingsBody,followedResponse,followerResponse)-> {
+                String followedId = idOfRegisteredUser(followedResponse);
+                String firstEntityTag = receptionist.wallOf(followedId).entityTag().get();
+
+                ReceptionistResponse notModifiedResponse = receptionist.wallOf(followedId, new JsonObject(), firstEntityTag);
+                assertTrue(notModifiedResponse.isStatus(NOT_MODIFIED_304));
+                assertEquals(firstEntityTag,notModifiedResponse.entityTag().get());
+                assertEquals("",notModifiedResponse.responseBody());
+
+                ReceptionistResponse followerPublicationResponse = publishMessageOf(followerResponse,"Bye");
+                ReceptionistResponse modifiedResponse = receptionist.wallOf(followedId, new JsonObject(), firstEntityTag);
+                assertTrue(modifiedResponse.isStatus(OK_200));
+                assertEquals(1,modifiedResponse.responseBodyAsJsonArray().size());
+                String secondEntityTag = modifiedResponse.entityTag().get();
+                assertNotEquals(firstEntityTag,secondEntityTag);
+
+                receptionist.likePublicationIdentifiedAs(
+                        publicationIdFrom(followerPublicationResponse), likerAsJsonFrom(followedResponse));
+                assertTrue(receptionist.wallOf(followedId, new JsonObject(), secondEntityTag).isStatus(OK_200));
+            });
+    }
+    @Test
+    public void timelineIsNotModifiedIfAnyEntityTagMatches() {
+        receptionist = createReceptionist();
+        ReceptionistResponse registeredUserResponse = registerJuanPerez();
+        String userId = idOfRegisteredUser(registeredUserResponse);
+        publishMessageOf(registeredUserResponse,"hello");
+
+        String entityTag = receptionist.timelineOf(userId).entityTag().get();
+
+        assertTrue(receptionist.timelineOf(userId, new JsonObject(), "\"other\", W/" + entityTag).isStatus(NOT_MODIFIED_304));
+        assertTrue(receptionist.timelineOf(userId, new JsonObject(), "*").isStatus(NOT_MODIFIED_304));
+        assertTrue(receptionist.timelineOf(userId, new JsonObject(), "\"other\"").isStatus(OK_200));
+    }
+    @Test
+    public void wallSubscriptionReceivesPublicationsAsServerSentEvents() {
+        receptionist = createReceptionist();
+        ReceptionistResponse registeredUserResponse = registerJuanPerez();
+        WallSubscription subscription = receptionist.subscribeToWallOf(
+                idOfRegisteredUser(registeredUserResponse), 10, () -> {});
+
+        ReceptionistResponse publicationResponse = publishMessageOf(registeredUserResponse,"hello");
+
+        String wallEvent = new String(receptionist.wallEventOf(subscription.nextPublication().get()), StandardCharsets.UTF_8);
+        assertTrue(wallEvent.startsWith("data: "));
+        assertTrue(wallEvent.endsWith("\n\n"));
+        assertEquals(publicationResponse.responseBodyAsJson(),Json.parse(wallEvent.substring(6)).asObject());
+    }
+    @Test
+    public void invalidUserCanNotSubscribeToWall() {
+        receptionist = createReceptionist();
+
+        assertThrowsModelExceptionWithErrorMessage(
+                ()->receptionist.subscribeToWallOf("", 10, () -> {}),
+                RestReceptionist.INVALID_CREDENTIALS);
+    }
+    @Test
+    public void publicationsIdentifiedAsReturnsOnlyExistingPublicationsInRequestedOrder() {
+        receptionist = createReceptionist();
+        ReceptionistResponse publisherUserResponse = registerJuanPerez();
+
+        ReceptionistResponse firstPublicationResponse = publishMessageOf(publisherUserResponse, "Hello");
+        ReceptionistResponse secondPublicationResponse = publishMessageOf(publisherUserResponse, "Bye");
+
+        ReceptionistResponse publicationsResponse = receptionist.publicationsIdentifiedAs(Arrays.asList(
+                publicationIdFrom(secondPublicationResponse),
+                "",
+                publicationIdFrom(firstPublicationResponse)));
+
+        assertTrue(publicationsResponse.isStatus(OK_200));
+        JsonArray publicationsBody = publicationsResponse.responseBodyAsJsonArray();
+        assertEquals(2,publicationsBody.size());
+        assertEquals(secondPublicationResponse.responseBodyAsJson(),publicationsBody.get(0).asObject());
+        assertEquals(firstPublicationResponse.responseBodyAsJson(),publicationsBody.get(1).asObject());
+    }
+    @Test
+    public void wallCanBePagedBeforeAPublication() {
+        makePepeSanchezFollowJuanPerezAndAssert(
+            (receptionist,firstResponse,followingsBody,followedResponse,followerResponse)-> {
+                ReceptionistResponse followedPublicationResponse = publishMessageOf(
+                        followedResponse,"Hello");
+                ReceptionistResponse followerPublicationResponse = publishMessageOf(
+                        followerResponse,"Bye");
+
+                ReceptionistResponse firstPage = receptionist.wallOf(
+                        idOfRegisteredUser(followedResponse),
+                        new JsonObject().add(RestReceptionist.LIMIT_KEY, 1));
+                JsonArray firstPageBody = firstPage.responseBodyAsJsonArray();
+                assertEquals(1,firstPageBody.size());
+                assertEquals(followedPublicationResponse.responseBodyAsJson(),firstPageBody.get(0).asObject());
+
+                ReceptionistResponse secondPage = receptionist.wallOf(
+                        idOfRegisteredUser(followedResponse),
+                        new JsonObject()
+                                .add(RestReceptionist.LIMIT_KEY, "1")
+                                .add(RestReceptionist.BEFORE_KEY, publicationIdFrom(followedPublicationResponse)));
+                JsonArray secondPageBody = secondPage.responseBodyAsJsonArray();
+                assertEquals(1,secondPageBody.size());
+                assertEquals(followerPublicationResponse.responseBodyAsJson(),secondPageBody.get(0).asObject());
+            });
+    }
+    @Test
+    public void canNotPageTimelineWithInvalidLimit() {
+        receptionist = createReceptionist();
+        ReceptionistResponse registeredUserResponse = registerJuanPerez();
+
+        ReceptionistResponse timelineResponse = receptionist.timelineOf(
+                idOfRegisteredUser(registeredUserResponse),
+                new JsonObject().add(RestReceptionist.LIMIT_KEY, "many"));
+
+        assertTrue(timelineResponse.isStatus(BAD_REQUEST_400));
+        assertEquals(PublicationsPage.INVALID_LIMIT,timelineResponse.responseBody());
+    }
+    @Test
+    public void canNotPageTimelineFromUnknownPublication() {
+        receptionist = createReceptionist();
+        ReceptionistResponse registeredUserResponse = registerJuanPerez();
+
+        ReceptionistResponse timelineResponse = receptionist.timelineOf(
+                idOfRegisteredUser(registeredUserResponse),
+                new JsonObject().add(RestReceptionist.AFTER_KEY, "unknown"));
+
+        assertTrue(timelineResponse.isStatus(BAD_REQUEST_400));
+        assertEquals(RestReceptionist.INVALID_PUBLICATION,timelineResponse.responseBody());
+    }
+
+    //Como FileEventLog despues de un error de escritura, no acepta mas eventos
+    private static class SwitchableEventLog implements EventLog {
+        private boolean failing = false;
+
+        @Override
+        public void append(OpenChatEvent event) {
+            if(failing) throw new UncheckedIOException(new IOException("Event log failed"));
+        }
+
+        @Override
+        public void commit() {
+        }
+    }
 
     private String publicationIdFrom(ReceptionistResponse publicationResponse) {
         return publicationResponse.responseBodyAsJson().getString(RestReceptionist.POST_ID_KEY, "");
@@ -0,0 +1,103 @@
+package bsas.org.openchat;
+
+import com.eclipsesource.json.JsonObject;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/* Tiempo desde que arranca hasta que responde el primer request, reproduciendo todo
+ * el log o cargando un snapshot y reproduciendo solo lo que se agrego despues.
+ * Se corre como main: SnapshotBenchmark [usuarios] [publicaciones] [directorio]
+ * Cada usuario sigue a 10 y cada publicacion tiene un like.
+ */
+public class SnapshotBenchmark {
+    private static final int FOLLOWEES_PER_USER = 10;
+    private static final double TAIL_FRACTION = 0.01;
+
+    public static void main(String[] arguments) throws IOException {
+        final int users = arguments.length>0 ? Integer.parseInt(arguments[0]) : 100_000;
+        final int publications = arguments.length>1 ? Integer.parseInt(arguments[1]) : 1_000_000;
+        final Path directory = arguments.length>2 ? Path.of(arguments[2]) : Path.of(System.getProperty("java.io.tmpdir"));
+
+        final Path eventLogFile = Files.createTempFile(directory, "openchat-benchmark", ".log");
+        final Path snapshotFile = Files.createTempFile(directory, "openchat-benchmark", ".snapshot");
+        Files.delete(eventLogFile);
+        try {
+            final String firstUserId = populate(eventLogFile, snapshotFile, users, publications);
+            System.out.println(String.format("log %d MB, snapshot %d MB",
+                    Files.size(eventLogFile) >> 20, Files.size(snapshotFile) >> 20));
+
+            System.gc();
+            System.out.println("full log replay: " + timeToFirstRequest(eventLogFile, null, firstUserId));
+            System.gc();
+            System.out.println("snapshot and log tail: " + timeToFirstRequest(eventLogFile, snapshotFile, firstUserId));
+        } finally {
+            Files.deleteIfExists(eventLogFile);
+            Files.deleteIfExists(snapshotFile);
+        }
+    }
+
+    private static String populate(Path eventLogFile, Path snapshotFile, int users, int publications) throws IOException {
+        final FileEventLog eventLog = FileEventLog.at(eventLogFile, CommitPolicy.everyBatchOf(1024));
+        final RestReceptionist receptionist = new RestReceptionist(new OpenChatSystem(() -> LocalDateTime.now()), eventLog);
+        eventLog.replayOn(event -> {});
+        final Random random = new Random(42);
+
+        final List<String> userIds = new ArrayList<>(users);
+        for(int userNumber = 0; userNumber<users; userNumber++)
+            userIds.add(receptionist.registerUser(new JsonObject()
+                    .add(RestReceptionist.USERNAME_KEY, "user" + userNumber)
+                    .add(RestReceptionist.PASSWORD_KEY, "password" + userNumber)
+                    .add(RestReceptionist.ABOUT_KEY, "about user " + userNumber)
+                    .add(RestReceptionist.HOME_PAGE_KEY, "www.user" + userNumber + ".com"))
+                    .responseBodyAsJson().getString(RestReceptionist.ID_KEY, ""));
+        for(String followerId : userIds)
+            for(int followee = 0; followee<FOLLOWEES_PER_USER; followee++)
+                receptionist.followings(new JsonObject()
+                        .add(RestReceptionist.FOLLOWED_ID_KEY, userIds.get(random.nextInt(users)))
+                        .add(RestReceptionist.FOLLOWER_ID_KEY, followerId));
+
+        final int publicationsBeforeSnapshot = (int) (publications * (1 - TAIL_FRACTION));
+        publishAndLike(receptionist, userIds, 0, publicationsBeforeSnapshot, random);
+        final long startTime = System.nanoTime();
+        Snapshot.at(snapshotFile).writeFrom(receptionist, eventLog);
+        System.out.println("snapshot written in " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime) + " ms");
+        publishAndLike(receptionist, userIds, publicationsBeforeSnapshot, publications, random);
+        eventLog.close();
+
+        return userIds.get(0);
+    }
+
+    private static void publishAndLike(RestReceptionist receptionist, List<String> userIds, int from, int to, Random random) {
+        for(int publicationNumber = from; publicationNumber<to; publicationNumber++) {
+            final String publicationId = receptionist.addPublication(
+                    userIds.get(publicationNumber % userIds.size()),
+                    new JsonObject().add(RestReceptionist.TEXT_KEY, "publication number " + publicationNumber))
+                    .responseBodyAsJson().getString(RestReceptionist.POST_ID_KEY, "");
+            receptionist.likePublicationIdentifiedAs(publicationId,
+                    new JsonObject().add(RestReceptionist.USER_ID_KEY, userIds.get(random.nextInt(userIds.size()))));
+        }
+    }
+
+    private static String timeToFirstRequest(Path eventLogFile, Path snapshotFile, String userId) throws IOException {
+        final long startTime = System.nanoTime();
+        final FileEventLog eventLog = FileEventLog.at(eventLogFile, CommitPolicy.everyRequest());
+        final RestReceptionist receptionist = new RestReceptionist(new OpenChatSystem(() -> LocalDateTime.now()), eventLog);
+        final long logPosition = snapshotFile==null ? 0 : Snapshot.at(snapshotFile).loadInto(receptionist);
+        final long loadedTime = System.nanoTime();
+        final int replayedEvents = eventLog.replayOn(event -> receptionist.restore(event), logPosition);
+        final int wallSize = receptionist.wallOf(userId).responseBodyAsJsonArray().size();
+        final long endTime = System.nanoTime();
+        eventLog.close();
+
+        return String.format("%d ms (snapshot %d ms, %d log events), first wall has %d publications",
+                TimeUnit.NANOSECONDS.toMillis(endTime - startTime), TimeUnit.NANOSECONDS.toMillis(loadedTime - startTime),
+                replayedEvents, wallSize);
+    }
+}
@@ -0,0 +1,210 @@
+package bsas.org.openchat;
+
+import com.eclipsesource.json.JsonObject;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SnapshotTest {
+    private final TestObjectsBucket testObjects = new TestObjectsBucket();
+
+    @Test
+    public void restoresEverythingDoneBeforeWritingIt() throws IOException {
+        withFilesDo((eventLogFile, snapshotFile) -> {
+            FileEventLog eventLog = FileEventLog.at(eventLogFile, CommitPolicy.everyRequest());
+            RestReceptionist receptionist = new RestReceptionist(createSystem(), eventLog);
+            eventLog.replayOn(event -> fail("No events expected"));
+            String pepeId = registerPepeSanchezOn(receptionist);
+            String juanId = registerJuanPerezOn(receptionist);
+            follow(receptionist, pepeId, juanId);
+            String publicationId = publish(receptionist, pepeId, "hello");
+            publish(receptionist, pepeId, "bye");
+            like(receptionist, publicationId, juanId);
+
+            assertEquals(5,Snapshot.at(snapshotFile).writeFrom(receptionist, eventLog));
+            eventLog.close();
+
+            RestReceptionist restoredReceptionist = restoredReceptionistFrom(eventLogFile, snapshotFile, 0);
+            assertSameStateOn(receptionist, restoredReceptionist, pepeId, juanId);
+        });
+    }
+    @Test
+    public void replaysTheLogFromThePositionItWasWrittenAt() throws IOException {
+        withFilesDo((eventLogFile, snapshotFile) -> {
+            FileEventLog eventLog = FileEventLog.at(eventLogFile, CommitPolicy.everyRequest());
+            RestReceptionist receptionist = new RestReceptionist(createSystem(), eventLog);
+            eventLog.replayOn(event -> fail("No events expected"));
+            String pepeId = registerPepeSanchezOn(receptionist);
+            String juanId = registerJuanPerezOn(receptionist);
+            String publicationId = publish(receptionist, pepeId, "hello");
+            Snapshot.at(snapshotFile).writeFrom(receptionist, eventLog);
+            follow(receptionist, pepeId, juanId);
+            like(receptionist, publicationId, juanId);
+            eventLog.close();
+
+            RestReceptionist restoredReceptionist = restoredReceptionistFrom(eventLogFile, snapshotFile, 2);
+            assertSameStateOn(receptionist, restoredReceptionist, pepeId, juanId);
+        });
+    }
+    @Test
+    public void restoringEventsAlreadyInTheSnapshotChangesNothing() throws IOException {
+        withFilesDo((eventLogFile, snapshotFile) -> {
+            FileEventLog eventLog = FileEventLog.at(eventLogFile, CommitPolicy.everyRequest());
+            RestReceptionist receptionist = new RestReceptionist(createSystem(), eventLog);
+            eventLog.replayOn(event -> fail("No events expected"));
+            String pepeId = registerPepeSanchezOn(receptionist);
+            String juanId = registerJuanPerezOn(receptionist);
+            follow(receptionist, pepeId, juanId);
+            like(receptionist, publish(receptionist, pepeId, "hello"), juanId);
+            Snapshot.at(snapshotFile).writeFrom(receptionist, eventLog);
+            eventLog.close();
+
+            RestReceptionist restoredReceptionist = new RestReceptionist(createSystem());
+            Snapshot.at(snapshotFile).loadInto(restoredReceptionist);
+            FileEventLog.at(eventLogFile, CommitPolicy.everyRequest())
+                    .replayOn(event -> assertTrue(restoredReceptionist.restore(event)));
+
+            assertSameStateOn(receptionist, restoredReceptionist, pepeId, juanId);
+        });
+    }
+    @Test
+    public void publicationsPublishedAtTheSameTimeKeepTheirOrder() throws IOException {
+        withFilesDo((eventLogFile, snapshotFile) -> {
+            FileEventLog eventLog = FileEventLog.at(eventLogFile, CommitPolicy.everyRequest());
+            RestReceptionist receptionist = new RestReceptionist(createSystem(), eventLog);
+            eventLog.replayOn(event -> fail("No events expected"));
+            String pepeId = registerPepeSanchezOn(receptionist);
+            publish(receptionist, pepeId, "first");
+            publish(receptionist, pepeId, "second");
+            publish(receptionist, pepeId, "third");
+            Snapshot.at(snapshotFile).writeFrom(receptionist, eventLog);
+            eventLog.close();
+
+            RestReceptionist restoredReceptionist = restoredReceptionistFrom(eventLogFile, snapshotFile, 0);
+            assertEquals(receptionist.timelineOf(pepeId).responseBody(),restoredReceptionist.timelineOf(pepeId).responseBody());
+        });
+    }
+    @Test
+    public void incompleteSnapshotIsRejected() throws IOException {
+        withFilesDo((eventLogFile, snapshotFile) -> {
+            FileEventLog eventLog = FileEventLog.at(eventLogFile, CommitPolicy.everyRequest());
+            RestReceptionist receptionist = new RestReceptionist(createSystem(), eventLog);
+            eventLog.replayOn(event -> fail("No events expected"));
+            registerPepeSanchezOn(receptionist);
+            Snapshot.at(snapshotFile).writeFrom(receptionist, eventLog);
+            eventLog.close();
+            try(FileChannel channel = FileChannel.open(snapshotFile, StandardOpenOption.WRITE)) {
+                channel.truncate(channel.size() - 1);
+            }
+
+            IOException error = assertThrows(
+                    IOException.class,
+                    () -> Snapshot.at(snapshotFile).loadInto(new RestReceptionist(createSystem())));
+            assertTrue(error.getMessage().startsWith(Snapshot.INVALID_SNAPSHOT));
+        });
+    }
+    @Test
+    public void corruptedSnapshotIsRejectedBeforeRestoringAnything() throws IOException {
+        withFilesDo((eventLogFile, snapshotFile) -> {
+            FileEventLog eventLog = FileEventLog.at(eventLogFile, CommitPolicy.everyRequest());
+            RestReceptionist receptionist = new RestReceptionist(createSystem(), eventLog);
+            eventLog.replayOn(event -> fail("No events expected"));
+            registerPepeSanchezOn(receptionist);
+            registerJuanPerezOn(receptionist);
+            Snapshot.at(snapshotFile).writeFrom(receptionist, eventLog);
+            eventLog.close();
+            try(FileChannel channel = FileChannel.open(snapshotFile, StandardOpenOption.WRITE)) {
+                channel.write(ByteBuffer.wrap(new byte[]{ 'X' }), channel.size() / 2);
+            }
+
+            RestReceptionist restoredReceptionist = new RestReceptionist(createSystem());
+            IOException error = assertThrows(
+                    IOException.class,
+                    () -> Snapshot.at(snapshotFile).loadInto(restoredReceptionist));
+            assertTrue(error.getMessage().startsWith(Snapshot.INVALID_SNAPSHOT));
+            assertEquals(0,restoredReceptionist.users().responseBodyAsJsonArray().size());
+        });
+    }
+
+    private void assertSameStateOn(RestReceptionist receptionist, RestReceptionist restoredReceptionist, String pepeId, String juanId) {
+        assertEquals(receptionist.users().responseBody(),restoredReceptionist.users().responseBody());
+        assertEquals(receptionist.timelineOf(pepeId).responseBody(),restoredReceptionist.timelineOf(pepeId).responseBody());
+        assertEquals(receptionist.wallOf(juanId).responseBody(),restoredReceptionist.wallOf(juanId).responseBody());
+        assertEquals(receptionist.followersOf(pepeId).responseBody(),restoredReceptionist.followersOf(pepeId).responseBody());
+        assertTrue(restoredReceptionist.login(new JsonObject()
+                .add(RestReceptionist.USERNAME_KEY, TestObjectsBucket.JUAN_PEREZ_NAME)
+                .add(RestReceptionist.PASSWORD_KEY, TestObjectsBucket.JUAN_PEREZ_PASSWORD))
+                .isStatus(200));
+    }
+
+    private RestReceptionist restoredReceptionistFrom(Path eventLogFile, Path snapshotFile, int expectedLogEvents) throws IOException {
+        FileEventLog eventLog = FileEventLog.at(eventLogFile, CommitPolicy.everyRequest());
+        RestReceptionist restoredReceptionist = new RestReceptionist(createSystem(), eventLog);
+        long logPosition = Snapshot.at(snapshotFile).loadInto(restoredReceptionist);
+        assertEquals(expectedLogEvents,eventLog.replayOn(event -> assertTrue(restoredReceptionist.restore(event)), logPosition));
+        eventLog.close();
+
+        return restoredReceptionist;
+    }
+
+    private String registerPepeSanchezOn(RestReceptionist receptionist) {
+        return receptionist.registerUser(new JsonObject()
+                .add(RestReceptionist.USERNAME_KEY, TestObjectsBucket.PEPE_SANCHEZ_NAME)
+                .add(RestReceptionist.PASSWORD_KEY, TestObjectsBucket.PEPE_SANCHEZ_PASSWORD)
+                .add(RestReceptionist.ABOUT_KEY, TestObjectsBucket.PEPE_SANCHEZ_ABOUT)
+                .add(RestReceptionist.HOME_PAGE_KEY, TestObjectsBucket.PEPE_SANCHEZ_HOME_PAGE))
+                .responseBodyAsJson().getString(RestReceptionist.ID_KEY, "");
+    }
+
+    private String registerJuanPerezOn(RestReceptionist receptionist) {
+        return receptionist.registerUser(new JsonObject()
+                .add(RestReceptionist.USERNAME_KEY, TestObjectsBucket.JUAN_PEREZ_NAME)
+                .add(RestReceptionist.PASSWORD_KEY, TestObjectsBucket.JUAN_PEREZ_PASSWORD)
+                .add(RestReceptionist.ABOUT_KEY, TestObjectsBucket.JUAN_PEREZ_ABOUT)
+                .add(RestReceptionist.HOME_PAGE_KEY, TestObjectsBucket.JUAN_PEREZ_HOME_PAGE))
+                .responseBodyAsJson().getString(RestReceptionist.ID_KEY, "");
+    }
+
+    private void follow(RestReceptionist receptionist, String followedId, String followerId) {
+        receptionist.followings(new JsonObject()
+                .add(RestReceptionist.FOLLOWED_ID_KEY, followedId)
+                .add(RestReceptionist.FOLLOWER_ID_KEY, followerId));
+    }
+
+    private String publish(RestReceptionist receptionist, String userId, String message) {
+        return receptionist.addPublication(userId, new JsonObject().add(RestReceptionist.TEXT_KEY, message))
+                .responseBodyAsJson().getString(RestReceptionist.POST_ID_KEY, "");
+    }
+
+    private void like(RestReceptionist receptionist, String publicationId, String likerId) {
+        receptionist.likePublicationIdentifiedAs(publicationId, new JsonObject().add(RestReceptionist.USER_ID_KEY, likerId));
+    }
+
+    private OpenChatSystem createSystem() {
+        return new OpenChatSystem(testObjects.fixedNowClock());
+    }
+
+    private void withFilesDo(FilesClosure closure) throws IOException {
+        final Path eventLogFile = Files.createTempFile("openchat", ".log");
+        final Path snapshotFile = Files.createTempFile("openchat", ".snapshot");
+        Files.delete(eventLogFile);
+        Files.delete(snapshotFile);
+        try {
+            closure.value(eventLogFile, snapshotFile);
+        } finally {
+            Files.deleteIfExists(eventLogFile);
+            Files.deleteIfExists(snapshotFile);
+        }
+    }
+
+    private interface FilesClosure {
+        void value(Path eventLogFile, Path snapshotFile) throws IOException;
+    }
+}
@@ -0,0 +1,79 @@
+package bsas.org.openchat;
+
+import com.eclipsesource.json.Json;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class Utf8JsonWriterTest {
+    @Test
+    public void stringsAreEscapedAsMinimalJsonDoes() throws IOException {
+        for(String value : Arrays.asList("hello", "say \"hi\"", "back\\slash", "line\nfeed\r\t",
+                "control\u0001\u001f", "separators\u2028\u2029", "ñandú", "日本語", "emoji 😀")) {
+            assertEquals(Json.value(value).toString(), written(writer -> writer.string(value)));
+        }
+    }
+    @Test
+    public void unpairedSurrogatesAreReplaced() throws IOException {
+        assertEquals("\"a?b\"", written(writer -> writer.string("a\uD83Db")));
+    }
+    @Test
+    public void utf8StringsAreWrittenAsTheirDecodedString() throws IOException {
+        for(String value : Arrays.asList("hello", "say \"hi\"", "back\\slash", "line\nfeed\r\t",
+                "control\u0001\u001f", "separators\u2028\u2029", "ñandú", "日本語", "emoji 😀", "a\uD83Db", "")) {
+            final ByteBuffer utf8 = ByteBuffer.allocateDirect(100);
+            utf8.position(3);
+            utf8.put(value.getBytes(StandardCharsets.UTF_8));
+
+            assertEquals(
+                    written(writer -> writer.string(value)),
+                    written(writer -> writer.utf8String(utf8, 3, utf8.position() - 3)));
+        }
+    }
+    @Test
+    public void nullStringIsWrittenAsJsonNull() throws IOException {
+        assertEquals("null", written(writer -> writer.string(null)));
+    }
+    @Test
+    public void numbersAreWrittenAsMinimalJsonDoes() throws IOException {
+        for(long value : new long[]{0, 7, 10, -42, 1234567890123L, Long.MAX_VALUE, Long.MIN_VALUE}) {
+            assertEquals(Json.value(value).toString(), written(writer -> writer.number(value)));
+        }
+    }
+    @Test
+    public void dateTimesUseResponseFormat() throws IOException {
+        final LocalDateTime dateTime = LocalDateTime.of(2018, 1, 2, 3, 4, 5, 600);
+
+        assertEquals(
+                "\"" + RestReceptionist.DATE_TIME_FORMATTER.format(dateTime) + "\"",
+                written(writer -> writer.dateTime(dateTime)));
+    }
+    @Test
+    public void writesMoreThanItsBuffer() throws IOException {
+        final String longValue = "ñ".repeat(10_000);
+
+        assertEquals(
+                "[" + Json.value(longValue) + "," + Json.value(longValue) + "]",
+                written(writer -> writer.raw('[').string(longValue).raw(',').string(longValue).raw(']')));
+    }
+
+    private String written(WriterAction action) throws IOException {
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        final Utf8JsonWriter writer = Utf8JsonWriter.on(output);
+        action.writeWith(writer);
+        writer.flush();
+
+        return new String(output.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private interface WriterAction {
+        void writeWith(Utf8JsonWriter writer) throws IOException;
+    }
+}
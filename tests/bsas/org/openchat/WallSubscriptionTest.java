@@ -0,0 +1,83 @@
+package bsas.org.openchat;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static bsas.org.openchat.TestObjectsBucket.assertThrowsModelExceptionWithErrorMessage;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class WallSubscriptionTest {
+
+    private final TestObjectsBucket testObjects = new TestObjectsBucket();
+
+    @Test
+    public void subscriptionReceivesPublicationsAddedToTheWall() {
+        Publisher followed = createPepeSanchez();
+        Publisher follower = createJuanPerez();
+        followed.followedBy(follower);
+        AtomicInteger notifications = new AtomicInteger();
+        WallSubscription subscription = followed.subscribeToWall(10, () -> notifications.incrementAndGet());
+
+        Publication followedPublication = followed.publish("a message", LocalDateTime.now());
+        Publication followerPublication = follower.publish("another message", LocalDateTime.now());
+
+        assertEquals(2,notifications.get());
+        assertEquals(Optional.of(followedPublication),subscription.nextPublication());
+        assertEquals(Optional.of(followerPublication),subscription.nextPublication());
+        assertEquals(Optional.empty(),subscription.nextPublication());
+    }
+    @Test
+    public void subscriptionDoesNotReceivePublicationsOfOtherWalls() {
+        Publisher followed = createPepeSanchez();
+        Publisher follower = createJuanPerez();
+        followed.followedBy(follower);
+        WallSubscription subscription = follower.subscribeToWall(10, () -> {});
+
+        followed.publish("a message", LocalDateTime.now());
+
+        assertEquals(Optional.empty(),subscription.nextPublication());
+    }
+    @Test
+    public void subscriptionIsCancelledWhenItsQueueIsFull() {
+        Publisher publisher = createPepeSanchez();
+        AtomicInteger notifications = new AtomicInteger();
+        WallSubscription subscription = publisher.subscribeToWall(1, () -> notifications.incrementAndGet());
+
+        publisher.publish("a message", LocalDateTime.now());
+        publisher.publish("another message", LocalDateTime.now());
+        publisher.publish("last message", LocalDateTime.now());
+
+        assertTrue(subscription.isCancelled());
+        assertEquals(2,notifications.get());
+        assertEquals(Optional.empty(),subscription.nextPublication());
+    }
+    @Test
+    public void cancelledSubscriptionDoesNotReceivePublications() {
+        Publisher publisher = createPepeSanchez();
+        AtomicInteger notifications = new AtomicInteger();
+        WallSubscription subscription = publisher.subscribeToWall(10, () -> notifications.incrementAndGet());
+
+        subscription.cancel();
+        publisher.publish("a message", LocalDateTime.now());
+
+        assertEquals(0,notifications.get());
+        assertEquals(Optional.empty(),subscription.nextPublication());
+    }
+    @Test
+    public void subscriptionCapacityMustBePositive() {
+        assertThrowsModelExceptionWithErrorMessage(
+                ()->createPepeSanchez().subscribeToWall(0, () -> {}),
+                WallSubscription.INVALID_CAPACITY);
+    }
+
+    private Publisher createJuanPerez() {
+        return Publisher.relatedTo(testObjects.createUserJuanPerez());
+    }
+
+    private Publisher createPepeSanchez() {
+        return Publisher.relatedTo(testObjects.createPepeSanchez());
+    }
+}
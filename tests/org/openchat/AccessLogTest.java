@@ -0,0 +1,110 @@
+package org.openchat;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AccessLogTest {
+    @Test
+    public void fullBufferDropsAndCountsWhatItCanNotKeep() {
+        List<String> lines = new ArrayList<>();
+        AccessLog accessLog = AccessLog.writingTo(1, 4, line -> lines.add(line));
+
+        for(int requestNumber = 0; requestNumber<10; requestNumber++) logRequestTo(accessLog, "/users/" + requestNumber, 200);
+
+        assertEquals(6,accessLog.droppedEntries());
+        assertEquals(4,accessLog.writePendingEntries());
+        assertEquals(4,lines.size());
+        for(int requestNumber = 0; requestNumber<4; requestNumber++)
+            assertTrue(lines.get(requestNumber).contains("path=\"/users/" + requestNumber + "\""));
+    }
+    @Test
+    public void entriesAreWrittenInOrderAfterWrappingAroundTheBuffer() {
+        List<String> lines = new ArrayList<>();
+        AccessLog accessLog = AccessLog.writingTo(1, 4, line -> lines.add(line));
+
+        for(int round = 0; round<5; round++) {
+            for(int requestNumber = 0; requestNumber<3; requestNumber++)
+                logRequestTo(accessLog, "/users/" + (round * 3 + requestNumber), 200);
+            assertEquals(3,accessLog.writePendingEntries());
+        }
+
+        assertEquals(0,accessLog.droppedEntries());
+        assertEquals(15,lines.size());
+        for(int requestNumber = 0; requestNumber<15; requestNumber++)
+            assertTrue(lines.get(requestNumber).contains("path=\"/users/" + requestNumber + "\""));
+    }
+    @Test
+    public void serverErrorsAreLoggedEvenWhenNothingIsSampled() {
+        List<String> lines = new ArrayList<>();
+        AccessLog accessLog = AccessLog.writingTo(0, 16, line -> lines.add(line));
+
+        logRequestTo(accessLog, "/users", 200);
+        logRequestTo(accessLog, "/users", 404);
+        logRequestTo(accessLog, "/users", 500);
+        logRequestTo(accessLog, "/users", 503);
+        accessLog.writePendingEntries();
+
+        assertEquals(2,lines.size());
+        assertTrue(lines.get(0).contains("status=500"));
+        assertTrue(lines.get(1).contains("status=503"));
+    }
+    @Test
+    public void sampleRateOneLogsEveryRequest() {
+        List<String> lines = new ArrayList<>();
+        AccessLog accessLog = AccessLog.writingTo(1, 128, line -> lines.add(line));
+
+        for(int requestNumber = 0; requestNumber<100; requestNumber++) logRequestTo(accessLog, "/users", 200);
+
+        assertEquals(100,accessLog.writePendingEntries());
+        assertEquals(0,accessLog.droppedEntries());
+    }
+    @Test
+    public void valuesFromTheClientAreQuoted() {
+        List<String> lines = new ArrayList<>();
+        AccessLog accessLog = AccessLog.writingTo(1, 4, line -> lines.add(line));
+
+        accessLog.log("GET", "/users/\"x\"", "a=\\b", 200, 1500, "127.0.0.1");
+        accessLog.writePendingEntries();
+
+        assertTrue(lines.get(0).contains(" method=GET path=\"/users/\\\"x\\\"\" query=\"a=\\\\b\" status=200 duration_us=1 remote=127.0.0.1"));
+    }
+    @Test
+    public void writerWakesUpWhenARequestIsLoggedAfterBeingIdle() throws InterruptedException {
+        BlockingQueue<String> lines = new LinkedBlockingQueue<>();
+        AccessLog accessLog = AccessLog.startedWritingTo(1, 4, line -> lines.add(line));
+
+        logRequestTo(accessLog, "/users/0", 200);
+        assertNotNull(lines.poll(10, TimeUnit.SECONDS));
+        Thread.sleep(50);
+        logRequestTo(accessLog, "/users/1", 200);
+
+        String line = lines.poll(10, TimeUnit.SECONDS);
+        assertNotNull(line);
+        assertTrue(line.contains("path=\"/users/1\""));
+    }
+    @Test
+    public void sampleRateMustBeBetweenZeroAndOne() {
+        IllegalArgumentException error = assertThrows(
+                IllegalArgumentException.class,
+                () -> AccessLog.writingTo(1.5, 4, line -> {}));
+        assertEquals(AccessLog.INVALID_SAMPLE_RATE,error.getMessage());
+    }
+    @Test
+    public void capacityMustBeAPowerOfTwo() {
+        IllegalArgumentException error = assertThrows(
+                IllegalArgumentException.class,
+                () -> AccessLog.writingTo(1, 6, line -> {}));
+        assertEquals(AccessLog.INVALID_CAPACITY,error.getMessage());
+    }
+
+    private void logRequestTo(AccessLog accessLog, String path, int status) {
+        accessLog.log("GET", path, null, status, 1000, "127.0.0.1");
+    }
+}
@@ -0,0 +1,270 @@
+package org.openchat;
+
+import bsas.org.openchat.OpenChatSystem;
+import bsas.org.openchat.Publisher;
+import bsas.org.openchat.RestReceptionist;
+import com.eclipsesource.json.JsonObject;
+import org.junit.jupiter.api.Test;
+
+import javax.servlet.*;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class WallStreamsTest {
+    private static final int QUEUE_CAPACITY = 2;
+
+    private final OpenChatSystem system = new OpenChatSystem(() -> LocalDateTime.of(2021, 3, 4, 5, 6, 7));
+    private final RestReceptionist receptionist = new RestReceptionist(system);
+    private final WallStreams wallStreams = WallStreams.of(receptionist, QUEUE_CAPACITY, TimeUnit.HOURS.toSeconds(1));
+    private final TestAsyncContext asyncContext = new TestAsyncContext();
+    private final TestOutputStream output = new TestOutputStream();
+    private volatile IOException abortError;
+
+    @Test
+    public void newPublicationsOfTheWallAreWrittenAsEvents() throws IOException {
+        String userId = registerPepe();
+        stream(userId);
+        output.becomeReady();
+
+        publish(userId, "hello");
+
+        awaitUntil(() -> output.written().contains("hello"));
+        assertTrue(output.written().startsWith("data: {"));
+        assertTrue(output.written().endsWith("}\n\n"));
+        awaitUntil(() -> output.numberOfFlushes()>0);
+    }
+    @Test
+    public void eventsWaitUntilTheClientCanReceiveThem() throws IOException {
+        String userId = registerPepe();
+        stream(userId);
+
+        publish(userId, "hello");
+        wallStreams.sendHeartbeats();
+        assertEquals("",output.written());
+
+        output.becomeReady();
+        assertTrue(output.written().startsWith(":\n\ndata: {"));
+        assertTrue(output.written().contains("hello"));
+        assertEquals(1,wallStreams.numberOfStreams());
+    }
+    @Test
+    public void heartbeatClosesTheStreamOfAClientThatIsGone() throws IOException {
+        String userId = registerPepe();
+        stream(userId);
+        output.becomeReady();
+
+        output.loseConnection();
+        wallStreams.sendHeartbeats();
+
+        assertEquals(0,wallStreams.numberOfStreams());
+        assertEquals(0,pepePublisher().numberOfWallSubscriptions());
+        assertTrue(asyncContext.isCompleted());
+        assertNull(abortError);
+    }
+    @Test
+    public void clientThatDoesNotReadIsAbortedWhenItsQueueFillsUp() throws IOException {
+        String userId = registerPepe();
+        stream(userId);
+        wallStreams.sendHeartbeats();
+
+        for(int publicationNumber = 0; publicationNumber<=QUEUE_CAPACITY; publicationNumber++)
+            publish(userId, "hello " + publicationNumber);
+
+        awaitUntil(() -> abortError!=null);
+        assertEquals(0,wallStreams.numberOfStreams());
+        assertEquals(0,pepePublisher().numberOfWallSubscriptions());
+        assertFalse(asyncContext.isCompleted());
+    }
+    @Test
+    public void clientErrorClosesTheStream() throws IOException {
+        String userId = registerPepe();
+        stream(userId);
+        output.becomeReady();
+
+        asyncContext.failWith(new IOException("Connection reset"));
+
+        assertEquals(0,wallStreams.numberOfStreams());
+        assertEquals(0,pepePublisher().numberOfWallSubscriptions());
+    }
+    @Test
+    public void subscriptionIsCancelledWhenTheStreamCanNotStart() {
+        String userId = registerPepe();
+        asyncContext.rejectListeners();
+
+        assertThrows(IllegalStateException.class, () -> stream(userId));
+
+        assertEquals(0,wallStreams.numberOfStreams());
+        assertEquals(0,pepePublisher().numberOfWallSubscriptions());
+    }
+
+    private void stream(String userId) throws IOException {
+        wallStreams.stream(userId, asyncContext, output, error -> abortError = error);
+    }
+
+    private String registerPepe() {
+        return receptionist.registerUser(new JsonObject()
+                .add(RestReceptionist.USERNAME_KEY, "Pepe")
+                .add(RestReceptionist.PASSWORD_KEY, "password")
+                .add(RestReceptionist.ABOUT_KEY, "about")
+                .add(RestReceptionist.HOME_PAGE_KEY, "www.10pines.com"))
+                .responseBodyAsJson().getString(RestReceptionist.ID_KEY, "");
+    }
+
+    private void publish(String userId, String message) {
+        receptionist.addPublication(userId, new JsonObject().add(RestReceptionist.TEXT_KEY, message));
+    }
+
+    private Publisher pepePublisher() {
+        return system.publisherRelatedTo(system.users().get(0));
+    }
+
+    private void awaitUntil(BooleanSupplier condition) {
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!condition.getAsBoolean()) {
+            if(System.nanoTime()>deadline) fail("Condition not met in time");
+            Thread.onSpinWait();
+        }
+    }
+
+    //Como el de Jetty: si isReady responde false, avisa con onWritePossible cuando se puede volver a escribir
+    private static class TestOutputStream extends ServletOutputStream {
+        private final ByteArrayOutputStream written = new ByteArrayOutputStream();
+        private WriteListener writeListener;
+        private boolean isReady = false;
+        private boolean isConnected = true;
+        private int numberOfFlushes = 0;
+
+        void becomeReady() throws IOException {
+            synchronized (this) {
+                isReady = true;
+            }
+            writeListener.onWritePossible();
+        }
+
+        synchronized void loseConnection() {
+            isConnected = false;
+        }
+
+        synchronized String written() {
+            return new String(written.toByteArray(), StandardCharsets.UTF_8);
+        }
+
+        synchronized int numberOfFlushes() {
+            return numberOfFlushes;
+        }
+
+        @Override
+        public synchronized boolean isReady() {
+            return isReady;
+        }
+
+        @Override
+        public synchronized void setWriteListener(WriteListener writeListener) {
+            this.writeListener = writeListener;
+        }
+
+        @Override
+        public synchronized void write(int aByte) throws IOException {
+            if(!isConnected) throw new IOException("Broken pipe");
+            written.write(aByte);
+        }
+
+        @Override
+        public synchronized void flush() throws IOException {
+            if(!isConnected) throw new IOException("Broken pipe");
+            numberOfFlushes++;
+        }
+    }
+
+    private static class TestAsyncContext implements AsyncContext {
+        private final List<AsyncListener> listeners = new ArrayList<>();
+        private boolean rejectsListeners = false;
+        private volatile boolean isCompleted = false;
+
+        void rejectListeners() {
+            rejectsListeners = true;
+        }
+
+        void failWith(Throwable error) throws IOException {
+            final AsyncEvent event = new AsyncEvent(this, error);
+            for(AsyncListener listener : listeners) listener.onError(event);
+        }
+
+        boolean isCompleted() {
+            return isCompleted;
+        }
+
+        @Override
+        public void addListener(AsyncListener listener) {
+            if(rejectsListeners) throw new IllegalStateException("Response already committed");
+            listeners.add(listener);
+        }
+
+        @Override
+        public void addListener(AsyncListener listener, ServletRequest request, ServletResponse response) {
+            addListener(listener);
+        }
+
+        @Override
+        public void complete() {
+            isCompleted = true;
+        }
+
+        @Override
+        public void setTimeout(long timeout) {
+        }
+
+        @Override
+        public long getTimeout() {
+            return 0;
+        }
+
+        @Override
+        public ServletRequest getRequest() {
+            return null;
+        }
+
+        @Override
+        public ServletResponse getResponse() {
+            return null;
+        }
+
+        @Override
+        public boolean hasOriginalRequestAndResponse() {
+            return true;
+        }
+
+        @Override
+        public void dispatch() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void dispatch(String path) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void dispatch(ServletContext context, String path) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void start(Runnable runnable) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public <T extends AsyncListener> T createListener(Class<T> listenerClass) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}